@@ -0,0 +1,23 @@
+package io.frinx.utils.bump;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Runs JMH with given arguments. Unless the result format is given, results are written as JSON to
+ * jmh-result-&lt;timestamp&gt;.json in the working directory so that runs can be compared over time.
+ */
+public class BumpBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+        if (jmhArgs.contains("-rf") == false) {
+            String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+            jmhArgs.addAll(Arrays.asList("-rf", "json", "-rff", "jmh-result-" + timestamp + ".json"));
+        }
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[jmhArgs.size()]));
+    }
+}
@@ -0,0 +1,158 @@
+package io.frinx.utils.bump;
+
+import static io.frinx.utils.bump.transformer.util.LoggingUtil.fatal;
+import static java.lang.String.format;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import io.frinx.utils.bump.fixture.SyntheticRepository;
+import io.frinx.utils.bump.transformer.RepositoryRunner;
+import io.frinx.utils.bump.transformer.util.ArgsParsingUtil;
+import io.frinx.utils.bump.transformer.util.Json;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Consumer;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * End to end timing of simple and flipLastCommit on trees generated by {@link SyntheticRepository}. Throughput
+ * in files per second is the best of several runs, each run on a freshly generated tree. Results are compared to
+ * the baseline file, a drop by more than the threshold fails the suite. With --record, results are written
+ * to the baseline file instead.
+ */
+public class PerformanceRegressionSuite {
+
+    private static final List<String> SIMPLE_ARGS = Arrays.asList("--suffix", "frinx", "--snapshot", "flip");
+    private static final List<String> FLIP_ARGS = Arrays.asList("--suffix", "frinx", "--snapshot", "flip",
+            "-m", "Bump to next SNAPSHOT");
+
+    public static void main(String[] args) throws Exception {
+        List<String> argList = new ArrayList<>(Arrays.asList(args));
+        if (argList.contains("-h")) {
+            System.out.println("Usage: [--sizes <n,n,..>] [--runs <n>] [--baseline <file>] [--threshold <fraction>] [--record]");
+            System.out.println("Optional: --sizes <n,n,..> - numbers of generated files, defaults to 1000,10000,100000");
+            System.out.println("Optional: --runs <n> - runs per scenario, the best one counts, defaults to 3");
+            System.out.println("Optional: --baseline <file> - defaults to perf-baseline.json");
+            System.out.println("Optional: --threshold <fraction> - allowed throughput drop, defaults to 0.2");
+            System.out.println("Optional: --record - write results to the baseline file instead of comparing");
+            return;
+        }
+        boolean record = argList.remove("--record");
+        final List<Integer> sizes = new ArrayList<>(Arrays.asList(1000, 10000, 100000));
+        final int[] runs = {3};
+        final File[] baseline = {new File("perf-baseline.json")};
+        final double[] threshold = {0.2};
+        Map<String, Consumer<String>> parsers = new HashMap<>();
+        parsers.put("--sizes", value -> {
+            sizes.clear();
+            for (String size : value.split(",")) {
+                sizes.add(Integer.parseInt(size.trim()));
+            }
+        });
+        parsers.put("--runs", value -> runs[0] = Integer.parseInt(value));
+        parsers.put("--baseline", value -> baseline[0] = new File(value));
+        parsers.put("--threshold", value -> threshold[0] = Double.parseDouble(value));
+        List<String> remainingArgs = ArgsParsingUtil.parse(argList, parsers);
+        if (remainingArgs.size() > 0) {
+            throw fatal("Too many arguments:" + remainingArgs);
+        }
+
+        Map<String, Double> results = new LinkedHashMap<>();
+        for (int size : sizes) {
+            results.put("simple-" + size, measure("simple", size, runs[0], false));
+            results.put("flipLastCommit-" + size, measure("flipLastCommit", size, runs[0], true));
+        }
+
+        if (record) {
+            writeBaseline(baseline[0], results);
+            System.out.println("Baseline written to " + baseline[0]);
+            return;
+        }
+        if (baseline[0].exists() == false) {
+            throw fatal("Baseline " + baseline[0] + " not found, create it with --record");
+        }
+        Map<String, Double> expected = readBaseline(baseline[0]);
+        List<String> regressions = new ArrayList<>();
+        System.out.println(format("%-24s %14s %14s %8s", "scenario", "files/s", "baseline", "change"));
+        for (Entry<String, Double> entry : results.entrySet()) {
+            Double base = expected.get(entry.getKey());
+            if (base == null) {
+                System.out.println(format("%-24s %14.0f %14s %8s", entry.getKey(), entry.getValue(), "-", "-"));
+                continue;
+            }
+            double change = entry.getValue() / base - 1;
+            System.out.println(format("%-24s %14.0f %14.0f %+7.1f%%", entry.getKey(), entry.getValue(), base, change * 100));
+            if (change < -threshold[0]) {
+                regressions.add(entry.getKey());
+            }
+        }
+        if (regressions.isEmpty() == false) {
+            throw fatal(format("Throughput dropped by more than %.0f%% in %s", threshold[0] * 100, regressions));
+        }
+    }
+
+    /**
+     * @return best throughput in files per second
+     */
+    static double measure(String mainRunner, int size, int runs, boolean git) throws Exception {
+        RepositoryRunner runner = Bump.getRepositoryMainRunner(mainRunner).prepare(git ? FLIP_ARGS : SIMPLE_ARGS);
+        long bestNanos = Long.MAX_VALUE;
+        for (int run = 0; run < runs; run++) {
+            File folder = Files.createTempDir();
+            try {
+                SyntheticRepository repository = new SyntheticRepository("frinx").files(size);
+                int files = git ? repository.generateGitRepository(folder) : repository.generate(folder);
+                if (files != size) {
+                    throw new IllegalStateException(format("Generated %d files instead of %d", files, size));
+                }
+                // transformers report every file and changed line, keep it out of the measurement and the console
+                PrintStream out = System.out, err = System.err;
+                PrintStream nullStream = new PrintStream(ByteStreams.nullOutputStream());
+                System.setOut(nullStream);
+                System.setErr(nullStream);
+                long start = System.nanoTime();
+                try {
+                    runner.run(folder);
+                } finally {
+                    bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+                    System.setOut(out);
+                    System.setErr(err);
+                }
+            } finally {
+                FileUtils.deleteDirectory(folder);
+            }
+        }
+        double filesPerSecond = size / (bestNanos / 1e9);
+        System.out.println(format("%s on %d files: %.0f ms, %.0f files/s", mainRunner, size, bestNanos / 1e6, filesPerSecond));
+        return filesPerSecond;
+    }
+
+    static Map<String, Double> readBaseline(File file) throws IOException {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> json = (Map<String, Object>) Json.parse(Files.toString(file, Charsets.UTF_8));
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (Entry<String, Object> entry : json.entrySet()) {
+            result.put(entry.getKey(), ((Number) entry.getValue()).doubleValue());
+        }
+        return result;
+    }
+
+    static void writeBaseline(File file, Map<String, Double> results) throws IOException {
+        StringBuilder sb = new StringBuilder("{\n");
+        for (Entry<String, Double> entry : results.entrySet()) {
+            sb.append(sb.length() > 2 ? ",\n" : "").append("  ").append(Json.quote(entry.getKey())).append(": ")
+                    .append(format(Locale.ROOT, "%.1f", entry.getValue()));
+        }
+        Files.write(sb.append("\n}\n").toString(), file, Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,249 @@
+package io.frinx.utils.bump.fixture;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+/**
+ * Generates synthetic trees resembling real repositories: nested maven modules with pom.xml referring to the parent,
+ * properties and dependencies, features.xml with mvn: urls, java sources that are never transformed
+ * and .patch files with large hunks.
+ * <p>
+ * Own versions of modules always carry the suffix, suffix density is the share of dependency, property and bundle
+ * versions carrying it, the rest are third party versions. Output depends only on the settings and the seed.
+ */
+public class SyntheticRepository {
+
+    private static final int SOURCES_PER_MODULE = 7;
+    private static final int DEPENDENCIES_PER_MODULE = 5;
+    private static final int PROPERTIES_PER_MODULE = 3;
+    private static final int BUNDLES_PER_FEATURE = 4;
+
+    private final String suffix;
+    private int files = 1000;
+    private int fanout = 8;
+    private double suffixDensity = 0.5;
+    private int longLineLength = 1000;
+    private int patchEvery = 10;
+    private int patchHunks = 100;
+    private long seed = 42;
+
+    public SyntheticRepository(String suffix) {
+        this.suffix = suffix;
+    }
+
+    /**
+     * Total number of files to generate.
+     */
+    public SyntheticRepository files(int files) {
+        this.files = files;
+        return this;
+    }
+
+    /**
+     * Number of child modules of each aggregator.
+     */
+    public SyntheticRepository fanout(int fanout) {
+        this.fanout = fanout;
+        return this;
+    }
+
+    public SyntheticRepository suffixDensity(double suffixDensity) {
+        this.suffixDensity = suffixDensity;
+        return this;
+    }
+
+    /**
+     * Length of the description line in each pom.xml, 0 for none.
+     */
+    public SyntheticRepository longLineLength(int longLineLength) {
+        this.longLineLength = longLineLength;
+        return this;
+    }
+
+    /**
+     * Every n-th module gets a .patch file with given number of hunks, 0 for no patches.
+     */
+    public SyntheticRepository patches(int patchEvery, int patchHunks) {
+        this.patchEvery = patchEvery;
+        this.patchHunks = patchHunks;
+        return this;
+    }
+
+    public SyntheticRepository seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Generate the tree into given folder.
+     *
+     * @return number of generated files
+     */
+    public int generate(File folder) throws IOException {
+        Random random = new Random(seed);
+        List<File> moduleFolders = new ArrayList<>();
+        int written = 0;
+        for (int module = 0; written < files; module++) {
+            int parent = (module - 1) / fanout;
+            File moduleFolder = module == 0 ? folder : new File(moduleFolders.get(parent), "module" + module);
+            moduleFolders.add(moduleFolder);
+            moduleFolder.mkdirs();
+
+            write(new File(moduleFolder, "pom.xml"), pom(module, parent, random));
+            written++;
+            if (written < files) {
+                write(new File(moduleFolder, "features.xml"), features(module, random));
+                written++;
+            }
+            if (written < files && patchEvery > 0 && module % patchEvery == 0) {
+                write(new File(moduleFolder, "module" + module + ".patch"), String.join("\n", patch(patchHunks)) + "\n");
+                written++;
+            }
+            File sources = new File(moduleFolder, "src/main/java/org/example/module" + module);
+            for (int i = 0; i < SOURCES_PER_MODULE && written < files; i++) {
+                sources.mkdirs();
+                write(new File(sources, "Class" + i + ".java"), "package org.example.module" + module + ";\n\n"
+                        + "public class Class" + i + " {\n    public static final String VERSION = \"" + version(module)
+                        + "\";\n}\n");
+                written++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Generate the tree into given folder and commit it, then commit a release of every suffixed version,
+     * e.g. 1.2.0.frinx-SNAPSHOT to 1.2.1.frinx, as expected by flipLastCommit.
+     *
+     * @return number of generated files
+     */
+    public int generateGitRepository(File folder) throws IOException, GitAPIException {
+        int written = generate(folder);
+        try (Git git = Git.init().setDirectory(folder).call()) {
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("Snapshot").call();
+            release(folder);
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("Release").call();
+        }
+        return written;
+    }
+
+    /**
+     * Reverse patch of a release, as created by flipLastCommit, with given number of hunks.
+     */
+    public List<String> patch(int hunks) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < hunks; i++) {
+            lines.add("diff --git a/module" + i + "/pom.xml b/module" + i + "/pom.xml");
+            lines.add("--- a/module" + i + "/pom.xml");
+            lines.add("+++ b/module" + i + "/pom.xml");
+            lines.add("@@ -10,7 +10,7 @@");
+            lines.add("   <parent>");
+            lines.add("     <groupId>org.example</groupId>");
+            lines.add("     <artifactId>module" + i + "</artifactId>");
+            lines.add("-    <version>1." + i + ".0." + suffix + "</version>");
+            lines.add("-    <bundle version=\"1." + i + ".0." + suffix + "\"/>");
+            lines.add("+    <version>1." + i + ".1." + suffix + "-SNAPSHOT</version>");
+            lines.add("+    <bundle version=\"1." + i + ".1." + suffix + "-SNAPSHOT\"/>");
+            lines.add("   </parent>");
+            lines.add("   <packaging>bundle</packaging>");
+        }
+        return lines;
+    }
+
+    private void release(File folder) throws IOException {
+        File[] children = folder.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                if (".git".equals(child.getName()) == false) {
+                    release(child);
+                }
+            } else if ("pom.xml".equals(child.getName()) || "features.xml".equals(child.getName())) {
+                String content = Files.toString(child, Charsets.UTF_8);
+                write(child, content.replace(".0." + suffix + "-SNAPSHOT", ".1." + suffix));
+            }
+        }
+    }
+
+    private String pom(int module, int parent, Random random) {
+        StringBuilder sb = new StringBuilder()
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n")
+                .append("  <modelVersion>4.0.0</modelVersion>\n");
+        if (module > 0) {
+            sb.append("  <parent>\n")
+                    .append("    <groupId>org.example</groupId>\n")
+                    .append("    <artifactId>module").append(parent).append("</artifactId>\n")
+                    .append("    <version>").append(version(parent)).append("</version>\n")
+                    .append("  </parent>\n");
+        }
+        sb.append("  <artifactId>module").append(module).append("</artifactId>\n")
+                .append("  <version>").append(version(module)).append("</version>\n");
+        if (longLineLength > 0) {
+            sb.append("  <description>").append(Strings.repeat("lorem ipsum ", longLineLength / 12 + 1), 0, longLineLength)
+                    .append("</description>\n");
+        }
+        sb.append("  <properties>\n")
+                .append("    <project.build.sourceEncoding>UTF-8</project.build.sourceEncoding>\n");
+        for (int i = 0; i < PROPERTIES_PER_MODULE; i++) {
+            sb.append("    <dep").append(i).append(".version>").append(dependencyVersion(random))
+                    .append("</dep").append(i).append(".version>\n");
+        }
+        sb.append("  </properties>\n")
+                .append("  <dependencies>\n");
+        for (int i = 0; i < DEPENDENCIES_PER_MODULE; i++) {
+            sb.append("    <dependency>\n")
+                    .append("      <groupId>org.example</groupId>\n")
+                    .append("      <artifactId>dep").append(random.nextInt(1000)).append("</artifactId>\n")
+                    .append("      <version>").append(dependencyVersion(random)).append("</version>\n")
+                    .append("    </dependency>\n");
+        }
+        return sb.append("  </dependencies>\n")
+                .append("</project>\n")
+                .toString();
+    }
+
+    private String features(int module, Random random) {
+        StringBuilder sb = new StringBuilder()
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<features xmlns=\"http://karaf.apache.org/xmlns/features/v1.2.0\">\n")
+                .append("  <feature name=\"odl-module").append(module).append("\" version=\"").append(version(module))
+                .append("\">\n")
+                .append("    <bundle>mvn:org.example/module").append(module).append('/').append(version(module))
+                .append("</bundle>\n");
+        for (int i = 0; i < BUNDLES_PER_FEATURE; i++) {
+            sb.append("    <bundle>mvn:org.example/dep").append(random.nextInt(1000)).append('/')
+                    .append(dependencyVersion(random)).append("</bundle>\n");
+        }
+        return sb.append("  </feature>\n")
+                .append("</features>\n")
+                .toString();
+    }
+
+    private String version(int module) {
+        return "1." + (module % 100) + ".0." + suffix + "-SNAPSHOT";
+    }
+
+    private String dependencyVersion(Random random) {
+        if (random.nextDouble() < suffixDensity) {
+            return "2." + random.nextInt(20) + ".0." + suffix + "-SNAPSHOT";
+        }
+        return "3." + random.nextInt(20) + ".1";
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(content, file, Charsets.UTF_8);
+    }
+}
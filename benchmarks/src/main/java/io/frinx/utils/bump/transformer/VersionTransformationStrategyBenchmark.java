@@ -0,0 +1,67 @@
+package io.frinx.utils.bump.transformer;
+
+import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.SnapshotTransformation;
+import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.VersionTransformationStrategy;
+import io.frinx.utils.bump.transformer.util.VersionFactory.Version.VersionParsingException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Strategy for every snapshot transformation, with and without an in process sed script. Benchmark "hit" repeats
+ * a single version, so it measures the memoized path. Benchmark "miss" cycles through more distinct versions than
+ * the strategy caches, so every call transforms the version.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionTransformationStrategyBenchmark {
+
+    private static final int DISTINCT_VERSIONS = 1 << 14;
+
+    @Param({"NONE", "FLIP", "ADD", "DROP"})
+    public SnapshotTransformation snapshot;
+
+    @Param({"", "s/rc1-frinx/frinx/"})
+    public String preprocessSed;
+
+    private VersionTransformationStrategy strategy;
+    private String[] versions;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        strategy = new VersionTransformationStrategy("frinx", snapshot, Optional.empty(),
+                preprocessSed.isEmpty() ? Optional.empty() : Optional.of(preprocessSed));
+        // add only accepts releases, drop only snapshots
+        String snapshotSuffix = snapshot == SnapshotTransformation.ADD ? "" : "-SNAPSHOT";
+        versions = new String[DISTINCT_VERSIONS];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = "1." + (i / 100) + "." + (i % 100) + ".rc1-frinx" + snapshotSuffix;
+        }
+    }
+
+    @Benchmark
+    public String hit() throws VersionParsingException {
+        return strategy.transform(versions[0]);
+    }
+
+    @Benchmark
+    public String miss() throws VersionParsingException {
+        next = (next + 1) & (DISTINCT_VERSIONS - 1);
+        return strategy.transform(versions[next]);
+    }
+}
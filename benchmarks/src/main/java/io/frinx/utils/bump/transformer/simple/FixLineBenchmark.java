@@ -0,0 +1,69 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import com.google.common.base.Strings;
+import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.SnapshotTransformation;
+import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.VersionTransformationStrategy;
+import io.frinx.utils.bump.transformer.simple.SimpleMainRunner.BumpMatchingSuffixSimpleTransformer;
+import java.io.File;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single line of pom.xml or features.xml. Suffix "frinx" is handled by the scanner, "frinx[0-9]*" falls back
+ * to regular expressions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixLineBenchmark {
+
+    @Param({"short", "long", "nonMatching"})
+    public String line;
+
+    @Param({"frinx", "frinx[0-9]*"})
+    public String suffix;
+
+    private final File file = new File("pom.xml");
+    private BumpMatchingSuffixSimpleTransformer transformer;
+    private String input;
+
+    @Setup
+    public void setUp() {
+        transformer = new BumpMatchingSuffixSimpleTransformer(new VersionTransformationStrategy(suffix,
+                SnapshotTransformation.FLIP, Optional.empty(), Optional.empty()));
+        switch (line) {
+            case "short":
+                input = "    <version>1.2.3.frinx-SNAPSHOT</version>";
+                break;
+            case "long":
+                input = "    <bundle description=\"" + Strings.repeat("lorem ipsum ", 100)
+                        + "\" version=\"1.2.3.frinx\" start-level=\"80\">"
+                        + "mvn:org.opendaylight.controller/sal-binding-api/1.2.3.frinx</bundle>";
+                break;
+            case "nonMatching":
+                input = "    <groupId>org.opendaylight.controller</groupId>";
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown line " + line);
+        }
+    }
+
+    @Benchmark
+    public String fixLine() {
+        return transformer.fixLine(input, file, 1);
+    }
+}
@@ -0,0 +1,52 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import io.frinx.utils.bump.fixture.SyntheticRepository;
+import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.SnapshotTransformation;
+import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.VersionTransformationStrategy;
+import io.frinx.utils.bump.transformer.simple.BumpSnapshotPatchTransformerFactory.BumpSnapshotPatchTransformer;
+import java.io.File;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reverse patch of a version bump, as produced by flipLastCommit, with given number of hunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatchFixLinesBenchmark {
+
+    @Param({"100", "10000"})
+    public int hunks;
+
+    private final File file = new File("bump.patch");
+    private BumpSnapshotPatchTransformer transformer;
+    private List<String> patch;
+
+    @Setup
+    public void setUp() {
+        transformer = BumpSnapshotPatchTransformerFactory.create(new VersionTransformationStrategy("frinx",
+                SnapshotTransformation.FLIP, Optional.empty(), Optional.empty()));
+        patch = new SyntheticRepository("frinx").patch(hunks);
+    }
+
+    @Benchmark
+    public List<String> fixLines() {
+        return transformer.fixLines(patch, file);
+    }
+}
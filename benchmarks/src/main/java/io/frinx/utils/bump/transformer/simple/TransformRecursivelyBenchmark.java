@@ -0,0 +1,70 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import com.google.common.io.Files;
+import io.frinx.utils.bump.fixture.SyntheticRepository;
+import io.frinx.utils.bump.transformer.FileTransformer;
+import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.SnapshotTransformation;
+import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.VersionTransformationStrategy;
+import io.frinx.utils.bump.transformer.simple.SimpleMainRunner.BumpMatchingSuffixSimpleTransformer;
+import io.frinx.utils.bump.transformer.util.FileUtil;
+import io.frinx.utils.bump.transformer.util.FileUtil.ResultCounters;
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Simple transformation of a tree generated by {@link SyntheticRepository}. Snapshot transformation none reads
+ * every accepted file without writing, flip rewrites every accepted file on each invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TransformRecursivelyBenchmark {
+
+    @Param({"1000", "10000"})
+    public int files;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"NONE", "FLIP"})
+    public SnapshotTransformation snapshot;
+
+    private File folder;
+    private FileTransformer transformer;
+
+    @Setup
+    public void setUp() throws IOException {
+        folder = Files.createTempDir();
+        new SyntheticRepository("frinx").files(files).generate(folder);
+        transformer = new BumpMatchingSuffixSimpleTransformer(new VersionTransformationStrategy("frinx", snapshot,
+                Optional.empty(), Optional.empty())).toFileTransformer();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Benchmark
+    public ResultCounters transformRecursively() throws IOException {
+        return FileUtil.transformRecursively(folder, transformer, threads);
+    }
+}
@@ -0,0 +1,52 @@
+package io.frinx.utils.bump.transformer.util;
+
+import io.frinx.utils.bump.transformer.util.SedUtil.SedMode;
+import io.frinx.utils.bump.transformer.util.SedUtil.SedScript;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link SedUtil#sed(String, String)} compiles the script on every call. The first script runs in process,
+ * the second one has a line address, so it always forks sed. Benchmark "compiled" applies a script compiled
+ * once, as the strategy does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SedBenchmark {
+
+    private static final String VERSION = "1.2.3.rc1-frinx-SNAPSHOT";
+
+    @Param({"s/rc1-frinx/frinx/", "1s/rc1-frinx/frinx/"})
+    public String script;
+
+    private SedScript compiled;
+
+    @Setup
+    public void setUp() {
+        compiled = SedUtil.compile(script, SedMode.COPROCESS);
+    }
+
+    @Benchmark
+    public String sed() {
+        return SedUtil.sed(VERSION, script);
+    }
+
+    @Benchmark
+    public String compiled() {
+        return compiled.apply(VERSION);
+    }
+}
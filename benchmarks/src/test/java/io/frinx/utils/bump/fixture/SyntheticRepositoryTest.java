@@ -0,0 +1,69 @@
+package io.frinx.utils.bump.fixture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import io.frinx.utils.bump.Bump;
+import java.io.File;
+import java.util.Arrays;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Test;
+
+public class SyntheticRepositoryTest {
+
+    @Test
+    public void testGenerate() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            assertEquals(250, new SyntheticRepository("frinx").files(250).generate(folder));
+            assertEquals(250, FileUtils.listFiles(folder, null, true).size());
+            String pom = Files.toString(new File(folder, "module1/pom.xml"), Charsets.UTF_8);
+            assertTrue(pom, pom.contains("<artifactId>module0</artifactId>\n    <version>1.0.0.frinx-SNAPSHOT</version>"));
+            assertTrue(new File(folder, "module1/module9/features.xml").exists());
+            assertTrue(new File(folder, "module1/module10/module10.patch").exists());
+
+            Bump.getRepositoryMainRunner("simple").prepare(Arrays.asList("--suffix", "frinx", "--snapshot", "drop")).run(folder);
+            pom = Files.toString(new File(folder, "module1/pom.xml"), Charsets.UTF_8);
+            assertFalse(pom, pom.contains("-SNAPSHOT"));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test
+    public void testSuffixDensity() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            new SyntheticRepository("frinx").files(2).suffixDensity(0).longLineLength(0).generate(folder);
+            String features = Files.toString(new File(folder, "features.xml"), Charsets.UTF_8);
+            assertEquals("only own version carries the suffix", 2, features.split("frinx", -1).length - 1);
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test
+    public void testGenerateGitRepository() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            new SyntheticRepository("frinx").files(100).generateGitRepository(folder);
+            Bump.getRepositoryMainRunner("flipLastCommit")
+                    .prepare(Arrays.asList("--suffix", "frinx", "--snapshot", "flip", "-m", "Bump")).run(folder);
+            try (Git git = Git.open(folder)) {
+                RevCommit head = Lists.newArrayList(git.log().call()).get(0);
+                assertEquals("Bump", head.getFullMessage());
+                assertTrue(git.status().call().isClean());
+            }
+            String pom = Files.toString(new File(folder, "pom.xml"), Charsets.UTF_8);
+            assertTrue(pom, pom.contains("<version>1.0.1.frinx-SNAPSHOT</version>"));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+#!/bin/bash
+# Thin client of the bump daemon started by: bump.sh daemon
+# Forwards arguments and working directory to the daemon and prints output of the run, e.g.
+#   bump-client.sh simple --suffix frinxodl --snapshot drop
+#   bump-client.sh --stop
+
+PORT=${BUMP_DAEMON_PORT:-7117}
+TOKEN_FILE="$HOME/.bump/daemon-$PORT.token"
+if [ ! -r "$TOKEN_FILE" ]; then
+    echo "Bump daemon is not running on port $PORT, start it by: bump.sh daemon --port $PORT" >&2
+    exit 1
+fi
+for arg in "$@"; do
+    if [[ "$arg" == *$'\n'* ]]; then
+        echo "Arguments cannot contain new lines" >&2
+        exit 1
+    fi
+done
+if ! exec 3<>"/dev/tcp/127.0.0.1/$PORT"; then
+    echo "Cannot connect to bump daemon on port $PORT" >&2
+    exit 1
+fi
+{
+    echo "BUMP1 $(cat "$TOKEN_FILE")"
+    pwd
+    echo $#
+    for arg in "$@"; do
+        printf '%s\n' "$arg"
+    done
+} >&3
+code=1
+while IFS= read -r line <&3; do
+    case "$line" in
+        "1 "*) printf '%s\n' "${line:2}" ;;
+        "2 "*) printf '%s\n' "${line:2}" >&2 ;;
+        "exit "*) code=${line:5} ;;
+    esac
+done
+exec 3<&-
+exit "$code"
@@ -19,5 +19,11 @@ if [ $SKIP_BUILD == false ]; then
     echo $SUM > $SUMFILE
 fi
 
+# archive of classes loaded by a training run, built on JDK 13 or newer
+CDS_ARCHIVE="$DIR/target/bump.jsa"
+if [ -f "$CDS_ARCHIVE" ]; then
+    JAVA_OPTS="-XX:SharedArchiveFile=$CDS_ARCHIVE -Xshare:auto -Xlog:cds=off -Xlog:cds+dynamic=off $JAVA_OPTS"
+fi
+
 java -jar $JAVA_OPTS "$DIR/target/bump-1.0.0-SNAPSHOT.jar" "$@"
 
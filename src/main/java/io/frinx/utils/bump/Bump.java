@@ -8,28 +8,60 @@ package io.frinx.utils.bump;
 
 import static io.frinx.utils.bump.transformer.util.LoggingUtil.fatal;
 
-import io.frinx.utils.bump.transformer.FlipLastCommitMainRunner;
 import io.frinx.utils.bump.transformer.MainRunner;
-import io.frinx.utils.bump.transformer.simple.SimpleMainRunner;
+import io.frinx.utils.bump.transformer.MainRunnerProvider;
+import io.frinx.utils.bump.transformer.RepositoryMainRunner;
+import io.frinx.utils.bump.transformer.util.Metrics;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class Bump {
 
     public static final boolean ignoreErrors;
-    private static final Map<String, MainRunner> namesToMainRunners;
+    private static final Map<String, MainRunnerProvider> namesToProviders;
+    // runners are created on first use, so that classes of the other runners are not loaded
+    private static final ConcurrentMap<String, MainRunner> namesToMainRunners = new ConcurrentHashMap<>();
 
     static {
         ignoreErrors = Boolean.parseBoolean(System.getProperty("ignoreErrors"));
-        Map<String, MainRunner> map = new HashMap<>();
+        Map<String, MainRunnerProvider> map = new HashMap<>();
+        for (MainRunnerProvider provider : ServiceLoader.load(MainRunnerProvider.class,
+                MainRunnerProvider.class.getClassLoader())) {
+            map.putIfAbsent(provider.getName(), provider);
+        }
+        namesToProviders = Collections.unmodifiableMap(map);
+    }
+
+    public static MainRunner getMainRunner(String name) {
+        MainRunnerProvider provider = namesToProviders.get(name);
+        if (provider == null) {
+            return null;
+        }
+        return namesToMainRunners.computeIfAbsent(name, key -> provider.create());
+    }
+
+    /**
+     * @return main runner of given name if it can be prepared for many repositories, null otherwise
+     */
+    public static RepositoryMainRunner getRepositoryMainRunner(String name) {
+        MainRunner mainRunner = getMainRunner(name);
+        return mainRunner instanceof RepositoryMainRunner ? (RepositoryMainRunner) mainRunner : null;
+    }
 
-        map.put("flipLastCommit", new FlipLastCommitMainRunner());
-        map.put("simple", new SimpleMainRunner());
-        namesToMainRunners = Collections.unmodifiableMap(map);
+    public static void printHelp() {
+        namesToProviders.keySet().stream().sorted().forEach(System.out::println);
+        System.out.println("Optional, with any main runner: --stats - print timing of phases at the end of the run");
+        System.out.println("Optional, with any main runner: --stats-json <file> - write timing of phases as JSON");
     }
 
     public static void main(String[] args) throws Exception {
@@ -37,16 +69,38 @@ public class Bump {
             throw fatal("Not enough arguments, try -h");
         }
         if (args.length == 1 && ("-h".equals(args[0]) || "--help".equals(args[0]))) {
-            namesToMainRunners.keySet().stream().sorted().forEach(System.out::println);
+            printHelp();
             System.exit(0);
         }
-        String name = args[0];
-        MainRunner mainRunner = namesToMainRunners.get(name);
+        List<String> shifted = new ArrayList<>(Arrays.asList(args));
+        // stats options are accepted anywhere, so that they can be appended to any command line
+        boolean stats = shifted.remove("--stats");
+        Optional<Path> statsJson = Optional.empty();
+        int statsJsonIndex = shifted.indexOf("--stats-json");
+        if (statsJsonIndex != -1) {
+            if (statsJsonIndex + 1 == shifted.size()) {
+                throw fatal("--stats-json requires a file");
+            }
+            statsJson = Optional.of(Paths.get(shifted.get(statsJsonIndex + 1)));
+            shifted.subList(statsJsonIndex, statsJsonIndex + 2).clear();
+        }
+        if (stats || statsJson.isPresent()) {
+            Metrics.enable();
+        }
+        if (shifted.isEmpty()) {
+            throw fatal("Not enough arguments, try -h");
+        }
+        String name = shifted.remove(0);
+        MainRunner mainRunner = getMainRunner(name);
         if (mainRunner == null) {
             throw fatal(String.format("Main runner '%s' not found, try -h", name));
         }
-        List<String> shifted = new ArrayList<>(Arrays.asList(args));
-        shifted.remove(0);
         mainRunner.run(shifted);
+        if (stats) {
+            System.out.print(Metrics.report());
+        }
+        if (statsJson.isPresent()) {
+            Metrics.writeJson(statsJson.get());
+        }
     }
 }
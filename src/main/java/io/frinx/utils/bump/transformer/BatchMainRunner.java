@@ -0,0 +1,191 @@
+package io.frinx.utils.bump.transformer;
+
+import static io.frinx.utils.bump.transformer.util.LoggingUtil.fatal;
+import static java.lang.String.format;
+
+import io.frinx.utils.bump.Bump;
+import io.frinx.utils.bump.transformer.util.ArgsParsingUtil;
+import io.frinx.utils.bump.transformer.util.FileUtil;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs another main runner in every repository listed in a manifest, within one JVM.
+ * Repositories are spread over a work-stealing pool; simple mode with more than one thread also transforms its files
+ * on this pool. A failure in one repository is reported and does not stop the others.
+ * <p>
+ * Manifest contains one repository path per line, relative paths are resolved against the manifest's folder.
+ * Empty lines and lines starting with # are ignored.
+ */
+public class BatchMainRunner implements MainRunner {
+
+    public static class Provider implements MainRunnerProvider {
+
+        @Override
+        public String getName() {
+            return "batch";
+        }
+
+        @Override
+        public MainRunner create() {
+            return new BatchMainRunner();
+        }
+    }
+
+    @Override
+    public void run(List<String> args) throws Exception {
+        if (args.size() == 0) {
+            throw fatal("Not enough arguments, try -h");
+        }
+        if (args.size() == 1 && "-h".equals(args.get(0))) {
+            System.out.println("Usage: --manifest <file> [--parallel <n>] <main runner> <main runner arguments>");
+            System.out.println("Required: --manifest <file> - repository paths, one per line");
+            System.out.println("Optional: --parallel <n> - number of repositories transformed in parallel, defaults to number of cores");
+            return;
+        }
+
+        final File[] manifest = {null};
+        final int[] parallel = {FileUtil.defaultThreads()};
+        Map<String, Consumer<String>> parsers = new HashMap<>();
+        parsers.put("--manifest", value -> manifest[0] = new File(value));
+        parsers.put("--parallel", value -> parallel[0] = Integer.parseInt(value));
+        List<String> remainingArgs = ArgsParsingUtil.parse(args, parsers);
+        if (manifest[0] == null) {
+            throw fatal("Parameter --manifest <file> not found");
+        }
+        if (parallel[0] < 1) {
+            throw fatal("Parameter --parallel must be positive, got " + parallel[0]);
+        }
+        if (remainingArgs.isEmpty()) {
+            throw fatal("Main runner not specified, try -h");
+        }
+        String name = remainingArgs.remove(0);
+        RepositoryMainRunner mainRunner = Bump.getRepositoryMainRunner(name);
+        if (mainRunner == null) {
+            throw fatal(format("Main runner '%s' cannot be used in batch", name));
+        }
+        RepositoryRunner runner = mainRunner.prepare(remainingArgs);
+
+        List<File> repositories = readManifest(manifest[0]);
+        long start = System.nanoTime();
+        List<RepositoryReport> reports = runAll(repositories, runner, parallel[0]);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        runner.printStats();
+        printReport(reports, millis);
+        long failed = reports.stream().filter(report -> report.isSuccess() == false).count();
+        if (failed > 0) {
+            throw fatal(format("%d of %d repositories failed", failed, reports.size()));
+        }
+    }
+
+    static List<File> readManifest(File manifest) throws IOException {
+        File baseFolder = manifest.getAbsoluteFile().getParentFile();
+        List<File> repositories = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            File repository = new File(line);
+            repositories.add(repository.isAbsolute() ? repository : new File(baseFolder, line));
+        }
+        return repositories;
+    }
+
+    /**
+     * @return reports in the order of given repositories
+     */
+    static List<RepositoryReport> runAll(List<File> repositories, RepositoryRunner runner, int parallel) {
+        ForkJoinPool pool = new ForkJoinPool(parallel);
+        try {
+            List<ForkJoinTask<RepositoryReport>> tasks = new ArrayList<>();
+            for (File repository : repositories) {
+                tasks.add(pool.submit(() -> runOne(repository, runner)));
+            }
+            List<RepositoryReport> reports = new ArrayList<>();
+            for (ForkJoinTask<RepositoryReport> task : tasks) {
+                reports.add(task.join());
+            }
+            return reports;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static RepositoryReport runOne(File repository, RepositoryRunner runner) {
+        long start = System.nanoTime();
+        try {
+            if (repository.isDirectory() == false) {
+                throw new FileNotFoundException("Not a directory: " + repository);
+            }
+            String summary = runner.run(repository);
+            return new RepositoryReport(repository, System.nanoTime() - start, summary, null);
+        } catch (Throwable t) {
+            // errors of a single repository, e.g. a stack overflow on a deeply nested file, do not stop the batch,
+            // but a JVM out of memory cannot go on
+            if (t instanceof VirtualMachineError && t instanceof StackOverflowError == false) {
+                throw (VirtualMachineError) t;
+            }
+            System.err.println("Failed " + repository + ": " + t);
+            t.printStackTrace();
+            return new RepositoryReport(repository, System.nanoTime() - start, null, t);
+        }
+    }
+
+    private static void printReport(List<RepositoryReport> reports, long millis) {
+        System.out.println("Batch report:");
+        for (RepositoryReport report : reports) {
+            System.out.println(report);
+        }
+        long failed = reports.stream().filter(report -> report.isSuccess() == false).count();
+        System.out.println(format("Repositories %d, succeeded %d, failed %d in %d ms",
+                reports.size(), reports.size() - failed, failed, millis));
+    }
+
+    static class RepositoryReport {
+        private final File repository;
+        private final long nanos;
+        private final String summary;
+        private final Throwable failure;
+
+        RepositoryReport(File repository, long nanos, String summary, Throwable failure) {
+            this.repository = repository;
+            this.nanos = nanos;
+            this.summary = summary;
+            this.failure = failure;
+        }
+
+        File getRepository() {
+            return repository;
+        }
+
+        String getSummary() {
+            return summary;
+        }
+
+        Throwable getFailure() {
+            return failure;
+        }
+
+        boolean isSuccess() {
+            return failure == null;
+        }
+
+        @Override
+        public String toString() {
+            return format("%-6s %8d ms  %s  %s", isSuccess() ? "OK" : "FAILED", TimeUnit.NANOSECONDS.toMillis(nanos),
+                    repository, isSuccess() ? summary : failure);
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package io.frinx.utils.bump.transformer;
+
+import static io.frinx.utils.bump.transformer.util.LoggingUtil.fatal;
+import static java.lang.String.format;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.frinx.utils.bump.Bump;
+import io.frinx.utils.bump.transformer.util.ArgsParsingUtil;
+import io.frinx.utils.bump.transformer.util.LoggingUtil;
+import io.frinx.utils.bump.transformer.util.LoggingUtil.FatalError;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a warm JVM serving runs requested by bump-client.sh, so that repeated runs do not pay for JVM startup,
+ * class loading and a cold JIT. Runners prepared for the same arguments are reused, together with their compiled
+ * patterns, sed coprocesses and memoized versions, and so are result caches of repositories, see
+ * {@link io.frinx.utils.bump.transformer.util.ResultCache}. Requests for different repositories run concurrently,
+ * requests for the same repository one after another.
+ * <p>
+ * Daemon listens on a loopback port. Only clients that send the random token written to
+ * ~/.bump/daemon-&lt;port&gt;.token, readable by the owner only, are served. Protocol, lines in UTF-8:
+ * <pre>
+ *   request:  BUMP1 &lt;token&gt;, working directory, number of arguments, one line per argument
+ *   response: "1 " or "2 " followed by a line of standard output or error, "exit &lt;code&gt;" at the end
+ * </pre>
+ * Output of concurrent requests is told apart by the thread printing it, threads started by a request inherit its
+ * output. Work of a request therefore runs on threads it starts, never on shared pools, and threads that outlive
+ * a request, e.g. of sed coprocesses, leave printing to threads of the request being served.
+ * Failures end the request with exit code 1 instead of exiting the JVM.
+ */
+public class DaemonMainRunner implements MainRunner {
+
+    public static final int DEFAULT_PORT = 7117;
+    static final String PROTOCOL = "BUMP1";
+    static final String STOP = "--stop";
+    // a client that does not send its whole request in time is dropped
+    static final int READ_TIMEOUT_MILLIS = 10_000;
+
+    public static class Provider implements MainRunnerProvider {
+
+        @Override
+        public String getName() {
+            return "daemon";
+        }
+
+        @Override
+        public MainRunner create() {
+            return new DaemonMainRunner();
+        }
+    }
+
+    @Override
+    public void run(List<String> args) throws Exception {
+        if (args.size() == 1 && "-h".equals(args.get(0))) {
+            System.out.println("Usage: [--port <n>] - serve runs requested by bump-client.sh until stopped by"
+                    + " bump-client.sh " + STOP);
+            System.out.println("Optional: --port <n> - loopback port to listen on, defaults to " + DEFAULT_PORT
+                    + ", the client reads it from BUMP_DAEMON_PORT");
+            return;
+        }
+        final int[] port = {DEFAULT_PORT};
+        Map<String, Consumer<String>> parsers = new HashMap<>();
+        parsers.put("--port", value -> port[0] = Integer.parseInt(value));
+        List<String> remainingArgs = ArgsParsingUtil.parse(args, parsers);
+        if (remainingArgs.size() > 0) {
+            throw fatal("Too many arguments:" + remainingArgs);
+        }
+        Path tokenDir = Paths.get(System.getProperty("user.home"), ".bump");
+        Daemon daemon = Daemon.start(port[0], tokenDir);
+        System.out.println(format("Bump daemon listening on %s, token in %s", daemon.getPort(), daemon.tokenFile));
+        daemon.awaitStop();
+    }
+
+    static class Daemon {
+        // output of the request running on this thread, inherited by threads it starts
+        private static final InheritableThreadLocal<OutputStream> OUT = new InheritableThreadLocal<>();
+        private static final InheritableThreadLocal<OutputStream> ERR = new InheritableThreadLocal<>();
+
+        private final ServerSocket server;
+        private final Path tokenFile;
+        private final byte[] token;
+        private final ExecutorService requests;
+        // arguments of prepared runners -> runner
+        private final Cache<List<String>, RepositoryRunner> runners =
+                CacheBuilder.newBuilder().maximumSize(32).build();
+        private final ConcurrentMap<Path, Object> repositoryLocks = new ConcurrentHashMap<>();
+        private final PrintStream originalOut = System.out, originalErr = System.err;
+        private final CountDownLatch stopped = new CountDownLatch(1);
+
+        private Daemon(ServerSocket server, Path tokenFile, byte[] token) {
+            this.server = server;
+            this.tokenFile = tokenFile;
+            this.token = token;
+            AtomicInteger requestCount = new AtomicInteger();
+            this.requests = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "bump-request-" + requestCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        /**
+         * Listen on given port, 0 for any free one, writing token of the daemon to the token directory.
+         */
+        static Daemon start(int port, Path tokenDir) throws IOException {
+            ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+            Path tokenFile = tokenDir.resolve("daemon-" + server.getLocalPort() + ".token");
+            byte[] token = new BigInteger(130, new SecureRandom()).toString(32).getBytes(StandardCharsets.UTF_8);
+            Files.createDirectories(tokenDir);
+            Files.deleteIfExists(tokenFile);
+            if (Files.getFileStore(tokenDir).supportsFileAttributeView("posix")) {
+                Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(
+                        PosixFilePermissions.fromString("rw-------")));
+            }
+            Files.write(tokenFile, token);
+            Daemon daemon = new Daemon(server, tokenFile, token);
+            try {
+                System.setOut(routing(daemon.originalOut, OUT));
+                System.setErr(routing(daemon.originalErr, ERR));
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+            LoggingUtil.setExitOnFatal(false);
+            Thread acceptor = new Thread(daemon::accept, "bump-daemon");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            return daemon;
+        }
+
+        private static PrintStream routing(PrintStream fallback, ThreadLocal<OutputStream> route)
+                throws UnsupportedEncodingException {
+            return new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    target().write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    target().write(b, off, len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    target().flush();
+                }
+
+                private OutputStream target() {
+                    OutputStream target = route.get();
+                    return target != null ? target : fallback;
+                }
+            }, true, StandardCharsets.UTF_8.name());
+        }
+
+        int getPort() {
+            return server.getLocalPort();
+        }
+
+        void awaitStop() throws InterruptedException {
+            stopped.await();
+        }
+
+        void stop() throws IOException {
+            if (stopped.getCount() == 0) {
+                return;
+            }
+            server.close();
+            requests.shutdown();
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+            LoggingUtil.setExitOnFatal(true);
+            Files.deleteIfExists(tokenFile);
+            stopped.countDown();
+        }
+
+        private void accept() {
+            while (server.isClosed() == false) {
+                try {
+                    Socket socket = server.accept();
+                    requests.execute(() -> handle(socket));
+                } catch (SocketException e) {
+                    // closed by stop
+                } catch (IOException e) {
+                    originalErr.println("Cannot accept request: " + e);
+                }
+            }
+        }
+
+        private void handle(Socket socket) {
+            try (Socket closed = socket) {
+                socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                        StandardCharsets.UTF_8));
+                Response response = new Response(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                        StandardCharsets.UTF_8)));
+                String header = in.readLine();
+                if (header == null || MessageDigest.isEqual((PROTOCOL + " " + new String(token, StandardCharsets.UTF_8))
+                        .getBytes(StandardCharsets.UTF_8), header.getBytes(StandardCharsets.UTF_8)) == false) {
+                    response.line('2', "Invalid token, is the daemon listening on this port?");
+                    response.exit(1);
+                    return;
+                }
+                Path workingDir = Paths.get(in.readLine());
+                int count = Integer.parseInt(in.readLine());
+                List<String> args = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    args.add(in.readLine());
+                }
+                int exitCode;
+                OUT.set(response.stdout);
+                ERR.set(response.stderr);
+                try {
+                    exitCode = serve(workingDir, args);
+                } catch (Throwable t) {
+                    if (t instanceof FatalError == false) {
+                        t.printStackTrace();
+                    }
+                    exitCode = 1;
+                } finally {
+                    System.out.flush();
+                    System.err.flush();
+                    OUT.remove();
+                    ERR.remove();
+                }
+                response.exit(exitCode);
+                if (Arrays.asList(STOP).equals(args)) {
+                    stop();
+                }
+            } catch (IOException | RuntimeException e) {
+                originalErr.println("Request failed: " + e);
+            }
+        }
+
+        /**
+         * @return exit code of the run
+         */
+        int serve(Path workingDir, List<String> args) throws Exception {
+            if (Arrays.asList(STOP).equals(args)) {
+                System.out.println("Bump daemon stopped");
+                return 0;
+            }
+            if (args.isEmpty() || args.equals(Collections.singletonList("-h"))
+                    || args.equals(Collections.singletonList("--help"))) {
+                Bump.printHelp();
+                return 0;
+            }
+            if (args.contains("--stats") || args.contains("--stats-json")) {
+                throw fatal("--stats and --stats-json are not supported by the daemon, phases of concurrent runs"
+                        + " would be mixed");
+            }
+            String name = args.get(0);
+            MainRunner mainRunner = Bump.getMainRunner(name);
+            if (mainRunner == null) {
+                throw fatal(format("Main runner '%s' not found, try -h", name));
+            }
+            List<String> runnerArgs = new ArrayList<>(args.subList(1, args.size()));
+            if (runnerArgs.equals(Collections.singletonList("-h"))) {
+                mainRunner.run(runnerArgs);
+                return 0;
+            }
+            if (mainRunner instanceof RepositoryMainRunner == false) {
+                throw fatal(format("Main runner '%s' cannot be run by the daemon", name));
+            }
+            RepositoryMainRunner repositoryMainRunner = (RepositoryMainRunner) mainRunner;
+            if (runnerArgs.isEmpty()) {
+                throw fatal("Not enough arguments, try -h");
+            }
+            List<String> key = new ArrayList<>(args);
+            // rules file is read relative to the working directory of the client, and prepared again once it changes
+            if ("--rules".equals(runnerArgs.get(0)) && runnerArgs.size() > 1) {
+                Path rules = workingDir.resolve(runnerArgs.get(1));
+                runnerArgs.set(1, rules.toString());
+                key.set(2, rules.toString());
+                key.add(Files.exists(rules) ? String.valueOf(Files.getLastModifiedTime(rules).toMillis()) : "");
+            }
+            RepositoryRunner runner;
+            try {
+                runner = runners.get(key, () -> repositoryMainRunner.prepare(runnerArgs));
+            } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+                Throwables.propagateIfPossible(e.getCause(), Exception.class);
+                throw e;
+            }
+            Object lock = repositoryLocks.computeIfAbsent(workingDir.toAbsolutePath().normalize(), dir -> new Object());
+            synchronized (lock) {
+                runner.run(workingDir.toFile());
+            }
+            runner.printStats();
+            return 0;
+        }
+    }
+
+    /**
+     * Frames output of a request into lines of the response.
+     */
+    private static class Response {
+        private final Writer writer;
+        private final OutputStream stdout = new LineOutputStream('1'), stderr = new LineOutputStream('2');
+        // client went away, output is dropped
+        private volatile boolean broken;
+
+        Response(Writer writer) {
+            this.writer = writer;
+        }
+
+        synchronized void line(char channel, String text) {
+            if (broken) {
+                return;
+            }
+            try {
+                writer.write(channel);
+                writer.write(' ');
+                writer.write(text);
+                writer.write('\n');
+                writer.flush();
+            } catch (IOException e) {
+                broken = true;
+            }
+        }
+
+        void exit(int code) throws IOException {
+            // last lines not ended by a new line
+            ((LineOutputStream) stdout).flushLine();
+            ((LineOutputStream) stderr).flushLine();
+            synchronized (this) {
+                writer.write("exit " + code + "\n");
+                writer.flush();
+            }
+        }
+
+        private class LineOutputStream extends OutputStream {
+            private final char channel;
+            private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+            LineOutputStream(char channel) {
+                this.channel = channel;
+            }
+
+            @Override
+            public synchronized void write(int b) {
+                if (b == '\n') {
+                    writeLine();
+                } else {
+                    line.write(b);
+                }
+            }
+
+            synchronized void flushLine() {
+                if (line.size() > 0) {
+                    writeLine();
+                }
+            }
+
+            private void writeLine() {
+                String text = new String(line.toByteArray(), StandardCharsets.UTF_8);
+                line.reset();
+                line(channel, text.endsWith("\r") ? text.substring(0, text.length() - 1) : text);
+            }
+        }
+    }
+}
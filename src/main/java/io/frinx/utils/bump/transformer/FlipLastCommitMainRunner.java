@@ -2,33 +2,60 @@ package io.frinx.utils.bump.transformer;
 
 import static com.google.common.base.Preconditions.checkState;
 import static io.frinx.utils.bump.transformer.util.LoggingUtil.fatal;
-import static io.frinx.utils.bump.transformer.util.ProcessUtil.runProcess;
 
-import com.google.common.io.Files;
 import io.frinx.utils.bump.transformer.FileTransformer.TransformFileResult;
-import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.VersionTransformationStrategy;
 import io.frinx.utils.bump.transformer.simple.BumpSnapshotPatchTransformerFactory;
+import io.frinx.utils.bump.transformer.FlipLastCommitMainRunner.BumpSnapshotWorkflowTransformer.GitPatchWorkflow;
+import io.frinx.utils.bump.transformer.util.ArgsParsingUtil;
+import io.frinx.utils.bump.transformer.util.Metrics;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Arrays;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Consumer;
+import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 
 /**
- * Workflow:
- * 1. revert release commit
- * git revert HEAD
- * 2. create patch of this reverted commit
- * git format-patch HEAD~1
- * 3. drop that reverted commit
- * git reset --hard HEAD~1
- * 4. modify the patch file
- * 5. apply and commit the patch as bump to new SNAPSHOT
- * git apply 0001-Revert-Release-0.1.6.1-frinx.patch
- * git commit
+ * Workflow, done in process using JGit:
+ * 1. create patch reverting the release commit
+ * git diff HEAD HEAD~1
+ * 2. modify the patch file
+ * 3. apply and commit the patch as bump to new SNAPSHOT
+ * git apply revert.patch
+ * git commit -a
  */
-public class FlipLastCommitMainRunner implements MainRunner {
+public class FlipLastCommitMainRunner implements RepositoryMainRunner {
+
+    public static class Provider implements MainRunnerProvider {
+
+        @Override
+        public String getName() {
+            return "flipLastCommit";
+        }
+
+        @Override
+        public MainRunner create() {
+            return new FlipLastCommitMainRunner();
+        }
+    }
 
     @Override
     public void run(List<String> args) throws Exception {
@@ -38,21 +65,58 @@ public class FlipLastCommitMainRunner implements MainRunner {
         }
         if (args.size() == 1 && "-h".equals(args.get(0))) {
             VersionTransformationStrategyFactory.printHelp();
-            System.out.println("Required: -m <commit message>");
+            System.out.println("Required: -m <commit message>, unless --plan is used");
+            System.out.println("Optional: --plan <file> - write the transformed patch to given file for review,"
+                    + " without applying it");
+            System.out.println("Optional: --apply <file> - apply and commit patch written by --plan, other options"
+                    + " are ignored");
             return;
         }
 
-        Entry<VersionTransformationStrategy, List<String>> entry = VersionTransformationStrategyFactory.parseArgs(args);
-        args = entry.getValue();
-        if (args.size() != 2 || "-m".equals(args.get(0)) == false) {
+        RepositoryRunner runner = prepare(args);
+        runner.run(new File("."));
+        runner.printStats();
+    }
+
+    @Override
+    public RepositoryRunner prepare(List<String> args) {
+        Entry<VersionRules, List<String>> entry = VersionTransformationStrategyFactory.parseRules(args);
+        final String[] plan = {null}, apply = {null};
+        Map<String, Consumer<String>> parsers = new HashMap<>();
+        parsers.put("--plan", value -> plan[0] = value);
+        parsers.put("--apply", value -> apply[0] = value);
+        args = ArgsParsingUtil.parse(entry.getValue(), parsers);
+        if (plan[0] != null && apply[0] != null) {
+            throw fatal("--plan cannot be combined with --apply");
+        }
+        if ((plan[0] == null || args.isEmpty() == false) && (args.size() != 2 || "-m".equals(args.get(0)) == false)) {
             throw fatal("Parameter -m <commit message> not found" + entry.getValue());
         }
-        String commitMessage = args.get(1);
+        String commitMessage = args.isEmpty() ? null : args.get(1);
 
-        VersionTransformationStrategy strategy = entry.getKey();
+        VersionRules rules = entry.getKey();
 
-        FileTransformer fileTransformer = BumpSnapshotPatchTransformerFactory.create(strategy);
-        new BumpSnapshotWorkflowTransformer(fileTransformer, commitMessage).run();
+        FileTransformer fileTransformer = BumpSnapshotPatchTransformerFactory.create(rules);
+        BumpSnapshotWorkflowTransformer workflowTransformer = new BumpSnapshotWorkflowTransformer(fileTransformer, commitMessage);
+        return new RepositoryRunner() {
+            @Override
+            public String run(File repository) throws Exception {
+                GitPatchWorkflow workflow = new GitPatchWorkflow(fileTransformer, repository, commitMessage);
+                if (plan[0] != null) {
+                    return workflow.plan(repository.toPath().resolve(plan[0]).toFile()).toString();
+                }
+                if (apply[0] != null) {
+                    workflow.apply(repository.toPath().resolve(apply[0]).toFile());
+                    return "Applied " + apply[0];
+                }
+                return workflowTransformer.run(repository).toString();
+            }
+
+            @Override
+            public void printStats() {
+                rules.printCacheStats();
+            }
+        };
     }
 
 
@@ -65,14 +129,15 @@ public class FlipLastCommitMainRunner implements MainRunner {
             this.commitMessage = commitMessage;
         }
 
-        public void run() throws Exception {
-            File currentFolder = new File(".");
-            GitPatchWorkflow workflow = new GitPatchWorkflow(patchFileTransformer, currentFolder, commitMessage);
+        public TransformFileResult run(File repository) throws Exception {
+            GitPatchWorkflow workflow = new GitPatchWorkflow(patchFileTransformer, repository, commitMessage);
             TransformFileResult result = workflow.doIt();
             System.out.println("Result: " + result);
+            return result;
         }
 
         static class GitPatchWorkflow {
+            private static final String PLAN_HEADER = "bump plan for ";
             private final FileTransformer patchFileTransformer;
             private final File gitDir;
             private final String commitMessage;
@@ -83,30 +148,114 @@ public class FlipLastCommitMainRunner implements MainRunner {
                 this.commitMessage = commitMessage;
             }
 
-            public TransformFileResult doIt() throws IOException, GitAPIException, InterruptedException {
-                System.out.println("1. revert release commit");
-                runProcess(gitDir, Arrays.asList("git", "revert", "HEAD", "--no-edit")).getStdOut();
-                System.out.println("2. create patch of this reverted commit");
-                File originalPatch = getLastCommitAsPatch();
-                File modifiedPatch = new File(originalPatch.getParentFile(),
-                        originalPatch.getName().replaceAll(".patch", "-modified.patch"));
-                Files.copy(originalPatch, modifiedPatch);
-                System.out.println("3. drop that reverted commit");
-                runProcess(gitDir, Arrays.asList("git", "reset", "--hard", "HEAD~1"));
-                System.out.println("4. modify the patch file");
-                TransformFileResult transformFileResult = patchFileTransformer.transformFile(modifiedPatch);
-                System.out.println("5. apply and commit the patch as bump to new SNAPSHOT");
-                runProcess(gitDir, Arrays.asList("git", "apply", modifiedPatch.getAbsolutePath()));
-                runProcess(gitDir, Arrays.asList("git", "commit", "-am", commitMessage));
-                checkState(originalPatch.delete());
-                checkState(modifiedPatch.delete());
-                return transformFileResult;
+            public TransformFileResult doIt() throws IOException, GitAPIException {
+                try (Repository repository = openRepository();
+                     Git git = new Git(repository)) {
+                    checkClean(git);
+                    File patch = File.createTempFile("bump-revert", ".patch");
+                    try {
+                        TransformFileResult transformFileResult = createPatch(repository, patch);
+                        System.out.println("3. apply and commit the patch as bump to new SNAPSHOT");
+                        try (Metrics.Timer timer = Metrics.start("git.apply");
+                             InputStream patchStream = new FileInputStream(patch)) {
+                            git.apply().setPatch(patchStream).call();
+                        }
+                        commit(git);
+                        return transformFileResult;
+                    } finally {
+                        checkState(patch.delete());
+                    }
+                }
+            }
+
+            /**
+             * Write the transformed patch to given file instead of applying it. First line of the plan holds the id
+             * of the release commit, the plan can only be applied on top of it.
+             */
+            public TransformFileResult plan(File planFile) throws IOException, GitAPIException {
+                try (Repository repository = openRepository();
+                     Git git = new Git(repository)) {
+                    checkClean(git);
+                    File patch = File.createTempFile("bump-revert", ".patch");
+                    try {
+                        TransformFileResult transformFileResult = createPatch(repository, patch);
+                        ObjectId head = repository.resolve(Constants.HEAD);
+                        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(planFile))) {
+                            out.write((PLAN_HEADER + head.name() + "\n").getBytes(StandardCharsets.UTF_8));
+                            Files.copy(patch.toPath(), out);
+                        }
+                        System.out.println("3. patch written to " + planFile);
+                        return transformFileResult;
+                    } finally {
+                        checkState(patch.delete());
+                    }
+                }
+            }
+
+            /**
+             * Apply and commit patch written by {@link #plan(File)}, if HEAD is still the release commit.
+             */
+            public void apply(File planFile) throws IOException, GitAPIException {
+                try (Repository repository = openRepository();
+                     Git git = new Git(repository)) {
+                    checkClean(git);
+                    byte[] plan = Files.readAllBytes(planFile.toPath());
+                    int headerEnd = 0;
+                    while (headerEnd < plan.length && plan[headerEnd] != '\n') {
+                        headerEnd++;
+                    }
+                    String header = new String(plan, 0, headerEnd, StandardCharsets.UTF_8);
+                    checkState(header.startsWith(PLAN_HEADER), "Not a plan: %s", planFile);
+                    String planned = header.substring(PLAN_HEADER.length());
+                    String head = repository.resolve(Constants.HEAD).name();
+                    checkState(planned.equals(head), "Plan was made for commit %s, but HEAD is %s", planned, head);
+                    System.out.println("apply and commit the planned patch as bump to new SNAPSHOT");
+                    try (Metrics.Timer timer = Metrics.start("git.apply")) {
+                        git.apply().setPatch(new ByteArrayInputStream(plan, headerEnd + 1, plan.length - headerEnd - 1)).call();
+                    }
+                    commit(git);
+                }
+            }
+
+            private void commit(Git git) throws GitAPIException {
+                try (Metrics.Timer timer = Metrics.start("git.commit")) {
+                    git.commit().setAll(true).setMessage(commitMessage).call();
+                }
+            }
+
+            private Repository openRepository() throws IOException {
+                return new FileRepositoryBuilder().findGitDir(gitDir).build();
+            }
+
+            private static void checkClean(Git git) throws GitAPIException {
+                try (Metrics.Timer timer = Metrics.start("git.status")) {
+                    checkState(git.status().call().hasUncommittedChanges() == false, "Working tree has uncommitted changes");
+                }
+            }
+
+            private TransformFileResult createPatch(Repository repository, File patch) throws IOException {
+                System.out.println("1. create patch reverting the release commit");
+                try (Metrics.Timer timer = Metrics.start("git.diff")) {
+                    writeRevertPatch(repository, patch);
+                }
+                System.out.println("2. modify the patch file");
+                try (Metrics.Timer timer = Metrics.start("patch")) {
+                    return patchFileTransformer.transformFile(patch);
+                }
             }
 
-            private File getLastCommitAsPatch() throws IOException, InterruptedException {
-                String stdOut = runProcess(gitDir, Arrays.asList("git", "format-patch", "HEAD~1")).getStdOut();
-                stdOut = stdOut.trim();
-                return new File(gitDir, stdOut);
+            private static void writeRevertPatch(Repository repository, File patch) throws IOException {
+                try (RevWalk revWalk = new RevWalk(repository)) {
+                    RevCommit head = revWalk.parseCommit(repository.resolve(Constants.HEAD));
+                    checkState(head.getParentCount() == 1, "Cannot revert commit with %s parents", head.getParentCount());
+                    RevCommit parent = revWalk.parseCommit(head.getParent(0));
+                    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(patch));
+                         DiffFormatter formatter = new DiffFormatter(out)) {
+                        formatter.setRepository(repository);
+                        // diff from release commit to its parent is the revert
+                        formatter.format(head.getTree(), parent.getTree());
+                    }
+                }
             }
         }
     }
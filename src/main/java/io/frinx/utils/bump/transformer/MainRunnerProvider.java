@@ -0,0 +1,16 @@
+package io.frinx.utils.bump.transformer;
+
+/**
+ * Registered in META-INF/services and found by {@link java.util.ServiceLoader}, so that only the main runner
+ * chosen on the command line, and classes it depends on, are loaded.
+ */
+public interface MainRunnerProvider {
+
+    /**
+     * @return name of the main runner on the command line
+     */
+    String getName();
+
+    MainRunner create();
+
+}
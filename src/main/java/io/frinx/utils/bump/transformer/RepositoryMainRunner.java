@@ -0,0 +1,15 @@
+package io.frinx.utils.bump.transformer;
+
+import java.util.List;
+
+/**
+ * Main runner transforming a single repository, which can be used by batch and daemon modes.
+ */
+public interface RepositoryMainRunner extends MainRunner {
+
+    /**
+     * Parse arguments once, so that the runner can be used for many repositories in batch mode.
+     */
+    RepositoryRunner prepare(List<String> args);
+
+}
@@ -0,0 +1,20 @@
+package io.frinx.utils.bump.transformer;
+
+import java.io.File;
+
+/**
+ * Main runner with parsed arguments, that can be run in several repositories.
+ */
+public interface RepositoryRunner {
+
+    /**
+     * @return one line summary of the run
+     */
+    String run(File repository) throws Exception;
+
+    /**
+     * Print statistics collected over all runs.
+     */
+    default void printStats() {
+    }
+}
@@ -0,0 +1,254 @@
+package io.frinx.utils.bump.transformer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.VersionTransformationStrategy;
+import io.frinx.utils.bump.transformer.util.MultiLiteralMatcher;
+import io.frinx.utils.bump.transformer.util.VersionFactory.Version.VersionParsingException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Ordered list of version transformation strategies, each applied to versions ending with its own suffix,
+ * so that a release touching several suffixes is done in one pass over the tree. When versions match more rules,
+ * the first one wins.
+ * <p>
+ * Rules file contains one rule per line, written as the options of a single strategy on the command line:
+ * <pre>
+ * {@code
+ * # suffix and snapshot transformation of each rule
+ * --suffix frinxodl --snapshot drop
+ * --suffix frinx --snapshot drop --postprocess-sed 's/frinx/frinx1/'
+ * --suffix Beryllium-SR[0-9]+ --postprocess-sed s/SR2/SR3/
+ * }
+ * </pre>
+ * Values can be quoted by single or double quotes. Empty lines and lines starting with # are ignored.
+ * <p>
+ * Literal part of each suffix, e.g. Beryllium-SR of Beryllium-SR[0-9]+, is compiled into one
+ * {@link MultiLiteralMatcher}, so a line is scanned once to find the rules that can match it.
+ */
+public class VersionRules {
+
+    private static final String REGEX_SYNTAX = "\\.[]{}()*+?^$|";
+
+    private final List<VersionTransformationStrategy> strategies;
+    private final List<Pattern> versionPatterns = new ArrayList<>();
+    private final MultiLiteralMatcher matcher;
+    // rule of each literal of the matcher
+    private final int[] literalRules;
+    // rules without a literal are candidates for every line
+    private final long withoutLiteral;
+
+    public VersionRules(List<VersionTransformationStrategy> strategies) {
+        checkArgument(strategies.isEmpty() == false, "No rules");
+        checkArgument(strategies.size() <= 64, "At most 64 rules are supported, got %s", strategies.size());
+        this.strategies = Collections.unmodifiableList(new ArrayList<>(strategies));
+        List<String> literals = new ArrayList<>();
+        List<Integer> literalRules = new ArrayList<>();
+        long withoutLiteral = 0;
+        for (int i = 0; i < strategies.size(); i++) {
+            String suffix = strategies.get(i).getQualifierSuffix();
+            versionPatterns.add(Pattern.compile(".+(?:" + suffix + ")(-SNAPSHOT)?", Pattern.DOTALL));
+            String literal = requiredLiteral(suffix);
+            if (literal.isEmpty()) {
+                withoutLiteral |= 1L << i;
+            } else {
+                literals.add(literal);
+                literalRules.add(i);
+            }
+        }
+        this.matcher = new MultiLiteralMatcher(literals);
+        this.literalRules = literalRules.stream().mapToInt(Integer::intValue).toArray();
+        this.withoutLiteral = withoutLiteral;
+    }
+
+    public static VersionRules of(VersionTransformationStrategy strategy) {
+        return new VersionRules(Collections.singletonList(strategy));
+    }
+
+    /**
+     * Read rules from given file.
+     *
+     * @throws IllegalArgumentException if a line is not a valid rule
+     */
+    public static VersionRules load(Path file) throws IOException {
+        List<VersionTransformationStrategy> strategies = new ArrayList<>();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            Entry<VersionTransformationStrategy, List<String>> entry =
+                    VersionTransformationStrategyFactory.parseArgs(split(line));
+            String location = file + ":" + (i + 1);
+            checkArgument(entry.getValue().isEmpty(), "Unexpected arguments %s at %s", entry.getValue(), location);
+            checkArgument(entry.getKey().getQualifierSuffix().isEmpty() == false, "--suffix not supplied at %s",
+                    location);
+            strategies.add(entry.getKey());
+        }
+        checkArgument(strategies.isEmpty() == false, "No rules in %s", file);
+        return new VersionRules(strategies);
+    }
+
+    static List<String> split(String line) {
+        List<String> args = new ArrayList<>();
+        StringBuilder arg = null;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    arg.append(c);
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                arg = arg == null ? new StringBuilder() : arg;
+            } else if (Character.isWhitespace(c)) {
+                if (arg != null) {
+                    args.add(arg.toString());
+                    arg = null;
+                }
+            } else {
+                arg = arg == null ? new StringBuilder() : arg;
+                arg.append(c);
+            }
+        }
+        checkArgument(quote == 0, "Unterminated quote in '%s'", line);
+        if (arg != null) {
+            args.add(arg.toString());
+        }
+        return args;
+    }
+
+    /**
+     * @return literal every match of the suffix contains, empty if there is none, e.g. for alternatives
+     */
+    static String requiredLiteral(String suffix) {
+        if (suffix.indexOf('|') != -1) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < suffix.length(); i++) {
+            char c = suffix.charAt(i);
+            if (REGEX_SYNTAX.indexOf(c) != -1) {
+                // quantifier may make the preceding character optional
+                if ((c == '?' || c == '*' || c == '{') && sb.length() > 0) {
+                    sb.setLength(sb.length() - 1);
+                }
+                break;
+            }
+            if (c >= 128) {
+                break;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    public List<VersionTransformationStrategy> getStrategies() {
+        return strategies;
+    }
+
+    /**
+     * @return literal of each rule, one of which every version matching these rules contains, empty if a rule
+     * has no literal
+     */
+    public List<String> getRequiredLiterals() {
+        List<String> literals = new ArrayList<>();
+        for (VersionTransformationStrategy strategy : strategies) {
+            String literal = requiredLiteral(strategy.getQualifierSuffix());
+            if (literal.isEmpty()) {
+                return Collections.emptyList();
+            }
+            literals.add(literal);
+        }
+        return literals;
+    }
+
+    /**
+     * @return suffix of the only rule, or alternation of suffixes of all rules
+     */
+    public String getQualifierSuffix() {
+        if (strategies.size() == 1) {
+            return strategies.get(0).getQualifierSuffix();
+        }
+        return strategies.stream().map(strategy -> "(?:" + strategy.getQualifierSuffix() + ")")
+                .collect(Collectors.joining("|", "(?:", ")"));
+    }
+
+    /**
+     * @return bit i set if rule i can match a version in given part of the text
+     */
+    public long candidates(CharSequence text, int from, int to) {
+        long candidates = withoutLiteral;
+        long found = matcher.match(text, from, to);
+        while (found != 0) {
+            int literal = Long.numberOfTrailingZeros(found);
+            candidates |= 1L << literalRules[literal];
+            found &= found - 1;
+        }
+        return candidates;
+    }
+
+    /**
+     * @return strategy of the first rule matching given version found by a finder of these rules
+     */
+    public Optional<VersionTransformationStrategy> strategyFor(String version) {
+        if (strategies.size() == 1) {
+            return Optional.of(strategies.get(0));
+        }
+        long candidates = candidates(version, 0, version.length());
+        while (candidates != 0) {
+            int rule = Long.numberOfTrailingZeros(candidates);
+            if (versionPatterns.get(rule).matcher(version).matches()) {
+                return Optional.of(strategies.get(rule));
+            }
+            candidates &= candidates - 1;
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Transform the version by the first matching rule, versions matching no rule are returned as they are.
+     */
+    public String transform(String version) throws VersionParsingException {
+        Optional<VersionTransformationStrategy> strategy = strategyFor(version);
+        return strategy.isPresent() ? strategy.get().transform(version) : version;
+    }
+
+    /**
+     * Transform the version in given region of the text, with a single rule without copying the region.
+     */
+    public String transform(CharSequence text, int from, int to) throws VersionParsingException {
+        if (strategies.size() == 1) {
+            return strategies.get(0).transform(text, from, to);
+        }
+        return transform(text.subSequence(from, to).toString());
+    }
+
+    public void printCacheStats() {
+        for (VersionTransformationStrategy strategy : strategies) {
+            strategy.printCacheStats();
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (strategies.size() == 1) {
+            return strategies.get(0).toString();
+        }
+        return strategies.toString();
+    }
+}
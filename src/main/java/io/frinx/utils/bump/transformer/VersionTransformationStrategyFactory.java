@@ -1,16 +1,27 @@
 package io.frinx.utils.bump.transformer;
 
+import static io.frinx.utils.bump.transformer.util.LoggingUtil.fatal;
 import static java.util.Objects.requireNonNull;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Maps;
 import io.frinx.utils.bump.Bump;
 import io.frinx.utils.bump.transformer.util.ArgsParsingUtil;
+import io.frinx.utils.bump.transformer.util.Metrics;
 import io.frinx.utils.bump.transformer.util.SedUtil;
+import io.frinx.utils.bump.transformer.util.SedUtil.SedMode;
+import io.frinx.utils.bump.transformer.util.SedUtil.SedScript;
 import io.frinx.utils.bump.transformer.util.VersionFactory;
 import io.frinx.utils.bump.transformer.util.VersionFactory.Version;
 import io.frinx.utils.bump.transformer.util.VersionFactory.Version.VersionParsingException;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -27,18 +38,26 @@ public class VersionTransformationStrategyFactory {
         NONE, FLIP, ADD, DROP
     }
 
+    public enum BumpTransformation {
+        NONE, MICRO, QUALIFIER
+    }
+
     public static Entry<VersionTransformationStrategy, List<String> /*remaining args*/> parseArgs(List<String> inputArgs) {
         final String[] qualifierSuffix = {""};
         final SnapshotTransformation[] snapshotTransformation = {SnapshotTransformation.NONE};
+        final BumpTransformation[] bumpTransformation = {BumpTransformation.NONE};
         final String[] maybePostprocessSed = new String[1];
         final String[] maybePreprocessSed = new String[1];
+        final SedMode[] sedMode = {SedMode.COPROCESS};
 
         // each switch maps to a closure writing the value to fields
         Map<String, Consumer<String>> parsers = new HashMap<>();
         parsers.put("--suffix", value -> qualifierSuffix[0] = value);
         parsers.put("--snapshot", value -> snapshotTransformation[0] = SnapshotTransformation.valueOf(value.toUpperCase()));
+        parsers.put("--bump", value -> bumpTransformation[0] = BumpTransformation.valueOf(value.toUpperCase()));
         parsers.put("--preprocess-sed", value -> maybePreprocessSed[0] = value);
         parsers.put("--postprocess-sed", value -> maybePostprocessSed[0] = value);
+        parsers.put("--sed-mode", value -> sedMode[0] = SedMode.valueOf(value.toUpperCase()));
         // parse args using the map
         List<String> remainingArgs = ArgsParsingUtil.parse(inputArgs, parsers);
         // call constructor using fields
@@ -46,36 +65,103 @@ public class VersionTransformationStrategyFactory {
                 requireNonNull(qualifierSuffix[0], "--suffix not supplied"),
                 snapshotTransformation[0],
                 Optional.ofNullable(maybePostprocessSed[0]),
-                Optional.ofNullable(maybePreprocessSed[0])
+                Optional.ofNullable(maybePreprocessSed[0]),
+                sedMode[0],
+                bumpTransformation[0]
                 ), remainingArgs);
 
     }
 
+    /**
+     * Parse either --rules &lt;file&gt; as the first argument, see {@link VersionRules}, or options of a single strategy.
+     */
+    public static Entry<VersionRules, List<String> /*remaining args*/> parseRules(List<String> inputArgs) {
+        if (inputArgs.size() >= 2 && "--rules".equals(inputArgs.get(0))) {
+            VersionRules rules;
+            try {
+                rules = VersionRules.load(Paths.get(inputArgs.get(1)));
+            } catch (IOException | IllegalArgumentException e) {
+                throw fatal("Cannot load rules: " + e.getMessage());
+            }
+            return Maps.immutableEntry(rules, new ArrayList<>(inputArgs.subList(2, inputArgs.size())));
+        }
+        Entry<VersionTransformationStrategy, List<String>> entry = parseArgs(inputArgs);
+        return Maps.immutableEntry(VersionRules.of(entry.getKey()), entry.getValue());
+    }
+
     public static void printHelp() {
         System.out.println(
+                "Optional: --rules <file> - instead of the options below, transform versions of several suffixes in one pass,"
+                + " one rule per line, e.g. --suffix frinx --snapshot drop\n" +
                 "Optional: --snapshot <none, flip, add, drop> - modify -SNAPSHOT\n" +
+                "Optional: --bump <none, micro, qualifier> - increase micro version, e.g. 1.2.3.frinx to 1.2.4.frinx,"
+                + " or leading number of qualifier, e.g. 1.2.3.4-frinxodl to 1.2.3.5-frinxodl\n" +
                 "Optional: --preprocess-sed <command> - call sed on the version before all other transformations, e.g. s/rc1-frinx/frinx/\n" +
-                "Optional: --postprocess-sed <command> - call sed on the version after all other transformations, e.g. s/Beryllium-SR2/Beryllium-SR3/\n"
+                "Optional: --postprocess-sed <command> - call sed on the version after all other transformations, e.g. s/Beryllium-SR2/Beryllium-SR3/\n" +
+                "Optional: --sed-mode <coprocess, fork> - how to run sed commands that cannot be run in process, " +
+                "use fork for commands keeping state between lines, e.g. hold space\n"
         );
     }
 
     public static class VersionTransformationStrategy {
+        private static final int CACHE_SIZE = 10_000;
+
         private final String qualifierSuffix;
         // optional, --snapshot
         private final SnapshotTransformation snapshotTransformation;
+        // optional, --bump
+        private final BumpTransformation bumpTransformation;
         // optional, --postprocess-sed
         private final Optional<String> maybePostprocessSed;
         // optional, --preprocess-sed
         private final Optional<String> maybePreprocessSed;
+        // optional, --sed-mode
+        private final SedMode sedMode;
+        // sed scripts compiled when arguments are parsed
+        private final Optional<SedScript> maybeCompiledPostprocessSed, maybeCompiledPreprocessSed;
+        // interned input version -> transformed version or error, there are only few distinct versions in a tree
+        private final LoadingCache<Version, MemoizedResult> cache;
 
 
         public VersionTransformationStrategy(String qualifierSuffix,
                                              SnapshotTransformation snapshotTransformation,
                                              Optional<String> maybePostprocessSed, Optional<String> maybePreprocessSed) {
+            this(qualifierSuffix, snapshotTransformation, maybePostprocessSed, maybePreprocessSed, SedMode.COPROCESS);
+        }
+
+        public VersionTransformationStrategy(String qualifierSuffix,
+                                             SnapshotTransformation snapshotTransformation,
+                                             Optional<String> maybePostprocessSed, Optional<String> maybePreprocessSed,
+                                             SedMode sedMode) {
+            this(qualifierSuffix, snapshotTransformation, maybePostprocessSed, maybePreprocessSed, sedMode,
+                    BumpTransformation.NONE);
+        }
+
+        public VersionTransformationStrategy(String qualifierSuffix,
+                                             SnapshotTransformation snapshotTransformation,
+                                             Optional<String> maybePostprocessSed, Optional<String> maybePreprocessSed,
+                                             SedMode sedMode, BumpTransformation bumpTransformation) {
             this.qualifierSuffix = qualifierSuffix;
             this.snapshotTransformation = requireNonNull(snapshotTransformation);
+            this.bumpTransformation = requireNonNull(bumpTransformation);
             this.maybePostprocessSed = requireNonNull(maybePostprocessSed);
             this.maybePreprocessSed = requireNonNull(maybePreprocessSed);
+            this.sedMode = requireNonNull(sedMode);
+            this.maybeCompiledPostprocessSed = maybePostprocessSed.map(sed -> SedUtil.compile(sed, sedMode));
+            this.maybeCompiledPreprocessSed = maybePreprocessSed.map(sed -> SedUtil.compile(sed, sedMode));
+            this.cache = CacheBuilder.newBuilder()
+                    .maximumSize(CACHE_SIZE)
+                    .recordStats()
+                    .build(new CacheLoader<Version, MemoizedResult>() {
+                        @Override
+                        public MemoizedResult load(Version ver) {
+                            try (Metrics.Timer timer = Metrics.start("version")) {
+                                return new MemoizedResult(transformUncached(ver), null);
+                            } catch (VersionParsingException | RuntimeException e) {
+                                return new MemoizedResult(null, e);
+                            }
+                        }
+                    });
         }
 
         public String getQualifierSuffix() {
@@ -86,15 +172,52 @@ public class VersionTransformationStrategyFactory {
             return snapshotTransformation;
         }
 
+        public BumpTransformation getBumpTransformation() {
+            return bumpTransformation;
+        }
+
+        /**
+         * Transform the version. Results as well as errors are memoized, so each distinct version is transformed
+         * only once.
+         */
         public String transform(String ver) throws VersionParsingException {
+            return transform(ver, 0, ver.length());
+        }
+
+        /**
+         * Transform the version in given region of the text. A version seen recently is found without copying
+         * the region, see {@link VersionFactory}.
+         */
+        public String transform(CharSequence text, int from, int to) throws VersionParsingException {
+            return cache.getUnchecked(VersionFactory.parse(text, from, to)).get();
+        }
+
+        public CacheStats getCacheStats() {
+            return cache.stats();
+        }
+
+        public void printCacheStats() {
+            CacheStats stats = getCacheStats();
+            System.out.println(String.format("Version cache: hits %d, misses %d, evictions %d",
+                    stats.hitCount(), stats.missCount(), stats.evictionCount()));
+        }
+
+        private String transformUncached(Version input) throws VersionParsingException {
 
-            ver = maybeRunSed(ver, maybePreprocessSed);
+            String ver = maybeRunSed(input.toString(), maybeCompiledPreprocessSed);
 
             // do we need to parse the version?
-            if (snapshotTransformation != SnapshotTransformation.NONE) {
-                Version version = VersionFactory.parse(ver);
+            if (snapshotTransformation != SnapshotTransformation.NONE || bumpTransformation != BumpTransformation.NONE) {
+                Version version = maybeCompiledPreprocessSed.isPresent() ? VersionFactory.parse(ver) : input;
+                if (bumpTransformation == BumpTransformation.MICRO) {
+                    version = version.withMicroIncremented();
+                } else if (bumpTransformation == BumpTransformation.QUALIFIER) {
+                    version = version.withQualifierIncremented();
+                }
                 SnapshotTransformation snapshot = getSnapshotTransformation();
-                if (snapshot == SnapshotTransformation.FLIP) {
+                if (snapshot == SnapshotTransformation.NONE) {
+                    // only bumped
+                } else if (snapshot == SnapshotTransformation.FLIP) {
                     version = version.withSnapshot(!version.isSnapshot());
                 } else if (snapshot == SnapshotTransformation.ADD) {
                     if (version.isSnapshot()) {
@@ -116,18 +239,36 @@ public class VersionTransformationStrategyFactory {
 
                 ver = version.toString();
             }
-            ver = maybeRunSed(ver, maybePostprocessSed);
+            ver = maybeRunSed(ver, maybeCompiledPostprocessSed);
             return ver;
         }
 
-        private String maybeRunSed(String ver, Optional<String> maybeSomeSed) {
+        private String maybeRunSed(String ver, Optional<SedScript> maybeSomeSed) {
             if (maybeSomeSed.isPresent()) {
-                String sed = maybeSomeSed.get();
-                ver = SedUtil.sed(ver, sed);
+                ver = maybeSomeSed.get().apply(ver);
             }
             return ver;
         }
 
+        private static class MemoizedResult {
+            private final String transformed;
+            private final Exception error;
+
+            MemoizedResult(String transformed, Exception error) {
+                this.transformed = transformed;
+                this.error = error;
+            }
+
+            String get() throws VersionParsingException {
+                if (error instanceof VersionParsingException) {
+                    throw (VersionParsingException) error;
+                } else if (error != null) {
+                    throw (RuntimeException) error;
+                }
+                return transformed;
+            }
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
@@ -135,14 +276,16 @@ public class VersionTransformationStrategyFactory {
             VersionTransformationStrategy that = (VersionTransformationStrategy) o;
             return Objects.equals(qualifierSuffix, that.qualifierSuffix) &&
                     snapshotTransformation == that.snapshotTransformation &&
+                    bumpTransformation == that.bumpTransformation &&
                     Objects.equals(maybePreprocessSed, that.maybePreprocessSed) &&
-                    Objects.equals(maybePostprocessSed, that.maybePostprocessSed);
+                    Objects.equals(maybePostprocessSed, that.maybePostprocessSed) &&
+                    sedMode == that.sedMode;
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(qualifierSuffix, snapshotTransformation,
-                    maybePreprocessSed, maybePostprocessSed);
+            return Objects.hash(qualifierSuffix, snapshotTransformation, bumpTransformation,
+                    maybePreprocessSed, maybePostprocessSed, sedMode);
         }
 
         @Override
@@ -150,8 +293,10 @@ public class VersionTransformationStrategyFactory {
             return "VersionTransformationStrategy{" +
                     "qualifierSuffix='" + qualifierSuffix + '\'' +
                     ", snapshotTransformation=" + snapshotTransformation +
+                    (bumpTransformation == BumpTransformation.NONE ? "" : ", bumpTransformation=" + bumpTransformation) +
                     ", maybePreprocessSed=" + maybePreprocessSed +
                     ", maybePostprocessSed=" + maybePostprocessSed +
+                    ", sedMode=" + sedMode +
                     '}';
         }
     }
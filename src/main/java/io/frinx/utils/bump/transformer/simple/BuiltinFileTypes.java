@@ -0,0 +1,91 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import io.frinx.utils.bump.transformer.simple.ChangePlan.VersionFinder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * File types shipped with bump, registered in META-INF/services.
+ */
+public class BuiltinFileTypes {
+
+    private abstract static class GlobFileType implements FileType {
+        private final String name;
+        private final List<String> globs;
+
+        GlobFileType(String name, String... globs) {
+            this.name = name;
+            this.globs = Collections.unmodifiableList(Arrays.asList(globs));
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public List<String> getGlobs() {
+            return globs;
+        }
+
+        @Override
+        public VersionFinder createFinder(String qualifierSuffix, VersionFinder markup) {
+            return new TokenVersionFinder(qualifierSuffix);
+        }
+
+        @Override
+        public String toString() {
+            return name + globs;
+        }
+    }
+
+    /**
+     * Files transformed by simple mode before file types were introduced, the default.
+     */
+    public static class Maven extends GlobFileType {
+        public Maven() {
+            super("maven", "**/pom.xml", "**/features.xml");
+        }
+
+        @Override
+        public VersionFinder createFinder(String qualifierSuffix, VersionFinder markup) {
+            return markup;
+        }
+
+        @Override
+        public boolean isXml() {
+            return true;
+        }
+    }
+
+    public static class Gradle extends GlobFileType {
+        public Gradle() {
+            super("gradle", "**/*.gradle");
+        }
+    }
+
+    public static class Bnd extends GlobFileType {
+        public Bnd() {
+            super("bnd", "**/*.bnd");
+        }
+    }
+
+    public static class Manifest extends GlobFileType {
+        public Manifest() {
+            super("manifest", "**/MANIFEST.MF");
+        }
+    }
+
+    public static class KarafConfig extends GlobFileType {
+        public KarafConfig() {
+            super("cfg", "**/*.cfg");
+        }
+    }
+
+    public static class Properties extends GlobFileType {
+        public Properties() {
+            super("properties", "**/*.properties");
+        }
+    }
+}
@@ -1,18 +1,17 @@
 package io.frinx.utils.bump.transformer.simple;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.base.Preconditions.checkState;
-import static java.util.Arrays.asList;
-
-import com.google.common.base.Charsets;
-import com.google.common.base.Joiner;
-import com.google.common.base.Splitter;
-import com.google.common.collect.Lists;
-import com.google.common.io.Files;
+
+import com.google.common.base.Throwables;
 import io.frinx.utils.bump.Bump;
 import io.frinx.utils.bump.transformer.FileTransformer;
+import io.frinx.utils.bump.transformer.VersionRules;
 import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.VersionTransformationStrategy;
 import io.frinx.utils.bump.transformer.simple.SimpleTransformer.PatchAcceptor;
+import io.frinx.utils.bump.transformer.simple.VersionScanner.Occurrence;
+import io.frinx.utils.bump.transformer.util.FileUtil;
+import io.frinx.utils.bump.transformer.util.LineRewriter;
+import io.frinx.utils.bump.transformer.util.Metrics;
 import io.frinx.utils.bump.transformer.util.VersionFactory.Version.VersionParsingException;
 import java.io.File;
 import java.io.IOException;
@@ -21,6 +20,11 @@ import java.util.ArrayList;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -45,39 +49,44 @@ import java.util.regex.Pattern;
  * </pre>
  *
  * Lines starting with + must be changed, but version from - should be parsed and increased.
+ * Runs of - and + lines are paired line by line within each @@ hunk, the patch is streamed and only one run
+ * is held in memory, see {@link BumpSnapshotPatchTransformer.PatchSection}.
  */
 public class BumpSnapshotPatchTransformerFactory {
     public static BumpSnapshotPatchTransformer create(VersionTransformationStrategy strategy) {
-        return new BumpSnapshotPatchTransformer(strategy);
+        return create(VersionRules.of(strategy));
+    }
+
+    public static BumpSnapshotPatchTransformer create(VersionRules rules) {
+        return new BumpSnapshotPatchTransformer(rules);
     }
 
     static class BumpSnapshotPatchTransformer implements FileTransformer {
 
-        private final Iterable<Pattern> patterns;
+        private static final String DIFF_HEADER = "diff --git ";
+        private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -\\d+(?:,(\\d+))? \\+\\d+(?:,(\\d+))? @@");
 
-        VersionTransformationStrategy strategy;
+        private final MarkupVersionFinder finder;
+        private final int threads;
 
-        public BumpSnapshotPatchTransformer(VersionTransformationStrategy strategy) {
-            this.strategy = strategy;
+        VersionRules rules;
 
-            List<Pattern> patterns = new ArrayList<>();
-            for (String suffix : asList("", "-SNAPSHOT")) {
-                patterns.add(Pattern.compile("^-(.*<.+>)(.+" + strategy.getQualifierSuffix() + suffix + ")(</.+>.*)$", Pattern.DOTALL));
-                patterns.add(Pattern.compile("^-(.*[\"'])([^\"']+" + strategy.getQualifierSuffix() + suffix + ")([\"'].*)$", Pattern.DOTALL));
-            }
-            this.patterns = patterns;
+        public BumpSnapshotPatchTransformer(VersionRules rules) {
+            this(rules, FileUtil.defaultThreads());
+        }
+
+        BumpSnapshotPatchTransformer(VersionRules rules, int threads) {
+            checkArgument(threads > 0, "Number of threads must be positive, got " + threads);
+            this.rules = rules;
+            this.finder = new MarkupVersionFinder(rules);
+            this.threads = threads;
         }
 
         @Override
         public TransformFileResult transformFile(File file) throws IOException {
             checkArgument(acceptFile(file), "File not accepted - " + file.getAbsolutePath());
             System.out.println("Transforming " + file.getAbsolutePath());
-            String content = Files.toString(file, Charsets.UTF_8);
-            List<String> inputLines = Lists.newArrayList(Splitter.on('\n').split(content));
-            List<String> outputLines = fixLines(inputLines, file);
-            if (inputLines.equals(outputLines) == false) {
-                // replace the file
-                Files.write(Joiner.on("\n").join(outputLines), file, Charsets.UTF_8);
+            if (LineRewriter.rewrite(file, (input, output) -> fixLines(input, output, file))) {
                 return TransformFileResult.CHANGED;
             }
             return TransformFileResult.NOT_CHANGED;
@@ -85,66 +94,218 @@ public class BumpSnapshotPatchTransformerFactory {
 
         List<String> fixLines(List<String> inputLines, File file) {
             List<String> result = new ArrayList<>();
-            int lineNumber = 0;
+            fixLines(inputLines.iterator(), result::add, file);
+            return result;
+        }
 
-            for (Iterator<String> it = inputLines.iterator(); it.hasNext(); ) {
-                lineNumber = transformLine(file, result, lineNumber, it);
+        /**
+         * Stream the patch from input to output. With more threads, sections of the patch starting with
+         * a diff --git line are transformed in parallel and written in their original order.
+         */
+        void fixLines(Iterator<String> it, Consumer<String> result, File file) {
+            if (threads == 1) {
+                PatchSection section = new PatchSection(file, 0, result);
+                while (it.hasNext()) {
+                    section.accept(it.next());
+                }
+                section.flush();
+                return;
+            }
+            // when already running on a pool, its workers transform the sections, otherwise threads started by this
+            // call do, printing to the output of the caller rather than of whoever started common pool workers
+            ForkJoinPool own = ForkJoinTask.inForkJoinPool() ? null : new ForkJoinPool(threads);
+            ForkJoinPool pool = own != null ? own : ForkJoinTask.getPool();
+            try {
+                // bounds number of sections held in memory
+                Deque<Future<List<String>>> inFlight = new ArrayDeque<>();
+                List<String> lines = new ArrayList<>();
+                int lineNumber = 0, sectionStart = 0;
+                while (it.hasNext()) {
+                    String line = it.next();
+                    if (line.startsWith(DIFF_HEADER) && lines.isEmpty() == false) {
+                        inFlight.add(submit(pool, file, sectionStart, lines));
+                        lines = new ArrayList<>();
+                        sectionStart = lineNumber;
+                        if (inFlight.size() >= 2 * threads) {
+                            writeSection(inFlight.poll(), result);
+                        }
+                    }
+                    lines.add(line);
+                    lineNumber++;
+                }
+                inFlight.add(submit(pool, file, sectionStart, lines));
+                while (inFlight.isEmpty() == false) {
+                    writeSection(inFlight.poll(), result);
+                }
+            } finally {
+                if (own != null) {
+                    own.shutdownNow();
+                }
             }
-            return result;
         }
 
-        private int transformLine(File file, List<String> result, int lineNumber, Iterator<String> it) {
-            String inputLine = it.next();
-            lineNumber++;
-            return transformLine(file, result, lineNumber, it, inputLine, new ArrayDeque<>());
+        private Future<List<String>> submit(ForkJoinPool pool, File file, int firstLineNumber, List<String> lines) {
+            return pool.submit(() -> {
+                List<String> output = new ArrayList<>(lines.size());
+                PatchSection section = new PatchSection(file, firstLineNumber, output::add);
+                lines.forEach(section::accept);
+                section.flush();
+                return output;
+            });
         }
 
-        private int transformLine(File file, List<String> result, int lineNumber, Iterator<String> it, String inputLine, Deque<String> plusLines) {
-            String outputLine;
+        private static void writeSection(Future<List<String>> section, Consumer<String> result) {
             try {
-                outputLine = fixLine(inputLine, file, lineNumber);
-            } catch (Exception e) {
-                outputLine = inputLine;
-                maybeThrowException(file, lineNumber, e);
+                section.get().forEach(result);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while transforming patch", e);
+            } catch (ExecutionException e) {
+                Throwables.propagateIfPossible(e.getCause());
+                throw new IllegalStateException(e.getCause());
             }
-            if (outputLine.equals(inputLine)) {
-                result.add(outputLine);
-            } else {
-                checkState(inputLine.startsWith("-"));
-                result.add(inputLine); // do not modify lines starting with -
-                checkState(outputLine.startsWith("+"));
-                // the nextLine might not be what we expect
-                if (it.hasNext()) {
-                    lineNumber++;
-                    String maybeExcludedNextLine = it.next();
-                    plusLines.add(outputLine);
-                    if (maybeExcludedNextLine.startsWith("-")) {
-                        // call recursively
-                        lineNumber = transformLine(file, result, lineNumber, it, maybeExcludedNextLine, plusLines);
-                        if (it.hasNext()) {
-                            lineNumber++;
-                            maybeExcludedNextLine = it.next();
-                            assertSkippedLineStartsWithPlus(file, lineNumber, maybeExcludedNextLine);
-                        } else {
-                            maybeThrowException(file, lineNumber, new IllegalStateException("Unexpected end of file"));
-                        }
+        }
+
+        /**
+         * Iterative state machine over lines of a patch. Once a diff --git or @@ header is seen, only lines
+         * of hunks are transformed, hunks ending when lines of both sides given by the @@ header are consumed,
+         * and lines between hunks are passed through as headers. Lines before any header, e.g. a fragment
+         * of a patch, are transformed as one hunk.
+         * <p>
+         * Each run of - lines is held together with the + lines following it. The n-th - line containing
+         * a version replaces the n-th + line of the run, lines of the run are written once the run ends.
+         */
+        private class PatchSection {
+            private final File file;
+            private final Consumer<String> result;
+            private int lineNumber;
+            private boolean structured;
+            // lines of the current hunk not yet seen, per side
+            private int oldRemaining, newRemaining;
+            // current run, including "\ No newline at end of file" markers
+            private final List<String> minusLines = new ArrayList<>(), plusLines = new ArrayList<>();
+            private int minusStart;
+
+            PatchSection(File file, int lineNumber, Consumer<String> result) {
+                this.file = file;
+                this.lineNumber = lineNumber;
+                this.result = result;
+            }
+
+            void accept(String line) {
+                lineNumber++;
+                if ((oldRemaining > 0 || newRemaining > 0) && isHunkLine(line) == false) {
+                    // hunk shorter than its header says
+                    flush();
+                    oldRemaining = 0;
+                    newRemaining = 0;
+                }
+                if (oldRemaining > 0 || newRemaining > 0) {
+                    acceptHunkLine(line);
+                    if (oldRemaining <= 0 && newRemaining <= 0) {
+                        flush();
+                    }
+                    return;
+                }
+                Matcher hunkHeader = HUNK_HEADER.matcher(line);
+                if (line.startsWith(DIFF_HEADER) || hunkHeader.find()) {
+                    flush();
+                    structured = true;
+                    if (line.startsWith("@@")) {
+                        oldRemaining = count(hunkHeader.group(1));
+                        newRemaining = count(hunkHeader.group(2));
+                    }
+                    result.accept(line);
+                } else if (structured) {
+                    result.accept(line);
+                } else {
+                    acceptHunkLine(line);
+                }
+            }
+
+            private boolean isHunkLine(String line) {
+                // some tools strip the space of empty context lines
+                return line.isEmpty() || " -+\\".indexOf(line.charAt(0)) != -1;
+            }
+
+            private int count(String group) {
+                return group == null ? 1 : Integer.parseInt(group);
+            }
+
+            private void acceptHunkLine(String line) {
+                char type = line.isEmpty() ? ' ' : line.charAt(0);
+                if (type == '-') {
+                    if (plusLines.isEmpty() == false) {
+                        flush();
+                    }
+                    if (minusLines.isEmpty()) {
+                        minusStart = lineNumber;
+                    }
+                    minusLines.add(line);
+                    oldRemaining--;
+                } else if (type == '+') {
+                    if (minusLines.isEmpty()) {
+                        result.accept(line);
                     } else {
-                        assertSkippedLineStartsWithPlus(file, lineNumber, maybeExcludedNextLine);
+                        plusLines.add(line);
+                    }
+                    newRemaining--;
+                } else if (type == '\\') {
+                    if (plusLines.isEmpty() == false) {
+                        plusLines.add(line);
+                    } else if (minusLines.isEmpty() == false) {
+                        minusLines.add(line);
+                    } else {
+                        result.accept(line);
                     }
-                    result.add(plusLines.pop());
                 } else {
-                    maybeThrowException(file, lineNumber, new IllegalStateException("Unexpected end of file"));
+                    flush();
+                    result.accept(line);
+                    oldRemaining--;
+                    newRemaining--;
                 }
             }
-            return lineNumber;
-        }
 
-        private void assertSkippedLineStartsWithPlus(File file, int lineNumber, String maybeExcludedNextLine) {
-            if (maybeExcludedNextLine.startsWith("+") == false) {
-                maybeThrowException(file, lineNumber, new IllegalStateException(
-                        "Expected line starting with +, got" + maybeExcludedNextLine));
+            /**
+             * Write the current run, replacing + lines paired with - lines containing a version.
+             */
+            void flush() {
+                int plus = nextChange(-1);
+                for (int i = 0; i < minusLines.size(); i++) {
+                    String inputLine = minusLines.get(i);
+                    if (inputLine.startsWith("\\")) {
+                        continue;
+                    }
+                    String outputLine;
+                    try {
+                        outputLine = fixLine(inputLine, file, minusStart + i);
+                    } catch (Exception e) {
+                        outputLine = inputLine;
+                        maybeThrowException(file, minusStart + i, e);
+                    }
+                    if (outputLine.equals(inputLine) == false) {
+                        Metrics.count("linesChanged", 1);
+                        if (plus < plusLines.size()) {
+                            plusLines.set(plus, outputLine);
+                        } else {
+                            maybeThrowException(file, minusStart + i, new IllegalStateException(
+                                    "Expected line starting with + for " + inputLine));
+                        }
+                    }
+                    plus = nextChange(plus);
+                }
+                minusLines.forEach(result);
+                plusLines.forEach(result);
+                minusLines.clear();
+                plusLines.clear();
+            }
+
+            private int nextChange(int plus) {
+                do {
+                    plus++;
+                } while (plus < plusLines.size() && plusLines.get(plus).startsWith("\\"));
+                return plus;
             }
-            // otherwise just skip it - outputLine will be used instead
         }
 
         private void maybeThrowException(File file, int lineNumber, Exception e) {
@@ -160,25 +321,26 @@ public class BumpSnapshotPatchTransformerFactory {
         }
 
         private String fixLine(String line, File file, int lineNumber) {
-            for (Pattern pattern : patterns) {
-                Matcher m = pattern.matcher(line);
-                line = transformIfMatches(line, file, lineNumber, m);
+            if (line.startsWith("-") == false) {
+                return line;
             }
-            return line;
-        }
-
-        private String transformIfMatches(String line, File file, int lineNumber, Matcher m) {
-            if (m.matches()) {
-                String ver = m.group(2);
-                String transformed = transformVersion(file, lineNumber, ver);
-                line = "+" + m.group(1) + transformed + m.group(3);
+            List<Occurrence> occurrences = finder.find(line, 1);
+            if (occurrences.isEmpty()) {
+                return line;
+            }
+            StringBuilder sb = new StringBuilder(line.length() + 16).append('+');
+            int copiedUntil = 1;
+            for (Occurrence occurrence : occurrences) {
+                sb.append(line, copiedUntil, occurrence.getStart());
+                sb.append(transformVersion(file, lineNumber, line, occurrence.getStart(), occurrence.getEnd()));
+                copiedUntil = occurrence.getEnd();
             }
-            return line;
+            return sb.append(line, copiedUntil, line.length()).toString();
         }
 
-        private String transformVersion(File file, int lineNumber, String ver) {
+        private String transformVersion(File file, int lineNumber, String line, int from, int to) {
             try {
-                return strategy.transform(ver);
+                return rules.transform(line, from, to);
             } catch (VersionParsingException e) {
                 throw new IllegalArgumentException("Cannot parse " + file.getAbsolutePath() + ":" + lineNumber, e);
             }
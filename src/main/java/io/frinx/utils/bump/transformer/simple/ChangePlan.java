@@ -0,0 +1,333 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+import com.google.common.hash.Hashing;
+import io.frinx.utils.bump.Bump;
+import io.frinx.utils.bump.transformer.FileTransformer;
+import io.frinx.utils.bump.transformer.FileTransformer.TransformFileResult;
+import io.frinx.utils.bump.transformer.simple.VersionScanner.Occurrence;
+import io.frinx.utils.bump.transformer.util.ByteRangePatcher;
+import io.frinx.utils.bump.transformer.util.ByteRangePatcher.Replacement;
+import io.frinx.utils.bump.transformer.util.Json;
+import io.frinx.utils.bump.transformer.util.LiteralPrefilter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Change plan of the simple runner. Planning reads files without modifying them and records every version
+ * that would change, with its line, byte offset and hash of the file. The plan is written as JSON, together with
+ * a unified diff for review. Applying the plan checks the hashes first and then only replaces the recorded byte
+ * ranges, so nothing is written if any planned file was modified in the meantime.
+ */
+public class ChangePlan {
+    private static final int FORMAT_VERSION = 1;
+    private static final int DIFF_CONTEXT = 3;
+
+    @FunctionalInterface
+    public interface VersionFinder {
+        /**
+         * @return versions to be transformed in the line, sorted by position
+         */
+        List<Occurrence> find(String line);
+    }
+
+    private final Path root;
+    private final boolean ignoreErrors;
+    private final Collection<FilePlan> filePlans = new ConcurrentLinkedQueue<>();
+
+    public ChangePlan(Path root) {
+        this(root, Bump.ignoreErrors);
+    }
+
+    ChangePlan(Path root, boolean ignoreErrors) {
+        this.root = root;
+        this.ignoreErrors = ignoreErrors;
+    }
+
+    /**
+     * @param finders finder of versions in lines of each accepted file
+     * @return transformer that records planned changes of accepted files instead of writing them
+     */
+    public FileTransformer toPlanningTransformer(Predicate<File> acceptFile, Optional<LiteralPrefilter> prefilter,
+                                                 Function<File, VersionFinder> finders, UnaryOperator<String> transform) {
+        return file -> {
+            if (acceptFile.test(file) == false) {
+                return TransformFileResult.NOT_MATCHED;
+            }
+            if (prefilter.isPresent() && prefilter.get().mightMatch(file) == false) {
+                return TransformFileResult.NOT_CHANGED;
+            }
+            Optional<FilePlan> filePlan = plan(file.toPath(), finders.apply(file), transform);
+            if (filePlan.isPresent()) {
+                filePlans.add(filePlan.get());
+                return TransformFileResult.CHANGED;
+            }
+            return TransformFileResult.NOT_CHANGED;
+        };
+    }
+
+    private Optional<FilePlan> plan(Path path, VersionFinder finder, UnaryOperator<String> transform)
+            throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        String content;
+        try {
+            content = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes)).toString();
+        } catch (CharacterCodingException e) {
+            throw new IOException("Cannot plan changes of " + path.toAbsolutePath() + ", it is not valid UTF-8", e);
+        }
+        // split on '\n' only, same as when transforming line by line
+        List<String> lines = Arrays.asList(content.split("\n", -1));
+        List<String> newLines = new ArrayList<>(lines);
+        List<Edit> edits = new ArrayList<>();
+        long lineOffset = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            try {
+                StringBuilder newLine = new StringBuilder();
+                // edits of a line are planned only if all its versions can be transformed, as the line is left
+                // unchanged otherwise
+                List<Edit> lineEdits = new ArrayList<>();
+                int copiedUntil = 0;
+                for (Occurrence occurrence : finder.find(line)) {
+                    String version = line.substring(occurrence.getStart(), occurrence.getEnd());
+                    String transformed = transform.apply(version);
+                    if (transformed.equals(version) == false) {
+                        lineEdits.add(new Edit(i + 1,
+                                lineOffset + OccurrenceIndex.utf8Length(line, 0, occurrence.getStart()),
+                                OccurrenceIndex.utf8Length(line, occurrence.getStart(), occurrence.getEnd()),
+                                version, transformed));
+                    }
+                    newLine.append(line, copiedUntil, occurrence.getStart()).append(transformed);
+                    copiedUntil = occurrence.getEnd();
+                }
+                newLines.set(i, newLine.append(line, copiedUntil, line.length()).toString());
+                edits.addAll(lineEdits);
+            } catch (RuntimeException e) {
+                if (ignoreErrors == false) {
+                    throw new IllegalStateException("Cannot fix " + path.toAbsolutePath() + ":" + (i + 1), e);
+                }
+                System.err.println("Ignoring error " + e.getMessage() + " in " + path.toAbsolutePath() + ":" + (i + 1));
+            }
+            lineOffset += OccurrenceIndex.utf8Length(line, 0, line.length()) + 1;
+        }
+        if (edits.isEmpty()) {
+            return Optional.empty();
+        }
+        String relativePath = root.relativize(path).toString().replace(File.separatorChar, '/');
+        return Optional.of(new FilePlan(relativePath, sha256(bytes), edits,
+                unifiedDiff(relativePath, lines, newLines)));
+    }
+
+    private static String sha256(byte[] bytes) {
+        return Hashing.sha256().hashBytes(bytes).toString();
+    }
+
+    /**
+     * Diff of two versions of a file with the same number of lines, as produced by splitting on '\n'.
+     */
+    static String unifiedDiff(String path, List<String> lines, List<String> newLines) {
+        // trailing '\n' results in an empty last element, which is not a line of its own
+        boolean endsWithNewline = lines.get(lines.size() - 1).isEmpty();
+        int lineCount = endsWithNewline ? lines.size() - 1 : lines.size();
+        StringBuilder sb = new StringBuilder();
+        sb.append("--- a/").append(path).append('\n');
+        sb.append("+++ b/").append(path).append('\n');
+        int i = 0;
+        while (i < lineCount) {
+            if (lines.get(i).equals(newLines.get(i))) {
+                i++;
+                continue;
+            }
+            int hunkStart = Math.max(0, i - DIFF_CONTEXT);
+            int hunkEnd = i;
+            // extend the hunk while the next change is close enough for contexts to overlap
+            for (int j = i; j < lineCount && j <= hunkEnd + 2 * DIFF_CONTEXT; j++) {
+                if (lines.get(j).equals(newLines.get(j)) == false) {
+                    hunkEnd = j;
+                }
+            }
+            hunkEnd = Math.min(lineCount - 1, hunkEnd + DIFF_CONTEXT);
+            int length = hunkEnd - hunkStart + 1;
+            sb.append(format("@@ -%d,%d +%d,%d @@\n", hunkStart + 1, length, hunkStart + 1, length));
+            for (int j = hunkStart; j <= hunkEnd; j++) {
+                boolean noNewline = j == lineCount - 1 && endsWithNewline == false;
+                if (lines.get(j).equals(newLines.get(j))) {
+                    appendDiffLine(sb, ' ', lines.get(j), noNewline);
+                } else {
+                    appendDiffLine(sb, '-', lines.get(j), noNewline);
+                    appendDiffLine(sb, '+', newLines.get(j), noNewline);
+                }
+            }
+            i = hunkEnd + 1;
+        }
+        return sb.toString();
+    }
+
+    private static void appendDiffLine(StringBuilder sb, char prefix, String line, boolean noNewline) {
+        sb.append(prefix).append(line).append('\n');
+        if (noNewline) {
+            sb.append("\\ No newline at end of file\n");
+        }
+    }
+
+    /**
+     * Write the plan as JSON to given file and the diff next to it, with .diff appended to the name.
+     */
+    public void write(Path planFile) throws IOException {
+        List<FilePlan> sorted = new ArrayList<>(filePlans);
+        sorted.sort((a, b) -> a.path.compareTo(b.path));
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"version\": ").append(FORMAT_VERSION).append(",\n  \"files\": [");
+        StringBuilder diff = new StringBuilder();
+        for (int i = 0; i < sorted.size(); i++) {
+            FilePlan filePlan = sorted.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"path\": ").append(Json.quote(filePlan.path))
+                    .append(", \"sha256\": ").append(Json.quote(filePlan.sha256))
+                    .append(", \"edits\": [");
+            for (int j = 0; j < filePlan.edits.size(); j++) {
+                Edit edit = filePlan.edits.get(j);
+                json.append(j == 0 ? "\n" : ",\n");
+                json.append(format("      {\"line\": %d, \"offset\": %d, \"length\": %d, \"old\": %s, \"new\": %s}",
+                        edit.line, edit.offset, edit.length, Json.quote(edit.oldVersion), Json.quote(edit.newVersion)));
+            }
+            json.append("\n    ]}");
+            diff.append(filePlan.diff);
+        }
+        json.append(sorted.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+        Path parent = planFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Files.write(planFile, json.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(parent.resolve(planFile.getFileName() + ".diff"), diff.toString().getBytes(StandardCharsets.UTF_8));
+        System.out.println(format("Planned %d edits in %d files, see %s",
+                sorted.stream().mapToInt(filePlan -> filePlan.edits.size()).sum(), sorted.size(), planFile));
+    }
+
+    /**
+     * Apply the plan in given folder. All planned files are checked before the first one is modified.
+     *
+     * @return summary of applied changes
+     */
+    public static String apply(Path root, Path planFile) throws IOException {
+        List<FilePlan> filePlans = read(planFile);
+        List<String> modified = new ArrayList<>();
+        for (FilePlan filePlan : filePlans) {
+            Path path = root.resolve(filePlan.path);
+            byte[] bytes = Files.readAllBytes(path);
+            if (sha256(bytes).equals(filePlan.sha256) == false) {
+                modified.add(filePlan.path);
+                continue;
+            }
+            for (Edit edit : filePlan.edits) {
+                String current = new String(bytes, (int) edit.offset, edit.length, StandardCharsets.UTF_8);
+                checkState(current.equals(edit.oldVersion), "Plan does not match %s:%s", filePlan.path, edit.line);
+            }
+        }
+        if (modified.isEmpty() == false) {
+            throw new IOException("Files were modified after the plan was made: " + modified);
+        }
+        int edits = 0;
+        for (FilePlan filePlan : filePlans) {
+            List<Replacement> replacements = new ArrayList<>();
+            for (Edit edit : filePlan.edits) {
+                replacements.add(new Replacement(edit.offset, edit.length,
+                        edit.newVersion.getBytes(StandardCharsets.UTF_8)));
+            }
+            ByteRangePatcher.patch(root.resolve(filePlan.path), replacements);
+            System.out.println(root.resolve(filePlan.path).toAbsolutePath());
+            edits += replacements.size();
+        }
+        return format("Applied %d edits to %d files", edits, filePlans.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<FilePlan> read(Path planFile) throws IOException {
+        Map<String, Object> json = (Map<String, Object>) Json.parse(
+                new String(Files.readAllBytes(planFile), StandardCharsets.UTF_8));
+        if (Long.valueOf(FORMAT_VERSION).equals(json.get("version")) == false) {
+            throw new IOException("Unsupported plan version " + json.get("version") + " in " + planFile);
+        }
+        List<FilePlan> filePlans = new ArrayList<>();
+        for (Object file : (List<Object>) json.get("files")) {
+            Map<String, Object> fileJson = (Map<String, Object>) file;
+            List<Edit> edits = new ArrayList<>();
+            for (Object edit : (List<Object>) fileJson.get("edits")) {
+                Map<String, Object> editJson = (Map<String, Object>) edit;
+                edits.add(new Edit(((Long) editJson.get("line")).intValue(), (Long) editJson.get("offset"),
+                        ((Long) editJson.get("length")).intValue(), (String) editJson.get("old"),
+                        (String) editJson.get("new")));
+            }
+            filePlans.add(new FilePlan((String) fileJson.get("path"), (String) fileJson.get("sha256"), edits, ""));
+        }
+        return filePlans;
+    }
+
+    static class FilePlan {
+        private final String path, sha256;
+        private final List<Edit> edits;
+        private final String diff;
+
+        FilePlan(String path, String sha256, List<Edit> edits, String diff) {
+            this.path = path;
+            this.sha256 = sha256;
+            this.edits = edits;
+            this.diff = diff;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        List<Edit> getEdits() {
+            return edits;
+        }
+    }
+
+    static class Edit {
+        private final int line;
+        private final long offset;
+        private final int length;
+        private final String oldVersion, newVersion;
+
+        Edit(int line, long offset, int length, String oldVersion, String newVersion) {
+            this.line = line;
+            this.offset = offset;
+            this.length = length;
+            this.oldVersion = oldVersion;
+            this.newVersion = newVersion;
+        }
+
+        int getLine() {
+            return line;
+        }
+
+        String getOldVersion() {
+            return oldVersion;
+        }
+
+        String getNewVersion() {
+            return newVersion;
+        }
+    }
+}
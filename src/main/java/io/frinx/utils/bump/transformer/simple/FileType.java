@@ -0,0 +1,37 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import io.frinx.utils.bump.transformer.simple.ChangePlan.VersionFinder;
+import java.util.List;
+
+/**
+ * Kind of file transformed by simple mode, e.g. maven pom.xml and features.xml or gradle build scripts.
+ * Implementations are discovered by {@link java.util.ServiceLoader}, so that other file types can be added
+ * by putting a jar with a META-INF/services/io.frinx.utils.bump.transformer.simple.FileType entry on the classpath.
+ * See {@link FileTypes} for how files are matched.
+ */
+public interface FileType {
+
+    /**
+     * @return name used to select this type by --file-types
+     */
+    String getName();
+
+    /**
+     * @return glob patterns matched against paths relative to the transformed folder, e.g. {@code **}{@code /pom.xml}
+     */
+    List<String> getGlobs();
+
+    /**
+     * @param qualifierSuffix suffix of versions to be transformed, may contain regular expression syntax
+     * @param markup finds versions in element text and quoted attributes, as in pom.xml
+     * @return finder of versions in lines of files of this type
+     */
+    VersionFinder createFinder(String qualifierSuffix, VersionFinder markup);
+
+    /**
+     * @return true if files of this type are XML documents that --parser xml can transform
+     */
+    default boolean isXml() {
+        return false;
+    }
+}
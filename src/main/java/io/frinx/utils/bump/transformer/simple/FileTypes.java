@@ -0,0 +1,186 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.frinx.utils.bump.transformer.FileTransformer;
+import io.frinx.utils.bump.transformer.FileTransformer.TransformFileResult;
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Registry of {@link FileType}s selected for a run, matching each file to at most one type. When several types
+ * match, the one registered first wins.
+ * <p>
+ * Globs are compiled once. The common forms {@code **}{@code /name} and {@code **}{@code /*.extension} become hash
+ * lookups of the file name and its extension, so matching a file costs the same regardless of the number of types.
+ * Other globs are matched by {@link PathMatcher} against the path relative to the root. A leading {@code **}{@code /}
+ * also matches files directly in the root.
+ */
+public class FileTypes {
+
+    public static final String ALL = "all";
+    public static final String DEFAULT = "maven";
+
+    private static final String GLOB_SYNTAX = "*?[]{}\\/";
+
+    private final List<FileType> types;
+    private final Map<String, Integer> byName = new HashMap<>();
+    private final Map<String, Integer> byExtension = new HashMap<>();
+    private final List<Entry> matchers = new ArrayList<>();
+
+    private static class Entry {
+        private final PathMatcher matcher;
+        private final int type;
+
+        Entry(PathMatcher matcher, int type) {
+            this.matcher = matcher;
+            this.type = type;
+        }
+    }
+
+    FileTypes(List<FileType> types) {
+        this.types = Collections.unmodifiableList(new ArrayList<>(types));
+        for (int i = 0; i < types.size(); i++) {
+            for (String glob : types.get(i).getGlobs()) {
+                compile(glob, i);
+            }
+        }
+    }
+
+    private void compile(String glob, int type) {
+        if (glob.startsWith("**/")) {
+            String name = glob.substring(3);
+            if (isLiteral(name)) {
+                byName.putIfAbsent(name, type);
+                return;
+            }
+            if (name.startsWith("*.") && isLiteral(name.substring(2)) && name.indexOf('.', 2) == -1) {
+                byExtension.putIfAbsent(name.substring(2), type);
+                return;
+            }
+            // also matches files directly in the root
+            matchers.add(new Entry(FileSystems.getDefault().getPathMatcher("glob:" + name), type));
+        }
+        matchers.add(new Entry(FileSystems.getDefault().getPathMatcher("glob:" + glob), type));
+    }
+
+    private static boolean isLiteral(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (GLOB_SYNTAX.indexOf(s.charAt(i)) != -1) {
+                return false;
+            }
+        }
+        return s.isEmpty() == false;
+    }
+
+    /**
+     * Load types registered via {@link ServiceLoader}.
+     *
+     * @param names names of types to select, or {@link #ALL}
+     * @throws IllegalArgumentException if a selected type is not registered
+     */
+    public static FileTypes load(Collection<String> names) {
+        Map<String, FileType> registered = new LinkedHashMap<>();
+        for (FileType type : ServiceLoader.load(FileType.class, FileType.class.getClassLoader())) {
+            registered.putIfAbsent(type.getName(), type);
+        }
+        if (names.contains(ALL)) {
+            return new FileTypes(new ArrayList<>(registered.values()));
+        }
+        List<FileType> selected = new ArrayList<>();
+        for (FileType type : registered.values()) {
+            if (names.contains(type.getName())) {
+                selected.add(type);
+            }
+        }
+        for (String name : names) {
+            checkArgument(registered.containsKey(name), "Unknown file type '%s', known types are %s", name,
+                    registered.keySet());
+        }
+        return new FileTypes(selected);
+    }
+
+    public List<FileType> getTypes() {
+        return types;
+    }
+
+    /**
+     * @param root folder being transformed
+     * @return type of given file under the root, if any
+     */
+    public Optional<FileType> match(Path root, Path file) {
+        Path fileName = file.getFileName();
+        if (fileName == null) {
+            return Optional.empty();
+        }
+        String name = fileName.toString();
+        int best = Integer.MAX_VALUE;
+        Integer type = byName.get(name);
+        if (type != null) {
+            best = type;
+        }
+        int dot = name.lastIndexOf('.');
+        if (dot != -1) {
+            type = byExtension.get(name.substring(dot + 1));
+            if (type != null && type < best) {
+                best = type;
+            }
+        }
+        if (matchers.isEmpty() == false) {
+            Path relative = root.toAbsolutePath().normalize().relativize(file.toAbsolutePath().normalize());
+            for (Entry entry : matchers) {
+                if (entry.type < best && entry.matcher.matches(relative)) {
+                    best = entry.type;
+                }
+            }
+        }
+        return best == Integer.MAX_VALUE ? Optional.empty() : Optional.of(types.get(best));
+    }
+
+    /**
+     * @param transformers transformer of files of each selected type
+     * @return transformer that matches each file once and passes it to the transformer of its type
+     */
+    public FileTransformer toFileTransformer(Path root, Function<FileType, FileTransformer> transformers) {
+        Map<FileType, FileTransformer> byType = new HashMap<>();
+        for (FileType type : types) {
+            byType.put(type, transformers.apply(type));
+        }
+        return file -> {
+            Optional<FileType> type = match(root, file.toPath());
+            if (type.isPresent() == false) {
+                return TransformFileResult.NOT_MATCHED;
+            }
+            return byType.get(type.get()).transformFile(file);
+        };
+    }
+
+    /**
+     * @return accepts files of selected types
+     */
+    public Predicate<File> acceptor(Path root) {
+        return file -> match(root, file.toPath()).isPresent();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (FileType type : types) {
+            sb.append(sb.length() == 0 ? "" : ",").append(type.getName());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import static java.util.Arrays.asList;
+
+import io.frinx.utils.bump.transformer.VersionRules;
+import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.VersionTransformationStrategy;
+import io.frinx.utils.bump.transformer.simple.ChangePlan.VersionFinder;
+import io.frinx.utils.bump.transformer.simple.VersionScanner.Kind;
+import io.frinx.utils.bump.transformer.simple.VersionScanner.Occurrence;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds versions in element text and quoted attributes, see {@link VersionScanner}, for every rule. With more rules
+ * the line is first scanned once for literals of all suffixes and only rules whose literal occurs are searched
+ * further. Occurrences of different rules overlapping each other are reported once, for the leftmost one
+ * and the first rule.
+ */
+class MarkupVersionFinder implements VersionFinder {
+
+    private final VersionRules rules;
+    private final List<SuffixFinder> finders = new ArrayList<>();
+
+    MarkupVersionFinder(VersionRules rules) {
+        this.rules = rules;
+        for (VersionTransformationStrategy strategy : rules.getStrategies()) {
+            finders.add(new SuffixFinder(strategy.getQualifierSuffix()));
+        }
+    }
+
+    @Override
+    public List<Occurrence> find(String line) {
+        return find(line, 0);
+    }
+
+    /**
+     * @return versions in the line after given position, surrounding markup must be after it too
+     */
+    List<Occurrence> find(String line, int from) {
+        if (finders.size() == 1) {
+            return finders.get(0).find(line, from);
+        }
+        long candidates = rules.candidates(line, from, line.length());
+        if (candidates == 0) {
+            return Collections.emptyList();
+        }
+        List<Occurrence> all = new ArrayList<>();
+        while (candidates != 0) {
+            all.addAll(finders.get(Long.numberOfTrailingZeros(candidates)).find(line, from));
+            candidates &= candidates - 1;
+        }
+        return leftmost(all);
+    }
+
+    /**
+     * @param all occurrences found by each rule, rule after rule
+     * @return occurrences sorted by position, without those overlapping an earlier one
+     */
+    static List<Occurrence> leftmost(List<Occurrence> all) {
+        // stable, so that occurrences at the same position keep the order of rules
+        all.sort((a, b) -> Integer.compare(a.getStart(), b.getStart()));
+        List<Occurrence> result = new ArrayList<>(all.size());
+        int end = -1;
+        for (Occurrence occurrence : all) {
+            if (occurrence.getStart() >= end) {
+                result.add(occurrence);
+                end = occurrence.getEnd();
+            }
+        }
+        return result;
+    }
+
+    private static class SuffixFinder {
+        private final List<Pattern> patterns;
+        // patterns are only used for suffixes the scanner does not support
+        private final Optional<VersionScanner> scanner;
+
+        SuffixFinder(String qualifierSuffix) {
+            List<Pattern> patterns = new ArrayList<>();
+            for (String suffix : asList("", "-SNAPSHOT")) {
+                patterns.add(Pattern.compile("^(.*<.+>)(.+" + qualifierSuffix + suffix + ")(</.+>.*)$", Pattern.DOTALL));
+                patterns.add(Pattern.compile("^(.*[\"'])([^\"']+" + qualifierSuffix + suffix + ")([\"'].*)$", Pattern.DOTALL));
+            }
+            this.patterns = patterns;
+            this.scanner = VersionScanner.supports(qualifierSuffix)
+                    ? Optional.of(new VersionScanner(qualifierSuffix)) : Optional.empty();
+        }
+
+        List<Occurrence> find(String line, int from) {
+            if (scanner.isPresent()) {
+                return scanner.get().findAll(line, from, line.length());
+            }
+            for (int i = 0; i < patterns.size(); i++) {
+                Matcher m = patterns.get(i).matcher(line).region(from, line.length());
+                if (m.matches()) {
+                    // patterns alternate between element text and quoted attribute
+                    Kind kind = i % 2 == 0 ? Kind.ELEMENT_TEXT : Kind.QUOTED_ATTRIBUTE;
+                    return Collections.singletonList(new Occurrence(m.start(2), m.end(2), kind));
+                }
+            }
+            return Collections.emptyList();
+        }
+    }
+}
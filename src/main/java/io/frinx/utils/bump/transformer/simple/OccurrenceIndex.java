@@ -0,0 +1,464 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import static java.lang.String.format;
+
+import com.google.common.primitives.Bytes;
+import io.frinx.utils.bump.transformer.FileTransformer;
+import io.frinx.utils.bump.transformer.FileTransformer.TransformFileResult;
+import io.frinx.utils.bump.transformer.simple.ChangePlan.VersionFinder;
+import io.frinx.utils.bump.transformer.simple.VersionScanner.Kind;
+import io.frinx.utils.bump.transformer.simple.VersionScanner.Occurrence;
+import io.frinx.utils.bump.transformer.util.ByteRangePatcher;
+import io.frinx.utils.bump.transformer.util.ByteRangePatcher.Replacement;
+import io.frinx.utils.bump.transformer.util.LiteralPrefilter;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Index of version occurrences in accepted files. For every file it records size, modification time and byte range
+ * of every occurrence found by a {@link VersionScanner} of each suffix, overlapping ones are recorded once as by
+ * {@link MarkupVersionFinder}. While size and modification time of a file match, its
+ * occurrences are patched directly, without reading and scanning the whole file. Entries of files left unchanged
+ * are built from occurrences found while the file was transformed, see {@link #recording(VersionFinder)}.
+ * <p>
+ * Index file is memory mapped when loaded, only paths are read eagerly. Format, big endian:
+ * <pre>
+ *   int magic, int format version, int suffixes length, suffixes separated by new lines, int entry count
+ *   entry: int path length, path bytes, long size, long modification time, int occurrence count
+ *   occurrence: long byte offset, int byte length, byte kind
+ * </pre>
+ * Strings are UTF-8, paths are relative to the root with '/' as separator. Only files visited during the last run
+ * are kept in the index.
+ */
+public class OccurrenceIndex {
+    private static final int MAGIC = 0x626d7069;
+    private static final int FORMAT_VERSION = 1;
+    private static final int OCCURRENCE_BYTES = 8 + 4 + 1;
+
+    private final Path indexFile, root;
+    private final List<String> suffixes;
+    private final List<VersionScanner> scanners = new ArrayList<>();
+    // entries are valid only if the file was modified before the index was written
+    private final long indexModified;
+    private final ByteBuffer loaded;
+    // path -> position of entry's size in loaded index
+    private final Map<String, Integer> loadedPositions;
+    private final Map<String, FileEntry> entries = new ConcurrentHashMap<>();
+    // changed files are scanned on save, their new content may still be on its way to disk, see WriteBehindJournal
+    private final Map<String, Path> changed = new ConcurrentHashMap<>();
+    // occurrences found in the file being transformed by the current thread
+    private final ThreadLocal<Recording> recording = new ThreadLocal<>();
+    private final LongAdder valid = new LongAdder(), patched = new LongAdder(), scanned = new LongAdder();
+
+    private OccurrenceIndex(Path indexFile, Path root, List<String> suffixes, long indexModified, ByteBuffer loaded,
+                            Map<String, Integer> loadedPositions) {
+        this.indexFile = indexFile;
+        this.root = root;
+        this.suffixes = suffixes;
+        for (String suffix : suffixes) {
+            scanners.add(new VersionScanner(suffix));
+        }
+        this.indexModified = indexModified;
+        this.loaded = loaded;
+        this.loadedPositions = loadedPositions;
+    }
+
+    /**
+     * Load the index, or start with an empty one if the file does not exist or was built for other suffixes.
+     *
+     * @param suffixes qualifier suffix of each rule, in the order of rules
+     */
+    public static OccurrenceIndex load(Path indexFile, Path root, List<String> suffixes) throws IOException {
+        ByteBuffer buffer;
+        long indexModified;
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            indexModified = Files.getLastModifiedTime(indexFile).toMillis();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return new OccurrenceIndex(indexFile, root, suffixes, 0, null, Collections.emptyMap());
+        }
+        Map<String, Integer> positions = new HashMap<>();
+        if (buffer.remaining() >= 8 && buffer.getInt() == MAGIC && buffer.getInt() == FORMAT_VERSION
+                && String.join("\n", suffixes).equals(readString(buffer))) {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                String path = readString(buffer);
+                positions.put(path, buffer.position());
+                buffer.position(buffer.position() + 8 + 8);
+                int occurrences = buffer.getInt();
+                buffer.position(buffer.position() + occurrences * OCCURRENCE_BYTES);
+            }
+        } else {
+            System.err.println("Ignoring occurrence index " + indexFile + " built for different suffixes or version");
+        }
+        return new OccurrenceIndex(indexFile, root, suffixes, indexModified, buffer, positions);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return finder that records occurrences found by given finder in files transformed by
+     * {@link #toFileTransformer}, so that they do not have to be scanned again
+     */
+    public VersionFinder recording(VersionFinder finder) {
+        return line -> {
+            List<Occurrence> occurrences = finder.find(line);
+            Recording current = recording.get();
+            if (current != null) {
+                current.record(line, occurrences);
+            }
+            return occurrences;
+        };
+    }
+
+    /**
+     * Wrap transformer of single files. Files with a valid entry are patched using their recorded occurrences.
+     * Files rejected by the prefilter are recorded without occurrences and not passed to the delegate, so
+     * the delegate of accepted files should not use the prefilter again. Other files are transformed by
+     * the delegate, their occurrences are taken from {@link #recording(VersionFinder)}, or scanned afterwards
+     * if the delegate did not use it for every line.
+     */
+    public FileTransformer toFileTransformer(FileTransformer delegate, Predicate<File> acceptFile,
+                                             Optional<LiteralPrefilter> prefilter,
+                                             UnaryOperator<String> transformVersion) {
+        return file -> {
+            if (acceptFile.test(file) == false) {
+                return delegate.transformFile(file);
+            }
+            Path path = file.toPath();
+            String key = key(path);
+            Optional<FileEntry> entry = getValid(key, path);
+            if (entry.isPresent()) {
+                Optional<TransformFileResult> result = patch(path, entry.get(), transformVersion);
+                // empty if a recorded occurrence is not there anymore
+                if (result.isPresent()) {
+                    valid.increment();
+                    if (result.get() == TransformFileResult.NOT_CHANGED) {
+                        entries.put(key, entry.get());
+                        return TransformFileResult.NOT_CHANGED;
+                    }
+                    patched.increment();
+                    System.out.println(file.getAbsolutePath());
+                    changed.put(key, path);
+                    return result.get();
+                }
+            }
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (prefilter.isPresent() && prefilter.get().mightMatch(file) == false) {
+                entries.put(key, new FileEntry(attrs.size(), attrs.lastModifiedTime().toMillis(),
+                        Collections.emptyList()));
+                return TransformFileResult.NOT_CHANGED;
+            }
+            Recording current = new Recording();
+            recording.set(current);
+            TransformFileResult result;
+            try {
+                result = delegate.transformFile(file);
+            } finally {
+                recording.remove();
+            }
+            if (result == TransformFileResult.CHANGED) {
+                changed.put(key, path);
+            } else if (current.isComplete(attrs.size())) {
+                entries.put(key, new FileEntry(attrs.size(), attrs.lastModifiedTime().toMillis(),
+                        current.occurrences));
+            } else {
+                update(key, path);
+            }
+            return result;
+        };
+    }
+
+    private String key(Path path) {
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    private Optional<FileEntry> getValid(String key, Path path) throws IOException {
+        Integer position = loadedPositions.get(key);
+        if (position == null) {
+            return Optional.empty();
+        }
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = loaded.getLong(position);
+        long modified = loaded.getLong(position + 8);
+        if (size != attrs.size() || modified != attrs.lastModifiedTime().toMillis() || modified >= indexModified) {
+            return Optional.empty();
+        }
+        int count = loaded.getInt(position + 16);
+        List<IndexedOccurrence> occurrences = new ArrayList<>(count);
+        for (int i = 0, p = position + 20; i < count; i++, p += OCCURRENCE_BYTES) {
+            occurrences.add(new IndexedOccurrence(loaded.getLong(p), loaded.getInt(p + 8),
+                    Kind.values()[loaded.get(p + 12)]));
+        }
+        return Optional.of(new FileEntry(size, modified, occurrences));
+    }
+
+    private Optional<TransformFileResult> patch(Path path, FileEntry entry, UnaryOperator<String> transformVersion)
+            throws IOException {
+        List<Replacement> replacements = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (IndexedOccurrence occurrence : entry.occurrences) {
+                byte[] bytes = ByteRangePatcher.read(channel, occurrence.offset, occurrence.length);
+                String version = decode(bytes);
+                if (version == null || hasSuffix(version) == false) {
+                    return Optional.empty();
+                }
+                String transformed = transformVersion.apply(version);
+                if (transformed.equals(version) == false) {
+                    replacements.add(new Replacement(occurrence.offset, occurrence.length,
+                            transformed.getBytes(StandardCharsets.UTF_8)));
+                }
+            }
+        }
+        if (replacements.isEmpty()) {
+            return Optional.of(TransformFileResult.NOT_CHANGED);
+        }
+        ByteRangePatcher.patch(path, replacements);
+        return Optional.of(TransformFileResult.CHANGED);
+    }
+
+    private void update(String key, Path path) throws IOException {
+        scanned.increment();
+        Optional<FileEntry> entry = scan(path);
+        if (entry.isPresent()) {
+            entries.put(key, entry.get());
+        } else {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * @return occurrences in the file, empty if it is not valid UTF-8 or changed while being read
+     */
+    Optional<FileEntry> scan(Path path) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        byte[] bytes = Files.readAllBytes(path);
+        if (bytes.length != attrs.size()) {
+            return Optional.empty();
+        }
+        List<IndexedOccurrence> occurrences = new ArrayList<>();
+        if (suffixes.stream()
+                .anyMatch(suffix -> Bytes.indexOf(bytes, suffix.getBytes(StandardCharsets.UTF_8)) != -1)) {
+            String content = decode(bytes);
+            if (content == null) {
+                return Optional.empty();
+            }
+            long lineOffset = 0;
+            int lineStart = 0;
+            while (lineStart <= content.length()) {
+                int lineEnd = content.indexOf('\n', lineStart);
+                if (lineEnd == -1) {
+                    lineEnd = content.length();
+                }
+                // scanner gets the line without '\n', same as when transforming line by line
+                String line = content.substring(lineStart, lineEnd);
+                for (Occurrence occurrence : findAll(line)) {
+                    long offset = lineOffset + utf8Length(line, 0, occurrence.getStart());
+                    int length = utf8Length(line, occurrence.getStart(), occurrence.getEnd());
+                    occurrences.add(new IndexedOccurrence(offset, length, occurrence.getKind()));
+                }
+                lineOffset += utf8Length(line, 0, line.length()) + 1;
+                lineStart = lineEnd + 1;
+            }
+        }
+        return Optional.of(new FileEntry(attrs.size(), attrs.lastModifiedTime().toMillis(), occurrences));
+    }
+
+    private boolean hasSuffix(String version) {
+        for (String suffix : suffixes) {
+            if (version.endsWith(suffix) || version.endsWith(suffix + "-SNAPSHOT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Occurrence> findAll(String line) {
+        if (scanners.size() == 1) {
+            return scanners.get(0).findAll(line, 0, line.length());
+        }
+        List<Occurrence> all = new ArrayList<>();
+        for (VersionScanner scanner : scanners) {
+            all.addAll(scanner.findAll(line, 0, line.length()));
+        }
+        return MarkupVersionFinder.leftmost(all);
+    }
+
+    private static String decode(byte[] bytes) {
+        try {
+            CharBuffer chars = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes));
+            return chars.toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    static int utf8Length(String s, int from, int to) {
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800 || Character.isSurrogate(c)) {
+                // surrogate pair is encoded in 4 bytes
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    public void save() throws IOException {
+        for (Map.Entry<String, Path> file : changed.entrySet()) {
+            update(file.getKey(), file.getValue());
+        }
+        changed.clear();
+        Path parent = indexFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, "." + indexFile.getFileName(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, String.join("\n", suffixes));
+                out.writeInt(entries.size());
+                for (Map.Entry<String, FileEntry> mapEntry : entries.entrySet()) {
+                    FileEntry entry = mapEntry.getValue();
+                    writeString(out, mapEntry.getKey());
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.modified);
+                    out.writeInt(entry.occurrences.size());
+                    for (IndexedOccurrence occurrence : entry.occurrences) {
+                        out.writeLong(occurrence.offset);
+                        out.writeInt(occurrence.length);
+                        out.writeByte(occurrence.kind.ordinal());
+                    }
+                }
+            }
+            try {
+                Files.move(temp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * @return number of files read again after being transformed
+     */
+    long getScanned() {
+        return scanned.sum();
+    }
+
+    public void printStats() {
+        System.out.println(format("Occurrence index: %d files valid, %d of them patched, %d files scanned",
+                valid.sum(), patched.sum(), scanned.sum()));
+    }
+
+    /**
+     * Occurrences of lines of one file, in order. Lines are split the same way as by {@link #scan(Path)}.
+     */
+    private static class Recording {
+        private final List<IndexedOccurrence> occurrences = new ArrayList<>();
+        private long lineOffset;
+        // malformed input was replaced while decoding, byte offsets are not known
+        private boolean malformed;
+
+        void record(String line, List<Occurrence> found) {
+            malformed |= line.indexOf('\uFFFD') != -1;
+            for (Occurrence occurrence : found) {
+                long offset = lineOffset + utf8Length(line, 0, occurrence.getStart());
+                int length = utf8Length(line, occurrence.getStart(), occurrence.getEnd());
+                occurrences.add(new IndexedOccurrence(offset, length, occurrence.getKind()));
+            }
+            lineOffset += utf8Length(line, 0, line.length()) + 1;
+        }
+
+        /**
+         * @return true if every line of a file of given size was recorded, each line counting its '\n'
+         */
+        boolean isComplete(long size) {
+            return malformed == false && lineOffset == size + 1;
+        }
+    }
+
+    static class FileEntry {
+        private final long size, modified;
+        private final List<IndexedOccurrence> occurrences;
+
+        FileEntry(long size, long modified, List<IndexedOccurrence> occurrences) {
+            this.size = size;
+            this.modified = modified;
+            this.occurrences = occurrences;
+        }
+
+        List<IndexedOccurrence> getOccurrences() {
+            return occurrences;
+        }
+    }
+
+    static class IndexedOccurrence {
+        private final long offset;
+        private final int length;
+        private final Kind kind;
+
+        IndexedOccurrence(long offset, int length, Kind kind) {
+            this.offset = offset;
+            this.length = length;
+            this.kind = kind;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        int getLength() {
+            return length;
+        }
+
+        Kind getKind() {
+            return kind;
+        }
+    }
+}
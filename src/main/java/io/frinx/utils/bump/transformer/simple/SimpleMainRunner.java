@@ -2,23 +2,65 @@ package io.frinx.utils.bump.transformer.simple;
 
 import static io.frinx.utils.bump.transformer.util.LoggingUtil.fatal;
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 
 import io.frinx.utils.bump.Bump;
+import io.frinx.utils.bump.transformer.FileTransformer;
 import io.frinx.utils.bump.transformer.MainRunner;
+import io.frinx.utils.bump.transformer.MainRunnerProvider;
+import io.frinx.utils.bump.transformer.RepositoryMainRunner;
+import io.frinx.utils.bump.transformer.RepositoryRunner;
+import io.frinx.utils.bump.transformer.VersionRules;
 import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory;
 import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.VersionTransformationStrategy;
+import io.frinx.utils.bump.transformer.simple.ChangePlan.VersionFinder;
+import io.frinx.utils.bump.transformer.simple.VersionScanner.Occurrence;
+import io.frinx.utils.bump.transformer.util.ArgsParsingUtil;
 import io.frinx.utils.bump.transformer.util.FileUtil;
+import io.frinx.utils.bump.transformer.util.LiteralPrefilter;
+import io.frinx.utils.bump.transformer.util.Metrics;
 import io.frinx.utils.bump.transformer.util.VersionFactory;
 import io.frinx.utils.bump.transformer.util.VersionFactory.Version;
 import io.frinx.utils.bump.transformer.util.VersionFactory.Version.VersionParsingException;
+import io.frinx.utils.bump.transformer.util.WriteBehindJournal;
 import java.io.File;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
-public class SimpleMainRunner implements MainRunner {
+public class SimpleMainRunner implements RepositoryMainRunner {
+
+    public static class Provider implements MainRunnerProvider {
+
+        @Override
+        public String getName() {
+            return "simple";
+        }
+
+        @Override
+        public MainRunner create() {
+            return new SimpleMainRunner();
+        }
+    }
+
+    enum FileDiscovery {
+        WALK, INDEX
+    }
+
+    enum Parser {
+        LINE, XML
+    }
+
+    enum JournalMode {
+        ON, OFF, RESUME, ROLLBACK
+    }
 
     @Override
     public void run(List<String> args) throws Exception {
@@ -28,59 +70,273 @@ public class SimpleMainRunner implements MainRunner {
         }
         if (args.size() == 1 && "-h".equals(args.get(0))) {
             VersionTransformationStrategyFactory.printHelp();
+            System.out.println("Optional: --threads <n> - number of files transformed in parallel, defaults to number of cores");
+            System.out.println("Optional: --files <walk|index> - find files by walking the directory tree (default)"
+                    + " or by listing files tracked in git index");
+            System.out.println("Optional: --since <revision> - only transform files that differ from given revision,"
+                    + " implies --files index");
+            System.out.println("Optional: --occurrence-index <file> - remember positions of versions in given file,"
+                    + " relative to the transformed folder, and patch unmodified files at those positions");
+            System.out.println("Optional: --plan <file> - do not modify files, write planned changes as JSON to given file"
+                    + " and as unified diff to the file with .diff appended");
+            System.out.println("Optional: --apply <file> - apply changes planned with --plan, other options are ignored");
+            System.out.println("Optional: --parser <line|xml> - match versions line by line (default) or by their place"
+                    + " in pom.xml and features.xml, e.g. project, parent or dependency version, properties and bundles");
+            System.out.println("Optional: --file-types <type,...|all> - types of files to transform in one pass, defaults to "
+                    + FileTypes.DEFAULT + ", known types are " + FileTypes.load(singletonList(FileTypes.ALL)));
+            System.out.println("Optional: --journal <on|off|resume|rollback> - record changes in " + WriteBehindJournal.DIRECTORY
+                    + " until the run finishes (default), do not record them, continue an unfinished run"
+                    + " or restore files changed by it");
             return;
         }
 
-        Entry<VersionTransformationStrategy, List<String>> entry = VersionTransformationStrategyFactory.parseArgs(args);
-        if (entry.getValue().size() > 0) {
-            throw fatal("Too many arguments:" + entry.getValue());
+        RepositoryRunner runner = prepare(args);
+        runner.run(new File("."));
+        runner.printStats();
+    }
+
+    @Override
+    public RepositoryRunner prepare(List<String> args) {
+        Entry<VersionRules, List<String>> entry = VersionTransformationStrategyFactory.parseRules(args);
+        final int[] threads = {FileUtil.defaultThreads()};
+        Map<String, Consumer<String>> parsers = new HashMap<>();
+        final FileDiscovery[] fileDiscovery = {FileDiscovery.WALK};
+        parsers.put("--threads", value -> threads[0] = Integer.parseInt(value));
+        parsers.put("--files", value -> fileDiscovery[0] = FileDiscovery.valueOf(value.toUpperCase()));
+        final String[] since = {null};
+        parsers.put("--since", value -> since[0] = value);
+        final String[] occurrenceIndex = {null};
+        parsers.put("--occurrence-index", value -> occurrenceIndex[0] = value);
+        final String[] plan = {null}, apply = {null};
+        parsers.put("--plan", value -> plan[0] = value);
+        parsers.put("--apply", value -> apply[0] = value);
+        final Parser[] parser = {Parser.LINE};
+        parsers.put("--parser", value -> parser[0] = Parser.valueOf(value.toUpperCase()));
+        final List<String> fileTypeNames = new ArrayList<>(singletonList(FileTypes.DEFAULT));
+        parsers.put("--file-types", value -> {
+            fileTypeNames.clear();
+            fileTypeNames.addAll(asList(value.split(",")));
+        });
+        final JournalMode[] journalMode = {JournalMode.ON};
+        parsers.put("--journal", value -> journalMode[0] = JournalMode.valueOf(value.toUpperCase()));
+        List<String> remainingArgs = ArgsParsingUtil.parse(entry.getValue(), parsers);
+        if (remainingArgs.size() > 0) {
+            throw fatal("Too many arguments:" + remainingArgs);
         }
 
-        File currentFolder = new File(".");
-        SimpleTransformer simple = new BumpMatchingSuffixSimpleTransformer(entry.getKey());
-        FileUtil.transformRecursively(currentFolder, simple.toFileTransformer());
+        VersionRules rules = entry.getKey();
+        List<String> suffixes = rules.getStrategies().stream().map(VersionTransformationStrategy::getQualifierSuffix)
+                .collect(Collectors.toList());
+        if (occurrenceIndex[0] != null) {
+            for (String suffix : suffixes) {
+                if (VersionScanner.supports(suffix) == false) {
+                    throw fatal("Occurrence index cannot be used with suffix " + suffix);
+                }
+            }
+        }
+        if (plan[0] != null && (apply[0] != null || occurrenceIndex[0] != null || parser[0] == Parser.XML)) {
+            throw fatal("--plan cannot be combined with --apply, --occurrence-index or --parser xml");
+        }
+        FileTypes fileTypes;
+        try {
+            fileTypes = FileTypes.load(fileTypeNames);
+        } catch (IllegalArgumentException e) {
+            throw fatal(e.getMessage());
+        }
+        BumpMatchingSuffixSimpleTransformer simple = new BumpMatchingSuffixSimpleTransformer(rules);
+        Map<FileType, VersionFinder> finders = new HashMap<>();
+        for (FileType fileType : fileTypes.getTypes()) {
+            finders.put(fileType, fileType.createFinder(rules.getQualifierSuffix(), simple::findVersions));
+        }
+        return new RepositoryRunner() {
+            @Override
+            public String run(File repository) throws Exception {
+                if (apply[0] != null) {
+                    return ChangePlan.apply(repository.toPath(), repository.toPath().resolve(apply[0]));
+                }
+                Path root = repository.toPath();
+                if (journalMode[0] == JournalMode.ROLLBACK) {
+                    return "Rolled back " + WriteBehindJournal.rollback(root) + " changed files";
+                }
+                Predicate<File> acceptFile = fileTypes.acceptor(root);
+                Optional<OccurrenceIndex> index = occurrenceIndex[0] == null ? Optional.empty()
+                        : Optional.of(OccurrenceIndex.load(root.resolve(occurrenceIndex[0]), root, suffixes));
+                // each file is matched once and read only by the transformer of its type
+                FileTransformer fileTransformer = fileTypes.toFileTransformer(root, fileType -> {
+                    VersionFinder finder = finders.get(fileType);
+                    Optional<LiteralPrefilter> prefilter = simple.getPrefilter();
+                    // the index prefilters files it remembers and records versions found in them
+                    if (index.isPresent() && fileType.isXml()) {
+                        finder = index.get().recording(finder);
+                        prefilter = Optional.empty();
+                    }
+                    FileTransformer typeTransformer = simple.forFinder(finder, prefilter).toFileTransformer();
+                    if (parser[0] == Parser.XML && fileType.isXml()) {
+                        typeTransformer = new XmlVersionTransformer(file -> true, prefilter,
+                                typeTransformer, rules.getQualifierSuffix(), simple::transform);
+                    }
+                    return typeTransformer;
+                });
+                if (index.isPresent()) {
+                    // the index remembers versions found in markup, files of other types are transformed every time
+                    fileTransformer = index.get().toFileTransformer(fileTransformer,
+                            file -> fileTypes.match(root, file.toPath()).filter(FileType::isXml).isPresent(),
+                            simple.getPrefilter(), simple::transform);
+                }
+                Optional<ChangePlan> changePlan = Optional.empty();
+                if (plan[0] != null) {
+                    changePlan = Optional.of(new ChangePlan(root));
+                    fileTransformer = changePlan.get().toPlanningTransformer(acceptFile, simple.getPrefilter(),
+                            file -> finders.get(fileTypes.match(root, file.toPath()).get()), simple::transform);
+                }
+                // files not changed by these rules, parser, file types and error mode are remembered by their blob id,
+                // files whose errors were ignored must be read again by a strict run, and a journal is resumed only
+                // by a run with the same key
+                String runKey = "simple " + (Bump.ignoreErrors ? "ignoreErrors " : "")
+                        + (parser[0] == Parser.XML ? "xml " : "")
+                        + (FileTypes.DEFAULT.equals(fileTypes.toString()) ? "" : fileTypes + " ") + rules;
+                WriteBehindJournal journal = null;
+                // planning does not modify files
+                if (changePlan.isPresent() == false && journalMode[0] != JournalMode.OFF) {
+                    if (journalMode[0] == JournalMode.RESUME) {
+                        journal = WriteBehindJournal.resume(root, runKey);
+                    } else if (WriteBehindJournal.exists(root)) {
+                        throw new IllegalStateException("Unfinished run found in " + repository + ", use"
+                                + " --journal resume to continue it or --journal rollback to restore its files");
+                    } else {
+                        journal = WriteBehindJournal.begin(root, runKey);
+                    }
+                    fileTransformer = journal.wrap(fileTransformer);
+                }
+                String result;
+                // a failure of the journal is rethrown by close, suppressed if the run failed first
+                try (WriteBehindJournal running = journal) {
+                    if (fileDiscovery[0] == FileDiscovery.INDEX || since[0] != null) {
+                        result = FileUtil.transformTracked(repository, path -> acceptFile.test(path.toFile()),
+                                fileTransformer, threads[0], Optional.ofNullable(since[0]), Optional.of(runKey))
+                                .toString();
+                    } else {
+                        result = FileUtil.transformRecursively(repository, fileTransformer, threads[0]).toString();
+                    }
+                    if (running != null) {
+                        running.commit();
+                    }
+                }
+                if (index.isPresent()) {
+                    index.get().save();
+                    index.get().printStats();
+                }
+                if (changePlan.isPresent()) {
+                    changePlan.get().write(repository.toPath().resolve(plan[0]));
+                }
+                return result;
+            }
+
+            @Override
+            public void printStats() {
+                simple.getPrefilter().ifPresent(LiteralPrefilter::printStats);
+                rules.printCacheStats();
+            }
+        };
     }
 
-    private static class BumpMatchingSuffixSimpleTransformer implements SimpleTransformer {
+    static class BumpMatchingSuffixSimpleTransformer implements SimpleTransformer {
 
-        private final Iterable<Pattern> patterns;
-        private final VersionTransformationStrategy strategy;
+        private final VersionRules rules;
+        private final Optional<LiteralPrefilter> prefilter;
+        private final MarkupVersionFinder finder;
 
         public BumpMatchingSuffixSimpleTransformer(VersionTransformationStrategy strategy) {
-            this.strategy = strategy;
-            List<Pattern> patterns = new ArrayList<>();
-            for(String suffix: asList("", "-SNAPSHOT")) {
-                patterns.add(Pattern.compile("^(.*<.+>)(.+" + strategy.getQualifierSuffix() + suffix + ")(</.+>.*)$", Pattern.DOTALL));
-                patterns.add(Pattern.compile("^(.*[\"'])([^\"']+" + strategy.getQualifierSuffix() + suffix + ")([\"'].*)$", Pattern.DOTALL));
-            }
-            this.patterns = patterns;
+            this(VersionRules.of(strategy));
+        }
+
+        public BumpMatchingSuffixSimpleTransformer(VersionRules rules) {
+            this.rules = rules;
+            // suffixes are part of the patterns, files containing literal part of none of them cannot match
+            List<String> literals = rules.getRequiredLiterals();
+            this.prefilter = literals.isEmpty() ? Optional.empty() : Optional.of(new LiteralPrefilter(literals));
+            this.finder = new MarkupVersionFinder(rules);
         }
 
         @Override
         public String fixLine(String line, File file, int lineNumber) {
-            for (Pattern p : patterns) {
-                Matcher m = p.matcher(line);
-                if (m.matches()) {
-                    String ver = m.group(2);
-                    try {
-                        ver = strategy.transform(ver);
-                    } catch (VersionParsingException e) {
-                        if (Bump.ignoreErrors == false) {
-                            throw new RuntimeException("Cannot parse", e);
-                        } else {
-                            System.err.println("Ignoring error while transforming version '" + ver + "'");
-                            e.printStackTrace();
-                        }
-                    }
-                    return m.group(1) + ver +  m.group(3);
+            return fixLine(line, this::findVersions);
+        }
+
+        /**
+         * @return transformer of lines of files already matched to a file type, using given finder of versions
+         */
+        SimpleTransformer forFinder(VersionFinder finder) {
+            return forFinder(finder, prefilter);
+        }
+
+        SimpleTransformer forFinder(VersionFinder finder, Optional<LiteralPrefilter> prefilter) {
+            BumpMatchingSuffixSimpleTransformer simple = this;
+            return new SimpleTransformer() {
+                @Override
+                public String fixLine(String line, File file, int lineNumber) {
+                    return simple.fixLine(line, finder);
+                }
+
+                @Override
+                public boolean acceptFile(File file) {
+                    return true;
                 }
+
+                @Override
+                public Optional<LiteralPrefilter> getPrefilter() {
+                    return prefilter;
+                }
+            };
+        }
+
+        private String fixLine(String line, VersionFinder finder) {
+            List<Occurrence> occurrences = finder.find(line);
+            if (occurrences.isEmpty()) {
+                return line;
+            }
+            Metrics.count("versionMatches", occurrences.size());
+            StringBuilder sb = new StringBuilder(line.length() + 16);
+            int copiedUntil = 0;
+            for (Occurrence occurrence : occurrences) {
+                sb.append(line, copiedUntil, occurrence.getStart());
+                sb.append(transform(line, occurrence.getStart(), occurrence.getEnd()));
+                copiedUntil = occurrence.getEnd();
+            }
+            return sb.append(line, copiedUntil, line.length()).toString();
+        }
+
+        List<Occurrence> findVersions(String line) {
+            return finder.find(line);
+        }
+
+        String transform(String ver) {
+            return transform(ver, 0, ver.length());
+        }
+
+        private String transform(String line, int from, int to) {
+            try {
+                return rules.transform(line, from, to);
+            } catch (VersionParsingException e) {
+                String ver = line.substring(from, to);
+                if (Bump.ignoreErrors == false) {
+                    throw new RuntimeException("Cannot parse", e);
+                } else {
+                    System.err.println("Ignoring error while transforming version '" + ver + "'");
+                    e.printStackTrace();
+                }
+                return ver;
             }
-            return line;
         }
 
         @Override
         public boolean acceptFile(File file) {
             return PomFeaturesAcceptor.acceptFile(file);
         }
+
+        @Override
+        public Optional<LiteralPrefilter> getPrefilter() {
+            return prefilter;
+        }
     }
 }
@@ -2,17 +2,16 @@ package io.frinx.utils.bump.transformer.simple;
 
 import static java.lang.String.format;
 
-import com.google.common.base.Charsets;
-import com.google.common.base.Joiner;
-import com.google.common.base.Splitter;
-import com.google.common.collect.Lists;
-import com.google.common.io.Files;
 import io.frinx.utils.bump.Bump;
 import io.frinx.utils.bump.transformer.FileTransformer;
+import io.frinx.utils.bump.transformer.util.LineRewriter;
+import io.frinx.utils.bump.transformer.util.LiteralPrefilter;
+import io.frinx.utils.bump.transformer.util.Metrics;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface SimpleTransformer {
 
@@ -20,6 +19,14 @@ public interface SimpleTransformer {
 
     boolean acceptFile(File file);
 
+    /**
+     * Files accepted by this transformer that do not contain the prefilter's literal are reported as
+     * not changed without being read.
+     */
+    default Optional<LiteralPrefilter> getPrefilter() {
+        return Optional.empty();
+    }
+
     class PomFeaturesAcceptor {
         static boolean acceptFile(File file) {
             return "features.xml".equals(file.getName()) || "pom.xml".equals(file.getName());
@@ -40,13 +47,13 @@ public interface SimpleTransformer {
             @Override
             public TransformFileResult transformFile(File file) throws IOException {
                 if (simpleTransformer.acceptFile(file)) {
-                    String content = Files.toString(file, Charsets.UTF_8);
-                    List<String> inputLines = Lists.newArrayList(Splitter.on('\n').split(content));
-                    List<String> outputLines = fixLines(inputLines, file);
-                    if (inputLines.equals(outputLines) == false) {
+                    Optional<LiteralPrefilter> prefilter = simpleTransformer.getPrefilter();
+                    if (prefilter.isPresent() && prefilter.get().mightMatch(file) == false) {
+                        return TransformFileResult.NOT_CHANGED;
+                    }
+                    // file is replaced only if some line changes
+                    if (LineRewriter.rewrite(file, (input, output) -> fixLines(input, output, file))) {
                         System.out.println(file.getAbsolutePath());
-                        // replace the file
-                        Files.write(Joiner.on("\n").join(outputLines), file, Charsets.UTF_8);
                         return TransformFileResult.CHANGED;
                     }
                     return TransformFileResult.NOT_CHANGED;
@@ -54,10 +61,10 @@ public interface SimpleTransformer {
                 return TransformFileResult.NOT_MATCHED;
             }
 
-            private List<String> fixLines(List<String> inputLines, File file) {
-                List<String> newLines = new ArrayList<>();
+            private void fixLines(Iterator<String> inputLines, Consumer<String> outputLines, File file) {
                 int lineNumber = 0;
-                for (String inputLine : inputLines) {
+                while (inputLines.hasNext()) {
+                    String inputLine = inputLines.next();
                     lineNumber++;
                     String outputLine;
                     try {
@@ -71,11 +78,11 @@ public interface SimpleTransformer {
                         }
                     }
                     if (inputLine.equals(outputLine) == false) {
+                        Metrics.count("linesChanged", 1);
                         System.err.println(format("different!'%s'--'%s'", inputLine, outputLine));
                     }
-                    newLines.add(outputLine);
+                    outputLines.accept(outputLine);
                 }
-                return newLines;
             }
         };
     }
@@ -0,0 +1,49 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import io.frinx.utils.bump.transformer.simple.ChangePlan.VersionFinder;
+import io.frinx.utils.bump.transformer.simple.VersionScanner.Kind;
+import io.frinx.utils.bump.transformer.simple.VersionScanner.Occurrence;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds versions written without markup, as in build.gradle, bnd files, MANIFEST.MF, Karaf .cfg and .properties:
+ * <pre>
+ * {@code
+ *   version = '1.2.3.frinx-SNAPSHOT'
+ *   compile "org.example:artifact:1.2.3.frinx"
+ *   Bundle-Version: 1.2.3.frinx
+ *   odl.version=1.2.3.frinx
+ * }
+ * </pre>
+ * A version is a token of letters, digits, '.', '_' and '-' that starts with a digit and ends with the suffix,
+ * optionally followed by -SNAPSHOT. Starting with a digit keeps package names like io.frinx untouched.
+ * Versions wrapped in MANIFEST.MF continuation lines are not found.
+ */
+class TokenVersionFinder implements VersionFinder {
+
+    private static final String TOKEN_CHARS = "A-Za-z0-9._-";
+
+    private final Pattern pattern;
+
+    TokenVersionFinder(String qualifierSuffix) {
+        this.pattern = Pattern.compile("(?<![" + TOKEN_CHARS + "])[0-9][" + TOKEN_CHARS + "]*?(?:" + qualifierSuffix
+                + ")(?:-SNAPSHOT)?(?![" + TOKEN_CHARS + "])");
+    }
+
+    @Override
+    public List<Occurrence> find(String line) {
+        Matcher m = pattern.matcher(line);
+        if (m.find() == false) {
+            return Collections.emptyList();
+        }
+        List<Occurrence> result = new ArrayList<>(1);
+        do {
+            result.add(new Occurrence(m.start(), m.end(), Kind.TOKEN));
+        } while (m.find());
+        return result;
+    }
+}
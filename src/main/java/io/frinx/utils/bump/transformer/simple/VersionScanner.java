@@ -0,0 +1,140 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds versions ending with the qualifier suffix in a line without regular expressions.
+ * Two forms are recognized, in this order of preference, first with the plain suffix, then with suffix-SNAPSHOT:
+ * <pre>
+ * {@code
+ *   <version>1.2.3.frinx</version>      element text
+ *   <bundle version="1.2.3.frinx"/>     quoted attribute
+ * }
+ * </pre>
+ * The occurrence matched by the former patterns {@code ^(.*<.+>)(.+suffix)(</.+>.*)$} and
+ * {@code ^(.*["'])([^"']+suffix)(["'].*)$} is always among the occurrences found, but all occurrences on the line
+ * are reported in a single pass instead of backtracking.
+ */
+public class VersionScanner {
+
+    private static final String DASH_SNAPSHOT = "-SNAPSHOT";
+
+    public enum Kind {
+        ELEMENT_TEXT, QUOTED_ATTRIBUTE, TOKEN
+    }
+
+    public static class Occurrence {
+        private final int start, end;
+        private final Kind kind;
+
+        Occurrence(int start, int end, Kind kind) {
+            this.start = start;
+            this.end = end;
+            this.kind = kind;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        @Override
+        public String toString() {
+            return kind + "[" + start + "," + end + ")";
+        }
+    }
+
+    private final String suffix, snapshotSuffix;
+
+    public VersionScanner(String qualifierSuffix) {
+        if (supports(qualifierSuffix) == false) {
+            throw new IllegalArgumentException("Unsupported qualifier suffix '" + qualifierSuffix + "'");
+        }
+        this.suffix = qualifierSuffix;
+        this.snapshotSuffix = qualifierSuffix + DASH_SNAPSHOT;
+    }
+
+    /**
+     * Suffix used to be part of the patterns, so only suffixes without regex syntax can be scanned for literally.
+     * Suffixes containing the delimiters are left to the patterns as well.
+     */
+    public static boolean supports(String qualifierSuffix) {
+        return qualifierSuffix.isEmpty() == false && qualifierSuffix.matches("[^\\\\.\\[\\]{}()*+?^$|<>\"']+");
+    }
+
+    /**
+     * Find all occurrences in one pass from left to right, with markup looked up in given part of the line.
+     * Element text is followed by {@code </} and a '>' at least one character later, and starts after the last '>'
+     * that leaves at least one character before the suffix and has a '<' at least two characters before it.
+     * Element text with more versions ends at the last of them. Quoted attribute is everything between two
+     * consecutive quotes, at least one character longer than the suffix. Occurrences overlapping an earlier one
+     * are skipped.
+     *
+     * @return all occurrences in given part of the line, sorted by position
+     */
+    public List<Occurrence> findAll(String line, int from, int to) {
+        List<Occurrence> result = new ArrayList<>();
+        int lastGt = lastIndexOf(line, '>', to - 1, from);
+        // last two '>' and the last quote before i, first '<'
+        int gt = -1, previousGt = -1, quote = -1, firstLt = -1;
+        int end = from;
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (c == suffix.charAt(0) && line.startsWith(suffix, i)) {
+                int j = i + suffix.length();
+                if (line.startsWith(DASH_SNAPSHOT, j)) {
+                    j += DASH_SNAPSHOT.length();
+                }
+                Occurrence occurrence = null;
+                int versionGt = gt <= i - 2 ? gt : previousGt;
+                if (j + 1 < to && line.charAt(j) == '<' && line.charAt(j + 1) == '/' && lastGt >= j + 3) {
+                    if (versionGt != -1 && firstLt != -1 && firstLt <= versionGt - 2) {
+                        occurrence = new Occurrence(versionGt + 1, j, Kind.ELEMENT_TEXT);
+                    }
+                } else if (j < to && isQuote(line.charAt(j)) && quote != -1 && quote < i - 1) {
+                    occurrence = new Occurrence(quote + 1, j, Kind.QUOTED_ATTRIBUTE);
+                }
+                Occurrence last = result.isEmpty() ? null : result.get(result.size() - 1);
+                if (occurrence != null && occurrence.kind == Kind.ELEMENT_TEXT && last != null
+                        && last.kind == Kind.ELEMENT_TEXT && last.start == occurrence.start) {
+                    // no markup in between, the element text runs up to the last version as with the greedy pattern
+                    result.set(result.size() - 1, occurrence);
+                    end = occurrence.end;
+                } else if (occurrence != null && occurrence.start >= end) {
+                    result.add(occurrence);
+                    end = occurrence.end;
+                }
+            }
+            if (c == '>') {
+                previousGt = gt;
+                gt = i;
+            } else if (c == '<' && firstLt == -1) {
+                firstLt = i;
+            } else if (isQuote(c)) {
+                quote = i;
+            }
+        }
+        return result;
+    }
+
+    private static int lastIndexOf(String line, char c, int fromIndex, int lowerBound) {
+        for (int i = fromIndex; i >= lowerBound; i--) {
+            if (line.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isQuote(char c) {
+        return c == '"' || c == '\'';
+    }
+}
@@ -0,0 +1,285 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Forward only cursor over XML in an ASCII compatible encoding, in the style of a StAX stream reader, that reports
+ * exact byte offsets of text and attribute values. Markup is found on bytes, only names are decoded, so content
+ * is never copied and a memory mapped file of any size is read in constant memory.
+ * <p>
+ * Comments, CDATA sections, processing instructions and DOCTYPE are reported as {@link Event#OTHER}. Entities
+ * are not resolved. Well-formedness is only checked as far as tags have to be properly nested.
+ */
+class XmlCursor {
+
+    enum Event {
+        START_ELEMENT, END_ELEMENT, TEXT, OTHER, END_DOCUMENT
+    }
+
+    static class MalformedXmlException extends Exception {
+        MalformedXmlException(String message, int offset) {
+            super(message + " at byte " + offset);
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private final Deque<String> elements = new ArrayDeque<>();
+    private int position;
+    private boolean pendingEnd;
+
+    private String name;
+    private int textStart, textEnd;
+    private int attributeCount;
+    private String[] attributeNames = new String[8];
+    private int[] attributeValueStarts = new int[8], attributeValueEnds = new int[8];
+
+    XmlCursor(ByteBuffer buffer) throws MalformedXmlException {
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+        if (limit >= 2 && ((get(0) == (byte) 0xFE && get(1) == (byte) 0xFF) || (get(0) == (byte) 0xFF && get(1) == (byte) 0xFE))) {
+            throw new MalformedXmlException("UTF-16 is not supported", 0);
+        }
+    }
+
+    Event next() throws MalformedXmlException {
+        if (pendingEnd) {
+            // second half of an empty element tag
+            pendingEnd = false;
+            elements.pop();
+            return Event.END_ELEMENT;
+        }
+        if (position >= limit) {
+            if (elements.isEmpty() == false) {
+                throw new MalformedXmlException("Unclosed element " + elements.peek(), position);
+            }
+            return Event.END_DOCUMENT;
+        }
+        if (get(position) != '<') {
+            textStart = position;
+            while (position < limit && get(position) != '<') {
+                position++;
+            }
+            textEnd = position;
+            return Event.TEXT;
+        }
+        if (startsWith("<!--")) {
+            position = indexOf("-->", position + 4) + 3;
+            return Event.OTHER;
+        }
+        if (startsWith("<![CDATA[")) {
+            position = indexOf("]]>", position + 9) + 3;
+            return Event.OTHER;
+        }
+        if (startsWith("<?")) {
+            position = indexOf("?>", position + 2) + 2;
+            return Event.OTHER;
+        }
+        if (startsWith("<!")) {
+            skipDeclaration();
+            return Event.OTHER;
+        }
+        if (startsWith("</")) {
+            int tagStart = position;
+            position += 2;
+            name = readName();
+            skipWhitespace();
+            expect('>');
+            if (name.equals(elements.peek()) == false) {
+                throw new MalformedXmlException("Unexpected end of " + name, tagStart);
+            }
+            elements.pop();
+            return Event.END_ELEMENT;
+        }
+        readStartTag();
+        return Event.START_ELEMENT;
+    }
+
+    /**
+     * @return qualified name of the current start or end element
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return number of elements enclosing the cursor, including the current start element
+     */
+    int getDepth() {
+        return elements.size();
+    }
+
+    int getTextStart() {
+        return textStart;
+    }
+
+    int getTextEnd() {
+        return textEnd;
+    }
+
+    int getAttributeCount() {
+        return attributeCount;
+    }
+
+    String getAttributeName(int index) {
+        return attributeNames[index];
+    }
+
+    int getAttributeValueStart(int index) {
+        return attributeValueStarts[index];
+    }
+
+    int getAttributeValueEnd(int index) {
+        return attributeValueEnds[index];
+    }
+
+    private void readStartTag() throws MalformedXmlException {
+        position++;
+        name = readName();
+        attributeCount = 0;
+        while (true) {
+            skipWhitespace();
+            checkNotEnd();
+            byte b = get(position);
+            if (b == '>') {
+                position++;
+                break;
+            }
+            if (b == '/') {
+                position++;
+                expect('>');
+                pendingEnd = true;
+                break;
+            }
+            String attributeName = readName();
+            skipWhitespace();
+            expect('=');
+            skipWhitespace();
+            checkNotEnd();
+            byte quote = get(position);
+            if (quote != '"' && quote != '\'') {
+                throw new MalformedXmlException("Expected quoted value of " + attributeName, position);
+            }
+            int valueStart = position + 1;
+            int valueEnd = valueStart;
+            while (valueEnd < limit && get(valueEnd) != quote) {
+                valueEnd++;
+            }
+            position = valueEnd;
+            expect(quote);
+            addAttribute(attributeName, valueStart, valueEnd);
+        }
+        elements.push(name);
+    }
+
+    private void addAttribute(String attributeName, int valueStart, int valueEnd) {
+        if (attributeCount == attributeNames.length) {
+            attributeNames = Arrays.copyOf(attributeNames, attributeCount * 2);
+            attributeValueStarts = Arrays.copyOf(attributeValueStarts, attributeCount * 2);
+            attributeValueEnds = Arrays.copyOf(attributeValueEnds, attributeCount * 2);
+        }
+        attributeNames[attributeCount] = attributeName;
+        attributeValueStarts[attributeCount] = valueStart;
+        attributeValueEnds[attributeCount] = valueEnd;
+        attributeCount++;
+    }
+
+    // DOCTYPE may contain an internal subset in brackets, with quoted strings containing '>'
+    private void skipDeclaration() throws MalformedXmlException {
+        int brackets = 0;
+        byte quote = 0;
+        for (position += 2; position < limit; position++) {
+            byte b = get(position);
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '[') {
+                brackets++;
+            } else if (b == ']') {
+                brackets--;
+            } else if (b == '>' && brackets == 0) {
+                position++;
+                return;
+            }
+        }
+        throw new MalformedXmlException("Unterminated declaration", position);
+    }
+
+    private String readName() throws MalformedXmlException {
+        int start = position;
+        while (position < limit && isNameEnd(get(position)) == false) {
+            position++;
+        }
+        if (position == start) {
+            throw new MalformedXmlException("Expected name", position);
+        }
+        byte[] bytes = new byte[position - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isNameEnd(byte b) {
+        return isWhitespace(b) || b == '>' || b == '/' || b == '=' || b == '<' || b == '"' || b == '\'';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private void skipWhitespace() {
+        while (position < limit && isWhitespace(get(position))) {
+            position++;
+        }
+    }
+
+    private void expect(int b) throws MalformedXmlException {
+        checkNotEnd();
+        if (get(position) != b) {
+            throw new MalformedXmlException("Expected '" + (char) b + "'", position);
+        }
+        position++;
+    }
+
+    private void checkNotEnd() throws MalformedXmlException {
+        if (position >= limit) {
+            throw new MalformedXmlException("Unexpected end of file", position);
+        }
+    }
+
+    private boolean startsWith(String markup) {
+        if (position + markup.length() > limit) {
+            return false;
+        }
+        for (int i = 0; i < markup.length(); i++) {
+            if (get(position + i) != markup.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(String markup, int from) throws MalformedXmlException {
+        int saved = position;
+        for (position = from; position + markup.length() <= limit; position++) {
+            if (startsWith(markup)) {
+                int found = position;
+                position = saved;
+                return found;
+            }
+        }
+        throw new MalformedXmlException("Missing '" + markup + "'", saved);
+    }
+
+    private byte get(int index) {
+        return buffer.get(index);
+    }
+}
@@ -0,0 +1,198 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import static java.lang.String.format;
+
+import io.frinx.utils.bump.transformer.FileTransformer;
+import io.frinx.utils.bump.transformer.simple.XmlCursor.Event;
+import io.frinx.utils.bump.transformer.simple.XmlCursor.MalformedXmlException;
+import io.frinx.utils.bump.transformer.util.ByteRangePatcher;
+import io.frinx.utils.bump.transformer.util.ByteRangePatcher.Replacement;
+import io.frinx.utils.bump.transformer.util.LiteralPrefilter;
+import io.frinx.utils.bump.transformer.util.Metrics;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+/**
+ * Transforms versions in pom.xml and features.xml by their place in the document instead of line by line:
+ * text of project, parent and dependency version, text of properties, version in mvn: urls of bundles and
+ * version attributes of any element. Text may span several lines. Only the bytes of matching versions are
+ * rewritten, the rest of the file stays as it is.
+ * <p>
+ * The file is memory mapped and read by {@link XmlCursor} in one pass, without building a document. Files that
+ * cannot be parsed are passed to the line based fallback.
+ */
+class XmlVersionTransformer implements FileTransformer {
+
+    private final Predicate<File> acceptFile;
+    private final Optional<LiteralPrefilter> prefilter;
+    private final FileTransformer fallback;
+    private final Pattern versionPattern;
+    private final UnaryOperator<String> transformVersion;
+
+    XmlVersionTransformer(Predicate<File> acceptFile, Optional<LiteralPrefilter> prefilter, FileTransformer fallback,
+                          String qualifierSuffix, UnaryOperator<String> transformVersion) {
+        this.acceptFile = acceptFile;
+        this.prefilter = prefilter;
+        this.fallback = fallback;
+        // same versions as matched by line based patterns
+        this.versionPattern = Pattern.compile(".+" + qualifierSuffix + "(-SNAPSHOT)?", Pattern.DOTALL);
+        this.transformVersion = transformVersion;
+    }
+
+    @Override
+    public TransformFileResult transformFile(File file) throws IOException {
+        if (acceptFile.test(file) == false) {
+            return TransformFileResult.NOT_MATCHED;
+        }
+        if (prefilter.isPresent() && prefilter.get().mightMatch(file) == false) {
+            return TransformFileResult.NOT_CHANGED;
+        }
+        List<Replacement> replacements;
+        try (Metrics.Timer timer = Metrics.start("xml");
+             FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return fallback.transformFile(file);
+            }
+            Metrics.count("bytesRead", size);
+            replacements = findReplacements(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (MalformedXmlException e) {
+            System.out.println(format("Transforming %s line by line: %s", file.getAbsolutePath(), e.getMessage()));
+            return fallback.transformFile(file);
+        }
+        if (replacements.isEmpty()) {
+            return TransformFileResult.NOT_CHANGED;
+        }
+        ByteRangePatcher.patch(file.toPath(), replacements);
+        System.out.println(file.getAbsolutePath());
+        return TransformFileResult.CHANGED;
+    }
+
+    List<Replacement> findReplacements(ByteBuffer buffer) throws MalformedXmlException {
+        List<Replacement> replacements = new ArrayList<>();
+        XmlCursor cursor = new XmlCursor(buffer);
+        Deque<String> elements = new ArrayDeque<>();
+        // text of the innermost element: -1 before any text, -2 once the element has a child element,
+        // end is -1 if the text is interrupted by a comment or CDATA
+        int textStart = -1, textEnd = -1;
+        Event event;
+        while ((event = cursor.next()) != Event.END_DOCUMENT) {
+            switch (event) {
+                case START_ELEMENT:
+                    elements.push(localName(cursor.getName()));
+                    for (int i = 0; i < cursor.getAttributeCount(); i++) {
+                        if ("version".equals(localName(cursor.getAttributeName(i)))) {
+                            addIfVersion(buffer, cursor.getAttributeValueStart(i), cursor.getAttributeValueEnd(i),
+                                    replacements);
+                        }
+                    }
+                    textStart = -1;
+                    break;
+                case TEXT:
+                    if (textStart == -1) {
+                        textStart = cursor.getTextStart();
+                        textEnd = cursor.getTextEnd();
+                    } else if (textStart >= 0) {
+                        textEnd = -1;
+                    }
+                    break;
+                case OTHER:
+                    if (textStart >= 0) {
+                        textEnd = -1;
+                    }
+                    break;
+                case END_ELEMENT:
+                    String name = elements.pop();
+                    if (textStart >= 0 && textEnd != -1) {
+                        addIfVersionText(buffer, name, elements.peek(), textStart, textEnd, replacements);
+                    }
+                    textStart = -2;
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected event " + event);
+            }
+        }
+        return replacements;
+    }
+
+    private void addIfVersionText(ByteBuffer buffer, String name, String parent, int start, int end,
+                                  List<Replacement> replacements) {
+        while (start < end && isWhitespace(buffer.get(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(buffer.get(end - 1))) {
+            end--;
+        }
+        if ("version".equals(name) && ("project".equals(parent) || "parent".equals(parent) || "dependency".equals(parent))
+                || "properties".equals(parent)) {
+            addIfVersion(buffer, start, end, replacements);
+        } else if ("bundle".equals(name)) {
+            addIfMavenUrlVersion(buffer, start, end, replacements);
+        }
+    }
+
+    // mvn:groupId/artifactId/version[/type[/classifier]], possibly wrapped, e.g. wrap:mvn:...$instructions
+    private void addIfMavenUrlVersion(ByteBuffer buffer, int start, int end, List<Replacement> replacements) {
+        String url = decode(buffer, start, end);
+        int mvn = url.indexOf("mvn:");
+        if (mvn == -1) {
+            return;
+        }
+        int artifactSlash = url.indexOf('/', mvn);
+        int versionSlash = artifactSlash == -1 ? -1 : url.indexOf('/', artifactSlash + 1);
+        if (versionSlash == -1) {
+            return;
+        }
+        int versionEnd = versionSlash + 1;
+        while (versionEnd < url.length() && url.charAt(versionEnd) != '/' && url.charAt(versionEnd) != '$') {
+            versionEnd++;
+        }
+        // url is decoded, replacement offsets are in bytes
+        int from = start + OccurrenceIndex.utf8Length(url, 0, versionSlash + 1);
+        addIfVersion(buffer, from, from + OccurrenceIndex.utf8Length(url, versionSlash + 1, versionEnd), replacements);
+    }
+
+    private void addIfVersion(ByteBuffer buffer, int start, int end, List<Replacement> replacements) {
+        if (start == end) {
+            return;
+        }
+        String version = decode(buffer, start, end);
+        if (version.indexOf('&') != -1 || versionPattern.matcher(version).matches() == false) {
+            return;
+        }
+        Metrics.count("versionMatches", 1);
+        String transformed = transformVersion.apply(version);
+        if (transformed.equals(version) == false) {
+            System.err.println(format("different!'%s'--'%s'", version, transformed));
+            replacements.add(new Replacement(start, end - start, transformed.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    private static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String localName(String name) {
+        return name.substring(name.indexOf(':') + 1);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+}
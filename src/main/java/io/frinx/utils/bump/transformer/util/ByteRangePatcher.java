@@ -0,0 +1,122 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Replaces byte ranges of a file without reading the rest of it. If every replacement has the same length as the
+ * range it replaces, bytes are overwritten in place by positioned writes, unless a {@link WriteBehindJournal} needs
+ * to keep the original. Otherwise the file is copied channel to channel into a temporary file, with the replacements
+ * in between, and moved over the original.
+ */
+public class ByteRangePatcher {
+
+    public static class Replacement {
+        private final long offset;
+        private final int length;
+        private final byte[] bytes;
+
+        public Replacement(long offset, int length, byte[] bytes) {
+            checkArgument(offset >= 0 && length >= 0, "Invalid range %s+%s", offset, length);
+            this.offset = offset;
+            this.length = length;
+            this.bytes = bytes;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * Read bytes of given range.
+     */
+    public static byte[] read(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) == -1) {
+                throw new IOException("Range " + offset + "+" + length + " is beyond end of file");
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param replacements sorted by offset, not overlapping
+     */
+    public static void patch(Path path, List<Replacement> replacements) throws IOException {
+        long end = 0;
+        boolean sameLength = true;
+        for (Replacement replacement : replacements) {
+            checkArgument(replacement.offset >= end, "Replacements overlap or are not sorted");
+            end = replacement.offset + replacement.length;
+            sameLength &= replacement.length == replacement.bytes.length;
+        }
+        // in place writes cannot be rolled back by a journal
+        if (sameLength && WriteBehindJournal.isActive() == false) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                for (Replacement replacement : replacements) {
+                    write(channel, ByteBuffer.wrap(replacement.bytes), replacement.offset);
+                }
+            }
+            return;
+        }
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), "." + path.getFileName(), ".bump");
+        try {
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                long position = 0;
+                for (Replacement replacement : replacements) {
+                    transfer(in, position, replacement.offset - position, out);
+                    ByteBuffer bytes = ByteBuffer.wrap(replacement.bytes);
+                    while (bytes.hasRemaining()) {
+                        out.write(bytes);
+                    }
+                    position = replacement.offset + replacement.length;
+                }
+                transfer(in, position, in.size() - position, out);
+            }
+            if (WriteBehindJournal.stage(temp, path)) {
+                temp = null;
+            } else {
+                LineRewriter.replaceAtomically(temp, path);
+            }
+        } finally {
+            if (temp != null) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void transfer(FileChannel in, long position, long count, FileChannel out) throws IOException {
+        while (count > 0) {
+            long transferred = in.transferTo(position, count, out);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += transferred;
+            count -= transferred;
+        }
+    }
+}
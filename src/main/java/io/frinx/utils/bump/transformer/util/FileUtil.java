@@ -1,38 +1,291 @@
 package io.frinx.utils.bump.transformer.util;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
 
+import com.google.common.collect.Maps;
 import io.frinx.utils.bump.transformer.FileTransformer;
 import io.frinx.utils.bump.transformer.FileTransformer.TransformFileResult;
+import io.frinx.utils.bump.transformer.util.GitIndexFiles.TrackedFile;
+import io.frinx.utils.bump.transformer.util.GitIndexFiles.TrackedFiles;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import org.eclipse.jgit.lib.ObjectId;
 
 public class FileUtil {
 
-        public static void transformRecursively(File folder, FileTransformer function) throws IOException {
-            final int[] notMatched_notChanged_changed = new int[3];
-            java.nio.file.Files.walkFileTree(folder.toPath(), new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
-                    File file = path.toFile();
-                    TransformFileResult transformFileResult = function.transformFile(file);
-                    Objects.requireNonNull(transformFileResult);
-                    if (transformFileResult == TransformFileResult.NOT_MATCHED) {
-                        notMatched_notChanged_changed[0]++;
-                    } else if (transformFileResult == TransformFileResult.NOT_CHANGED) {
-                        notMatched_notChanged_changed[1]++;
-                    } else {
-                        notMatched_notChanged_changed[2]++;
-                    }
+    private static final Comparator<Entry<Path, Long>> BY_SIZE_DESCENDING =
+            (a, b) -> Long.compare(b.getValue(), a.getValue());
+
+    public static int defaultThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    public static ResultCounters transformRecursively(File folder, FileTransformer function) throws IOException {
+        return transformRecursively(folder, function, 1);
+    }
+
+    /**
+     * Transform all files under given folder. With more than one thread, files are first collected
+     * and then transformed on a fork-join pool, biggest files first. When called from a fork-join pool,
+     * as in batch mode, that pool is used instead of a new one.
+     */
+    public static ResultCounters transformRecursively(File folder, FileTransformer function, int threads) throws IOException {
+        checkArgument(threads > 0, "Number of threads must be positive, got " + threads);
+        ResultCounters counters = new ResultCounters();
+        FileTransformer timedFunction = timed(function);
+        if (threads == 1) {
+            try (Metrics.Timer timer = Metrics.start("walk")) {
+                walkFiles(folder, (path, attrs) -> counters.increment(timedFunction.transformFile(path.toFile())));
+            }
+        } else {
+            List<Entry<Path, Long>> files;
+            try (Metrics.Timer timer = Metrics.start("walk")) {
+                files = listFilesBySizeDescending(folder);
+            }
+            transformInParallel(files, timedFunction, threads, counters);
+        }
+        System.out.println(counters);
+        return counters;
+    }
+
+    /**
+     * Transform files under given folder that are tracked by git and accepted by the filter. Files are listed
+     * from the git index instead of walking the directory tree, see {@link GitIndexFiles}.
+     */
+    public static ResultCounters transformTracked(File folder, Predicate<Path> filter, FileTransformer function,
+                                                  int threads) throws IOException {
+        return transformTracked(folder, filter, function, threads, Optional.empty(), Optional.empty());
+    }
+
+    /**
+     * @param since if present, only files that differ from given revision are transformed
+     * @param cacheKey if present, files known from previous runs with the same key to be not changed
+     *                 are skipped without being read, see {@link ResultCache}
+     */
+    public static ResultCounters transformTracked(File folder, Predicate<Path> filter, FileTransformer function,
+                                                  int threads, Optional<String> since, Optional<String> cacheKey)
+            throws IOException {
+        checkArgument(threads > 0, "Number of threads must be positive, got " + threads);
+        TrackedFiles trackedFiles;
+        try (Metrics.Timer timer = Metrics.start("gitIndex")) {
+            trackedFiles = GitIndexFiles.listTracked(folder, filter, since);
+        }
+        if (since.isPresent()) {
+            System.out.println(format("Skipped %d files not changed since %s", trackedFiles.getUnchanged(), since.get()));
+        }
+        FileTransformer cachingFunction = timed(function);
+        Optional<ResultCache> cache = Optional.empty();
+        if (cacheKey.isPresent()) {
+            cache = Optional.of(ResultCache.load(trackedFiles.getGitDir(), cacheKey.get()));
+            cachingFunction = withCache(trackedFiles, cachingFunction, cache.get());
+        }
+        List<Entry<Path, Long>> files = new ArrayList<>();
+        for (TrackedFile file : trackedFiles.getFiles()) {
+            files.add(Maps.immutableEntry(file.getPath(), file.getSize()));
+        }
+        ResultCounters counters = new ResultCounters();
+        if (threads == 1) {
+            for (Entry<Path, Long> file : files) {
+                counters.increment(cachingFunction.transformFile(file.getKey().toFile()));
+            }
+        } else {
+            files.sort(BY_SIZE_DESCENDING);
+            transformInParallel(files, cachingFunction, threads, counters);
+        }
+        if (cache.isPresent()) {
+            cache.get().save();
+            cache.get().printStats();
+        }
+        System.out.println(counters);
+        return counters;
+    }
+
+    private static FileTransformer timed(FileTransformer function) {
+        if (Metrics.isEnabled() == false) {
+            return function;
+        }
+        return file -> {
+            try (Metrics.Timer timer = Metrics.start("file")) {
+                return function.transformFile(file);
+            }
+        };
+    }
+
+    private static FileTransformer withCache(TrackedFiles trackedFiles, FileTransformer function, ResultCache cache) {
+        Map<File, ObjectId> blobIds = new HashMap<>();
+        for (TrackedFile file : trackedFiles.getFiles()) {
+            blobIds.put(file.getPath().toFile(), file.getBlobId());
+        }
+        return file -> {
+            ObjectId blobId = blobIds.get(file);
+            if (cache.isNotChanged(blobId)) {
+                return TransformFileResult.NOT_CHANGED;
+            }
+            TransformFileResult result = function.transformFile(file);
+            if (result == TransformFileResult.NOT_CHANGED) {
+                cache.recordNotChanged(blobId);
+            }
+            return result;
+        };
+    }
+
+    private static void transformInParallel(List<Entry<Path, Long>> files, FileTransformer function, int threads,
+                                            ResultCounters counters) throws IOException {
+        TransformTask task = new TransformTask(files, 0, files.size(), function, counters);
+        // when already running on a pool, its workers transform the files
+        ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? null : new ForkJoinPool(threads);
+        try {
+            if (pool == null) {
+                task.invoke();
+            } else {
+                pool.invoke(task);
+            }
+        } catch (RuntimeException e) {
+            throw unwrapIOException(e);
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private static List<Entry<Path, Long>> listFilesBySizeDescending(File folder) throws IOException {
+        List<Entry<Path, Long>> files = new ArrayList<>();
+        walkFiles(folder, (path, attrs) -> files.add(Maps.immutableEntry(path, attrs.size())));
+        // large files first, so that they do not end up as the tail of the run
+        files.sort(BY_SIZE_DESCENDING);
+        return files;
+    }
+
+    @FunctionalInterface
+    interface PathVisitor {
+        void visitFile(Path path, BasicFileAttributes attrs) throws IOException;
+    }
+
+    /**
+     * Visit all files under given folder, skipping directories matched by {@link IgnoreRules}.
+     */
+    static void walkFiles(File folder, PathVisitor visitor) throws IOException {
+        Path root = folder.toPath();
+        Deque<IgnoreRules> ignoreRules = new ArrayDeque<>();
+        final int[] pruned = {0};
+        java.nio.file.Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (ignoreRules.isEmpty()) {
+                    ignoreRules.push(IgnoreRules.forRoot(dir));
                     return FileVisitResult.CONTINUE;
                 }
-            });
-            System.out.println(format("Changed %d, Not changed %d, Not matched %d", notMatched_notChanged_changed[2],
-                    notMatched_notChanged_changed[1], notMatched_notChanged_changed[0]));
+                if (ignoreRules.peek().isIgnored(dir, true)) {
+                    pruned[0]++;
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                ignoreRules.push(ignoreRules.peek().forDirectory(dir));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
+                visitor.visitFile(path, attrs);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                ignoreRules.pop();
+                return super.postVisitDirectory(dir, exc);
+            }
+        });
+        if (pruned[0] > 0) {
+            System.out.println(format("Skipped %d ignored directories", pruned[0]));
+        }
+    }
+
+    private static RuntimeException unwrapIOException(RuntimeException e) throws IOException {
+        // fork-join may rethrow a copy of the exception with the original one as its cause
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) t).getCause();
+            }
+        }
+        return e;
+    }
+
+    private static class TransformTask extends RecursiveAction {
+        private final List<Entry<Path, Long>> files;
+        private final int from, to;
+        private final FileTransformer function;
+        private final ResultCounters counters;
+
+        TransformTask(List<Entry<Path, Long>> files, int from, int to, FileTransformer function, ResultCounters counters) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.function = function;
+            this.counters = counters;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                File file = files.get(from).getKey().toFile();
+                try {
+                    counters.increment(function.transformFile(file));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                // left half holds the bigger files and is computed by this thread right away
+                invokeAll(new TransformTask(files, from, middle, function, counters),
+                        new TransformTask(files, middle, to, function, counters));
+            }
+        }
+    }
+
+    public static class ResultCounters {
+        private final Map<TransformFileResult, LongAdder> counters = new EnumMap<>(TransformFileResult.class);
+
+        ResultCounters() {
+            for (TransformFileResult result : TransformFileResult.values()) {
+                counters.put(result, new LongAdder());
+            }
+        }
+
+        void increment(TransformFileResult result) {
+            counters.get(Objects.requireNonNull(result)).increment();
+        }
+
+        public long get(TransformFileResult result) {
+            return counters.get(result).sum();
+        }
+
+        @Override
+        public String toString() {
+            return format("Changed %d, Not changed %d, Not matched %d", get(TransformFileResult.CHANGED),
+                    get(TransformFileResult.NOT_CHANGED), get(TransformFileResult.NOT_MATCHED));
         }
+    }
 }
@@ -0,0 +1,244 @@
+package io.frinx.utils.bump.transformer.util;
+
+import com.google.common.collect.Maps;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * Lists files tracked by git by reading the index, without walking the directory tree. Only regular files
+ * under given folder that exist in the working tree are listed. Directories ignored by default or by .bumpignore
+ * are skipped the same way as during the walk, .gitignore is not applied to tracked files.
+ */
+public class GitIndexFiles {
+
+    /**
+     * @return files accepted by the filter with their size as recorded in the index
+     */
+    public static List<Entry<Path, Long>> list(File folder, Predicate<Path> filter) throws IOException {
+        return listTracked(folder, filter, Optional.empty()).getFiles().stream()
+                .map(file -> Maps.immutableEntry(file.getPath(), file.getSize()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * List files together with their blob ids. Blob id is taken from the index if size and modification time of
+     * the file match the index entry, otherwise the file is read and hashed.
+     *
+     * @param since if present, files with the same content as in given revision are left out
+     */
+    public static TrackedFiles listTracked(File folder, Predicate<Path> filter, Optional<String> since)
+            throws IOException {
+        FileRepositoryBuilder builder = new FileRepositoryBuilder().findGitDir(folder.getAbsoluteFile());
+        if (builder.getGitDir() == null) {
+            throw new IOException("Not a git repository: " + folder.getAbsolutePath());
+        }
+        try (Repository repository = builder.build()) {
+            if (repository.isBare()) {
+                throw new IOException("Repository has no working tree: " + repository.getDirectory());
+            }
+            Path root = folder.toPath();
+            String prefix = toIndexPath(repository.getWorkTree().toPath().toRealPath().relativize(root.toRealPath()));
+            if (prefix.isEmpty() == false) {
+                prefix += "/";
+            }
+            Optional<Map<String, ObjectId>> sinceIds = since.isPresent()
+                    ? Optional.of(readBlobIds(repository, since.get(), prefix)) : Optional.empty();
+            long indexModified = repository.getIndexFile().lastModified();
+            DirCache dirCache = repository.readDirCache();
+            DirectoryRules rules = new DirectoryRules(root);
+            List<TrackedFile> files = new ArrayList<>();
+            int unchanged = 0;
+            String previousPath = null;
+            try (ObjectInserter.Formatter formatter = new ObjectInserter.Formatter()) {
+                for (int i = 0; i < dirCache.getEntryCount(); i++) {
+                    DirCacheEntry entry = dirCache.getEntry(i);
+                    String indexPath = entry.getPathString();
+                    // conflicting entries of one path are listed once for every stage
+                    if (indexPath.equals(previousPath) || indexPath.startsWith(prefix) == false) {
+                        continue;
+                    }
+                    previousPath = indexPath;
+                    FileMode mode = entry.getFileMode();
+                    if (mode != FileMode.REGULAR_FILE && mode != FileMode.EXECUTABLE_FILE) {
+                        continue;
+                    }
+                    Path path = root.resolve(indexPath.substring(prefix.length()));
+                    if (filter.test(path) == false || rules.isIgnored(path.getParent())) {
+                        continue;
+                    }
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        // deleted from the working tree
+                        continue;
+                    }
+                    if (attrs.isRegularFile() == false) {
+                        continue;
+                    }
+                    ObjectId blobId = isCleanPerStat(entry, attrs, indexModified)
+                            ? entry.getObjectId() : hash(formatter, path, attrs.size());
+                    if (sinceIds.isPresent() && blobId.equals(sinceIds.get().get(indexPath.substring(prefix.length())))) {
+                        unchanged++;
+                        continue;
+                    }
+                    files.add(new TrackedFile(path, attrs.size(), blobId));
+                }
+            }
+            return new TrackedFiles(repository.getDirectory(), files, unchanged);
+        }
+    }
+
+    /**
+     * Same check as git does: file was not modified if its size and modification time did not change, unless
+     * it might have been modified in the same moment the index was written.
+     */
+    private static boolean isCleanPerStat(DirCacheEntry entry, BasicFileAttributes attrs, long indexModified) {
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        return entry.isSmudged() == false && entry.getLength() == attrs.size()
+                && entry.getLastModified() == lastModified && lastModified < indexModified;
+    }
+
+    private static ObjectId hash(ObjectInserter.Formatter formatter, Path path, long size) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return formatter.idFor(Constants.OBJ_BLOB, size, in);
+        }
+    }
+
+    /**
+     * @return blob ids of files under the prefix in given revision, keyed by path relative to the prefix
+     */
+    private static Map<String, ObjectId> readBlobIds(Repository repository, String revision, String prefix)
+            throws IOException {
+        ObjectId commitId = repository.resolve(revision);
+        if (commitId == null) {
+            throw new IOException("Cannot resolve " + revision);
+        }
+        Map<String, ObjectId> ids = new HashMap<>();
+        try (RevWalk revWalk = new RevWalk(repository);
+             TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(revWalk.parseTree(commitId));
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                String path = treeWalk.getPathString();
+                if (path.startsWith(prefix)) {
+                    ids.put(path.substring(prefix.length()), treeWalk.getObjectId(0));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static String toIndexPath(Path relativePath) {
+        return relativePath.toString().replace(File.separatorChar, '/');
+    }
+
+    public static class TrackedFiles {
+        private final File gitDir;
+        private final List<TrackedFile> files;
+        private final int unchanged;
+
+        TrackedFiles(File gitDir, List<TrackedFile> files, int unchanged) {
+            this.gitDir = gitDir;
+            this.files = files;
+            this.unchanged = unchanged;
+        }
+
+        public File getGitDir() {
+            return gitDir;
+        }
+
+        public List<TrackedFile> getFiles() {
+            return files;
+        }
+
+        /**
+         * @return number of files left out because they did not change since given revision
+         */
+        public int getUnchanged() {
+            return unchanged;
+        }
+    }
+
+    public static class TrackedFile {
+        private final Path path;
+        private final long size;
+        private final ObjectId blobId;
+
+        TrackedFile(Path path, long size, ObjectId blobId) {
+            this.path = path;
+            this.size = size;
+            this.blobId = blobId;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public ObjectId getBlobId() {
+            return blobId;
+        }
+    }
+
+    /**
+     * Ignore rules of directories containing listed files, each directory is read at most once.
+     */
+    private static class DirectoryRules {
+        private final Path root;
+        // empty if the directory is ignored
+        private final Map<Path, Optional<IgnoreRules>> rules = new HashMap<>();
+
+        DirectoryRules(Path root) {
+            this.root = root;
+        }
+
+        boolean isIgnored(Path directory) throws IOException {
+            return get(directory).isPresent() == false;
+        }
+
+        private Optional<IgnoreRules> get(Path directory) throws IOException {
+            Optional<IgnoreRules> result = rules.get(directory);
+            if (result == null) {
+                if (directory.equals(root)) {
+                    result = Optional.of(IgnoreRules.forRoot(root, IgnoreRules.TRACKED_IGNORE_FILE_NAMES));
+                } else {
+                    Optional<IgnoreRules> parent = get(directory.getParent());
+                    if (parent.isPresent() && parent.get().isIgnored(directory, true) == false) {
+                        result = Optional.of(parent.get().forDirectory(directory));
+                    } else {
+                        result = Optional.empty();
+                    }
+                }
+                rules.put(directory, result);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static java.util.Arrays.asList;
+
+import com.google.common.base.Charsets;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Ignore rules used to prune the file walk. Rules are read from .gitignore and .bumpignore files, using the
+ * .gitignore syntax. Each directory gets its own instance chained to the rules of its parent, rules of deeper
+ * directories take precedence, and within one directory the last matching rule wins.
+ */
+public class IgnoreRules {
+
+    public static final List<String> IGNORE_FILE_NAMES = asList(".gitignore", ".bumpignore");
+    // files tracked by git are listed even if .gitignore matches them
+    public static final List<String> TRACKED_IGNORE_FILE_NAMES = asList(".bumpignore");
+    // build output, version control metadata and journal of bump itself never contain files to be bumped
+    public static final List<String> DEFAULT_IGNORED_DIRECTORIES = asList(".git", ".hg", ".svn", "target",
+            "node_modules", WriteBehindJournal.DIRECTORY);
+
+    private final IgnoreRules parent;
+    private final Path baseDir;
+    private final List<String> ignoreFileNames;
+    private final List<Rule> rules;
+
+    private IgnoreRules(IgnoreRules parent, Path baseDir, List<String> ignoreFileNames, List<Rule> rules) {
+        this.parent = parent;
+        this.baseDir = baseDir;
+        this.ignoreFileNames = ignoreFileNames;
+        this.rules = rules;
+    }
+
+    /**
+     * Create rules for the root of the walk: default ignored directories plus ignore files found in it.
+     */
+    public static IgnoreRules forRoot(Path root) throws IOException {
+        return forRoot(root, IGNORE_FILE_NAMES);
+    }
+
+    /**
+     * Create rules for the root of the walk: default ignored directories plus ignore files of given names.
+     */
+    public static IgnoreRules forRoot(Path root, List<String> ignoreFileNames) throws IOException {
+        List<Rule> defaults = new ArrayList<>();
+        for (String name : DEFAULT_IGNORED_DIRECTORIES) {
+            defaults.add(Rule.parse(name + "/"));
+        }
+        return new IgnoreRules(null, root, ignoreFileNames, defaults).forDirectory(root);
+    }
+
+    /**
+     * @return rules applicable inside given directory, which must be a child of this rules' directory
+     */
+    public IgnoreRules forDirectory(Path dir) throws IOException {
+        List<Rule> dirRules = new ArrayList<>();
+        for (String fileName : ignoreFileNames) {
+            Path ignoreFile = dir.resolve(fileName);
+            if (Files.isRegularFile(ignoreFile)) {
+                for (String line : Files.readAllLines(ignoreFile, Charsets.UTF_8)) {
+                    Rule rule = Rule.parse(line);
+                    if (rule != null) {
+                        dirRules.add(rule);
+                    }
+                }
+            }
+        }
+        if (dirRules.isEmpty()) {
+            return this;
+        }
+        return new IgnoreRules(this, dir, ignoreFileNames, dirRules);
+    }
+
+    public boolean isIgnored(Path path, boolean directory) {
+        Boolean decision = decide(path, directory);
+        return decision != null && decision;
+    }
+
+    // null if no rule matched, otherwise whether the last matching rule ignores the path
+    private Boolean decide(Path path, boolean directory) {
+        Boolean decision = parent == null ? null : parent.decide(path, directory);
+        if (path.startsWith(baseDir) == false) {
+            return decision;
+        }
+        String relativePath = baseDir.relativize(path).toString().replace('\\', '/');
+        String name = path.getFileName() == null ? "" : path.getFileName().toString();
+        for (Rule rule : rules) {
+            if (rule.matches(relativePath, name, directory)) {
+                decision = rule.negated == false;
+            }
+        }
+        return decision;
+    }
+
+    static class Rule {
+        private final boolean negated, directoryOnly;
+        // set for rules without wildcards matching just the file name
+        private final String exactName;
+        private final Pattern pattern;
+        private final boolean anchored;
+
+        private Rule(boolean negated, boolean directoryOnly, String exactName, Pattern pattern, boolean anchored) {
+            this.negated = negated;
+            this.directoryOnly = directoryOnly;
+            this.exactName = exactName;
+            this.pattern = pattern;
+            this.anchored = anchored;
+        }
+
+        /**
+         * @return compiled rule or null if the line is blank or a comment
+         */
+        static Rule parse(String line) {
+            String glob = line.trim();
+            if (glob.isEmpty() || glob.startsWith("#")) {
+                return null;
+            }
+            boolean negated = glob.startsWith("!");
+            if (negated) {
+                glob = glob.substring(1);
+            }
+            if (glob.startsWith("\\")) {
+                glob = glob.substring(1);
+            }
+            boolean directoryOnly = glob.endsWith("/");
+            if (directoryOnly) {
+                glob = glob.substring(0, glob.length() - 1);
+            }
+            // patterns containing a slash are relative to the ignore file, others match name at any depth
+            boolean anchored = glob.contains("/");
+            if (glob.startsWith("/")) {
+                glob = glob.substring(1);
+            }
+            if (glob.isEmpty()) {
+                return null;
+            }
+            if (anchored == false && glob.matches("[^*?\\[\\\\]+")) {
+                return new Rule(negated, directoryOnly, glob, null, false);
+            }
+            return new Rule(negated, directoryOnly, null, Pattern.compile(globToRegex(glob)), anchored);
+        }
+
+        boolean matches(String relativePath, String name, boolean directory) {
+            if (directoryOnly && directory == false) {
+                return false;
+            }
+            if (exactName != null) {
+                return exactName.equals(name);
+            }
+            return pattern.matcher(anchored ? relativePath : name).matches();
+        }
+
+        static String globToRegex(String glob) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (c == '*') {
+                    if (glob.startsWith("**/", i)) {
+                        sb.append("(?:.*/)?");
+                        i += 2;
+                    } else if (glob.startsWith("**", i) && i + 2 == glob.length()) {
+                        sb.append(".*");
+                        i++;
+                    } else {
+                        sb.append("[^/]*");
+                    }
+                } else if (c == '?') {
+                    sb.append("[^/]");
+                } else if (c == '[' && glob.indexOf(']', i + 2) != -1) {
+                    int end = glob.indexOf(']', i + 2);
+                    String content = glob.substring(i + 1, end);
+                    if (content.startsWith("!")) {
+                        content = "^" + content.substring(1);
+                    }
+                    sb.append('[').append(content.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+                    i = end;
+                } else if (c == '\\' && i + 1 < glob.length()) {
+                    sb.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                } else {
+                    sb.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
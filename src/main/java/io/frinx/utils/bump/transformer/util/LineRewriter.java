@@ -0,0 +1,231 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Rewrites a file line by line without loading it into memory. Lines are separated by '\n' only, any '\r' stays
+ * part of the line, and a trailing '\n' yields an empty last line, so unchanged lines are written back byte for byte.
+ * Transformation is expected to emit one output line per input line, in order. Output goes to a temporary file that
+ * is created only when the first line changes, and that is atomically moved over the original file at the end,
+ * or handed to the {@link WriteBehindJournal} of the run.
+ */
+public class LineRewriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @FunctionalInterface
+    public interface LineTransformation {
+        void transform(Iterator<String> input, Consumer<String> output);
+    }
+
+    /**
+     * @return true if the file was changed
+     */
+    public static boolean rewrite(File file, LineTransformation transformation) throws IOException {
+        Path path = file.toPath();
+        try (Metrics.Timer timer = Metrics.start("rewrite");
+             LineIterator input = new LineIterator(openReader(path))) {
+            if (Metrics.isEnabled()) {
+                Metrics.count("bytesRead", Files.size(path));
+            }
+            Output output = new Output(path, input);
+            try {
+                transformation.transform(input, output);
+                checkState(input.hasNext() == false, "Transformation did not consume whole " + file);
+                return output.commit();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                output.discard();
+                Metrics.count("linesScanned", input.lines);
+            }
+        }
+    }
+
+    private static Reader openReader(Path path) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        return Channels.newReader(FileChannel.open(path, StandardOpenOption.READ), decoder, BUFFER_SIZE);
+    }
+
+    /**
+     * Splits characters on '\n'. Text without any '\n' is a single line, empty text included.
+     */
+    static class LineIterator implements Iterator<String>, AutoCloseable {
+        private final Reader reader;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private final StringBuilder line = new StringBuilder();
+        private int position, limit, lines;
+        private boolean lastLineRead;
+        // lines read but not yet matched with the output line at the same position
+        private final Deque<String> pending = new ArrayDeque<>();
+
+        LineIterator(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return lastLineRead == false;
+        }
+
+        @Override
+        public String next() {
+            if (lastLineRead) {
+                throw new NoSuchElementException();
+            }
+            line.setLength(0);
+            try {
+                while (true) {
+                    if (position == limit) {
+                        limit = reader.read(buffer);
+                        position = 0;
+                        if (limit == -1) {
+                            limit = 0;
+                            lastLineRead = true;
+                            break;
+                        }
+                    }
+                    int start = position;
+                    while (position < limit && buffer[position] != '\n') {
+                        position++;
+                    }
+                    line.append(buffer, start, position - start);
+                    if (position < limit) {
+                        position++;
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            String result = line.toString();
+            lines++;
+            pending.add(result);
+            return result;
+        }
+
+        /**
+         * @return input line at the position of the next output line, null if transformation emits an extra line
+         */
+        String pollPending() {
+            return pending.poll();
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static class Output implements Consumer<String> {
+        private final Path path;
+        private final LineIterator input;
+        private int linesWritten;
+        private Path temp;
+        private Writer writer;
+
+        Output(Path path, LineIterator input) {
+            this.path = path;
+            this.input = input;
+        }
+
+        @Override
+        public void accept(String outputLine) {
+            String inputLine = input.pollPending();
+            try {
+                if (writer == null && outputLine.equals(inputLine) == false) {
+                    startWriting();
+                }
+                if (writer != null) {
+                    if (linesWritten > 0) {
+                        writer.write('\n');
+                    }
+                    writer.write(outputLine);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            linesWritten++;
+        }
+
+        // first changed line: copy the unchanged lines before it from the original file
+        private void startWriting() throws IOException {
+            temp = Files.createTempFile(path.toAbsolutePath().getParent(), "." + path.getFileName(), ".bump");
+            writer = new BufferedWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8), BUFFER_SIZE);
+            if (linesWritten > 0) {
+                try (LineIterator original = new LineIterator(openReader(path))) {
+                    for (int i = 0; i < linesWritten; i++) {
+                        if (i > 0) {
+                            writer.write('\n');
+                        }
+                        writer.write(original.next());
+                        original.pollPending();
+                    }
+                }
+            }
+        }
+
+        boolean commit() throws IOException {
+            checkState(input.pending.isEmpty(), "Fewer lines written than read");
+            if (writer == null) {
+                return false;
+            }
+            writer.close();
+            if (Metrics.isEnabled()) {
+                Metrics.count("bytesWritten", Files.size(temp));
+            }
+            if (WriteBehindJournal.stage(temp, path) == false) {
+                replaceAtomically(temp, path);
+            }
+            temp = null;
+            return true;
+        }
+
+        void discard() throws IOException {
+            if (temp != null) {
+                writer.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Move the temporary file over the original one, keeping the original's permissions.
+     */
+    static void replaceAtomically(Path temp, Path path) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class);
+        if (view != null) {
+            Files.setPosixFilePermissions(temp, view.readAttributes().permissions());
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks whether a file contains given literal without decoding it. The file is memory mapped and searched
+ * byte by byte using Boyer-Moore-Horspool, so files that cannot match are skipped before they are read into
+ * a string and split into lines. With more literals, e.g. one per rule, the file is searched once for all of them
+ * by a {@link MultiLiteralMatcher}.
+ */
+public class LiteralPrefilter {
+    private final List<String> literals;
+    private final byte[] needle;
+    // how far to shift when the last byte of the window does not match
+    private final int[] shift = new int[256];
+    // only used for more literals
+    private final MultiLiteralMatcher matcher;
+    private final LongAdder scanned = new LongAdder(), hits = new LongAdder();
+
+    public LiteralPrefilter(String literal) {
+        this(Collections.singletonList(literal));
+    }
+
+    /**
+     * @param literals literals of which at least one must occur in a file, ASCII if there are more of them
+     */
+    public LiteralPrefilter(List<String> literals) {
+        checkArgument(literals.isEmpty() == false, "No literals");
+        for (String literal : literals) {
+            checkArgument(literal.isEmpty() == false, "Literal cannot be empty");
+        }
+        this.literals = Collections.unmodifiableList(new ArrayList<>(literals));
+        this.needle = literals.get(0).getBytes(StandardCharsets.UTF_8);
+        Arrays.fill(shift, needle.length);
+        for (int i = 0; i < needle.length - 1; i++) {
+            shift[needle[i] & 0xff] = needle.length - 1 - i;
+        }
+        this.matcher = literals.size() == 1 ? null : new MultiLiteralMatcher(literals);
+    }
+
+    public boolean mightMatch(File file) throws IOException {
+        scanned.increment();
+        boolean found;
+        try (Metrics.Timer timer = Metrics.start("prefilter");
+             FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            Metrics.count("prefilterBytes", size);
+            if (size > Integer.MAX_VALUE) {
+                found = true;
+            } else {
+                found = contains(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+        }
+        if (found) {
+            hits.increment();
+        }
+        return found;
+    }
+
+    boolean contains(ByteBuffer haystack) {
+        if (matcher != null) {
+            return matcher.matchesAny(haystack);
+        }
+        int last = needle.length - 1;
+        int limit = haystack.limit();
+        int pos = 0;
+        while (pos + last < limit) {
+            int i = last;
+            while (haystack.get(pos + i) == needle[i]) {
+                if (i == 0) {
+                    return true;
+                }
+                i--;
+            }
+            pos += shift[haystack.get(pos + last) & 0xff];
+        }
+        return false;
+    }
+
+    public void printStats() {
+        System.out.println(format("Prefilter: %d of %d files contain '%s'", hits.sum(), scanned.sum(),
+                String.join("' or '", literals)));
+    }
+}
@@ -2,11 +2,32 @@ package io.frinx.utils.bump.transformer.util;
 
 public class LoggingUtil {
 
+    // the daemon must outlive failed requests
+    private static volatile boolean exitOnFatal = true;
 
     public static final Error fatal(String message) {
         System.err.println("FATAL: " + message);
-        System.exit(1);
-        throw new IllegalStateException();
+        if (exitOnFatal) {
+            System.exit(1);
+            throw new IllegalStateException();
+        }
+        return new FatalError(message);
+    }
+
+    /**
+     * @param exit if false, {@link #fatal(String)} returns an error to be thrown instead of exiting the JVM
+     */
+    public static void setExitOnFatal(boolean exit) {
+        exitOnFatal = exit;
+    }
+
+    /**
+     * Thrown instead of exiting, the message was already printed.
+     */
+    public static class FatalError extends Error {
+        FatalError(String message) {
+            super(message);
+        }
     }
 
 }
@@ -0,0 +1,189 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-phase timing and counters of a run, collected only once {@link #enable()} is called by --stats or
+ * --stats-json. Otherwise starting a phase returns a shared no-op timer and counting does nothing.
+ * <p>
+ * A phase records number of calls, wall time and CPU time of the calling thread, and a histogram of wall times
+ * with power of two buckets. Phases nest, e.g. walk includes transformation of the visited files
+ * when running on one thread, and phases running on several threads add up to more than the wall time of the run.
+ */
+public class Metrics {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final Timer NOOP = new Timer(null, 0, 0);
+
+    private static volatile boolean enabled;
+    private static volatile long enabledAt;
+    private static final ConcurrentMap<String, Phase> phases = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    public static void enable() {
+        enabledAt = System.nanoTime();
+        enabled = true;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    static void reset() {
+        enabled = false;
+        phases.clear();
+        counters.clear();
+    }
+
+    /**
+     * Start timing given phase, to be closed when the phase ends, preferably by try-with-resources.
+     */
+    public static Timer start(String phase) {
+        if (enabled == false) {
+            return NOOP;
+        }
+        return new Timer(phases.computeIfAbsent(phase, name -> new Phase()), System.nanoTime(), cpuTime());
+    }
+
+    public static void count(String counter, long delta) {
+        if (enabled) {
+            counters.computeIfAbsent(counter, name -> new LongAdder()).add(delta);
+        }
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    public static class Timer implements AutoCloseable {
+        private final Phase phase;
+        private final long wallStart, cpuStart;
+
+        private Timer(Phase phase, long wallStart, long cpuStart) {
+            this.phase = phase;
+            this.wallStart = wallStart;
+            this.cpuStart = cpuStart;
+        }
+
+        @Override
+        public void close() {
+            if (phase != null) {
+                phase.record(System.nanoTime() - wallStart, cpuTime() - cpuStart);
+            }
+        }
+    }
+
+    static class Phase {
+        // bucket i holds wall times below 2^i nanoseconds
+        private final AtomicLongArray histogram = new AtomicLongArray(64);
+        private final LongAdder calls = new LongAdder(), wallNanos = new LongAdder(), cpuNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long wall, long cpu) {
+            calls.increment();
+            wallNanos.add(wall);
+            cpuNanos.add(cpu);
+            maxNanos.accumulate(wall);
+            histogram.incrementAndGet(Math.min(63, 64 - Long.numberOfLeadingZeros(Math.max(0, wall))));
+        }
+
+        long getCalls() {
+            return calls.sum();
+        }
+
+        /**
+         * @return upper bound of the bucket holding given percentile of wall times, in nanoseconds
+         */
+        long percentile(double percentile) {
+            long total = calls.sum();
+            long seen = 0;
+            for (int i = 0; i < histogram.length(); i++) {
+                seen += histogram.get(i);
+                if (seen > 0 && seen >= percentile * total) {
+                    return Math.min(1L << i, maxNanos.get());
+                }
+            }
+            return maxNanos.get();
+        }
+    }
+
+    /**
+     * @return summary table of phases and counters
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder(format("Stats for %d ms of run:%n", millis(System.nanoTime() - enabledAt)));
+        sb.append(format("%-24s %10s %10s %10s %10s %10s %10s%n", "phase", "calls", "wall ms", "cpu ms",
+                "p50 us", "p99 us", "max us"));
+        for (Entry<String, Phase> entry : new TreeMap<>(phases).entrySet()) {
+            Phase phase = entry.getValue();
+            sb.append(format("%-24s %10d %10d %10d %10d %10d %10d%n", entry.getKey(), phase.getCalls(),
+                    millis(phase.wallNanos.sum()), millis(phase.cpuNanos.sum()), micros(phase.percentile(0.5)),
+                    micros(phase.percentile(0.99)), micros(phase.maxNanos.get())));
+        }
+        for (Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            sb.append(format("%-24s %10d%n", entry.getKey(), entry.getValue().sum()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Write phases and counters as JSON, times in nanoseconds.
+     */
+    public static void writeJson(Path file) throws IOException {
+        StringBuilder sb = new StringBuilder("{\n");
+        sb.append(format("  \"wallNanos\": %d,\n", System.nanoTime() - enabledAt));
+        sb.append("  \"phases\": {");
+        String separator = "\n";
+        for (Entry<String, Phase> entry : new TreeMap<>(phases).entrySet()) {
+            Phase phase = entry.getValue();
+            sb.append(separator).append("    ").append(Json.quote(entry.getKey())).append(": {");
+            sb.append(format(Locale.ROOT, "\"calls\": %d, \"wallNanos\": %d, \"cpuNanos\": %d, \"p50Nanos\": %d, "
+                            + "\"p90Nanos\": %d, \"p99Nanos\": %d, \"maxNanos\": %d, \"histogram\": {",
+                    phase.getCalls(), phase.wallNanos.sum(), phase.cpuNanos.sum(), phase.percentile(0.5),
+                    phase.percentile(0.9), phase.percentile(0.99), phase.maxNanos.get()));
+            String bucketSeparator = "";
+            for (int i = 0; i < phase.histogram.length(); i++) {
+                long count = phase.histogram.get(i);
+                if (count > 0) {
+                    // bucket keys are upper bounds of wall time in nanoseconds
+                    sb.append(bucketSeparator).append('"').append(1L << i).append("\": ").append(count);
+                    bucketSeparator = ", ";
+                }
+            }
+            sb.append("}}");
+            separator = ",\n";
+        }
+        sb.append("\n  },\n  \"counters\": {");
+        separator = "\n";
+        for (Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            sb.append(separator).append("    ").append(Json.quote(entry.getKey())).append(": ")
+                    .append(entry.getValue().sum());
+            separator = ",\n";
+        }
+        sb.append("\n  }\n}\n");
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1_000;
+    }
+}
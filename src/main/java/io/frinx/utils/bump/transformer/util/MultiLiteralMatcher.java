@@ -0,0 +1,115 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Finds which of up to 64 ASCII literals occur in a text, scanning each character once regardless of the number
+ * of literals. Literals are compiled into an Aho-Corasick automaton whose failure links are folded into a full
+ * transition table, so each character costs one array lookup. Characters outside of ASCII cannot be part
+ * of a literal and reset the automaton.
+ */
+public class MultiLiteralMatcher {
+
+    private static final int ALPHABET = 128;
+
+    // state x character -> state, state 0 is the root
+    private final int[][] transitions;
+    // bit i is set if literal i ends in the state, directly or through failure links
+    private final long[] output;
+
+    public MultiLiteralMatcher(List<String> literals) {
+        checkArgument(literals.size() <= 64, "At most 64 literals are supported, got %s", literals.size());
+        List<int[]> trie = new ArrayList<>();
+        List<Long> outputs = new ArrayList<>();
+        trie.add(newState());
+        outputs.add(0L);
+        for (int i = 0; i < literals.size(); i++) {
+            String literal = literals.get(i);
+            checkArgument(literal.isEmpty() == false, "Literal cannot be empty");
+            int state = 0;
+            for (int j = 0; j < literal.length(); j++) {
+                char c = literal.charAt(j);
+                checkArgument(c < ALPHABET, "Literal '%s' is not ASCII", literal);
+                if (trie.get(state)[c] == -1) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newState());
+                    outputs.add(0L);
+                }
+                state = trie.get(state)[c];
+            }
+            outputs.set(state, outputs.get(state) | 1L << i);
+        }
+
+        transitions = trie.toArray(new int[trie.size()][]);
+        output = new long[transitions.length];
+        int[] failure = new int[transitions.length];
+        // breadth first, so that failure of a state is complete before its children are visited
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            if (transitions[0][c] == -1) {
+                transitions[0][c] = 0;
+            } else {
+                queue.add(transitions[0][c]);
+            }
+        }
+        for (int state = 0; state < transitions.length; state++) {
+            output[state] = outputs.get(state);
+        }
+        while (queue.isEmpty() == false) {
+            int state = queue.poll();
+            output[state] |= output[failure[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = transitions[state][c];
+                if (child == -1) {
+                    transitions[state][c] = transitions[failure[state]][c];
+                } else {
+                    failure[child] = transitions[failure[state]][c];
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    private static int[] newState() {
+        int[] state = new int[ALPHABET];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    /**
+     * @return bit i set if literal i occurs in given part of the text
+     */
+    public long match(CharSequence text, int from, int to) {
+        int state = 0;
+        long found = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            state = c < ALPHABET ? transitions[state][c] : 0;
+            found |= output[state];
+        }
+        return found;
+    }
+
+    /**
+     * @return true if any literal occurs in given bytes, e.g. of a mapped UTF-8 file, whose bytes outside of ASCII
+     * reset the automaton as characters outside of it do
+     */
+    public boolean matchesAny(ByteBuffer bytes) {
+        int state = 0;
+        for (int i = bytes.position(), limit = bytes.limit(); i < limit; i++) {
+            byte b = bytes.get(i);
+            state = b >= 0 ? transitions[state][b] : 0;
+            if (output[state] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -2,17 +2,15 @@ package io.frinx.utils.bump.transformer.util;
 
 import static com.google.common.base.Preconditions.checkState;
 
-import com.google.common.collect.Maps;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
-import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import org.apache.commons.io.IOUtils;
 
 public class ProcessUtil {
@@ -28,31 +26,50 @@ public class ProcessUtil {
             throws IOException, InterruptedException {
 
         System.out.println("Running " + commands);
+        try (Metrics.Timer timer = Metrics.start("process." + new File(commands.get(0)).getName())) {
+            return run(workingDirectory, commands, input);
+        }
+    }
+
+    private static ProcessOutput run(File workingDirectory, List<String> commands, Optional<String> input)
+            throws IOException, InterruptedException {
         Process process = new ProcessBuilder(commands).directory(workingDirectory).start();
 
-        if (input.isPresent()) {
-            OutputStreamWriter writer = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
-            writer.write(input.get());
-            IOUtils.closeQuietly(writer);
+        // drain both streams while the process runs, otherwise it can block on a full pipe
+        CompletableFuture<String> outFuture = drain(process.getInputStream());
+        CompletableFuture<String> errFuture = drain(process.getErrorStream());
+        try (OutputStreamWriter writer = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8)) {
+            if (input.isPresent()) {
+                writer.write(input.get());
+            }
         }
         int status = process.waitFor();
 
-        int readInt;
-        StringBuilder outBuilder = new StringBuilder();
-        InputStream inIS = process.getInputStream();
-        while ((readInt = inIS.read()) != -1)
-            outBuilder.append((char) readInt);
-        String out = outBuilder.toString();
-
-        StringBuilder errBuilder = new StringBuilder();
-        InputStream errIS = process.getInputStream();
-        while ((readInt = errIS.read()) != -1)
-            errBuilder.append((char) readInt);
-        String err = errBuilder.toString();
+        String out, err;
+        try {
+            out = outFuture.get();
+            err = errFuture.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Cannot read output of " + commands, e.getCause());
+        }
         checkState(status == 0, "Status is " + status + ", err:'" + err + "', out:'" + out + "'");
         return new ProcessOutput(out, err);
     }
 
+    private static CompletableFuture<String> drain(InputStream inputStream) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try (InputStream is = inputStream) {
+                result.complete(new String(IOUtils.toByteArray(is), StandardCharsets.UTF_8));
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }, "process-output");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
     public static class ProcessOutput {
         private final String stdOut, stdErr;
 
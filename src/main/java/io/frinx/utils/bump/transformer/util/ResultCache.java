@@ -0,0 +1,140 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static java.lang.String.format;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Remembers blob ids of files that were not changed by a transformation, so that they need not be read again
+ * as long as their content stays the same. There is one cache file per transformation, stored in the git directory,
+ * and only ids seen during the last run are kept in it.
+ * <p>
+ * Ids of recently used cache files are also kept in memory while the file stays the same, so that a long running
+ * process, e.g. the daemon, does not read them again for every run.
+ */
+public class ResultCache {
+    // bump when transformers start to behave differently for the same key
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Cache<Path, Loaded> LOADED = CacheBuilder.newBuilder().maximumSize(64).build();
+
+    private final Path file;
+    // read only, shared with other instances loaded from the same file
+    private final Set<ObjectId> notChanged;
+    private final Set<ObjectId> seen = ConcurrentHashMap.newKeySet();
+    private final LongAdder hits = new LongAdder();
+
+    private ResultCache(Path file, Set<ObjectId> notChanged) {
+        this.file = file;
+        this.notChanged = notChanged;
+    }
+
+    /**
+     * @param key identity of the transformation, e.g. strategy with all its parameters
+     */
+    public static ResultCache load(File gitDir, String key) throws IOException {
+        String name = Hashing.sha1().hashString(FORMAT_VERSION + "\n" + key, StandardCharsets.UTF_8).toString();
+        Path file = gitDir.toPath().resolve("bump").resolve("cache").resolve(name);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return new ResultCache(file, Collections.emptySet());
+        }
+        Loaded loaded = LOADED.getIfPresent(file);
+        if (loaded != null && loaded.matches(attrs)) {
+            return new ResultCache(file, loaded.notChanged);
+        }
+        Set<ObjectId> notChanged = new HashSet<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+            while (true) {
+                in.readFully(raw);
+                notChanged.add(ObjectId.fromRaw(raw));
+            }
+        } catch (NoSuchFileException | EOFException e) {
+            // no cache yet, or end of it
+        }
+        LOADED.put(file, new Loaded(attrs, notChanged));
+        return new ResultCache(file, notChanged);
+    }
+
+    public boolean isNotChanged(ObjectId blobId) {
+        if (notChanged.contains(blobId) || seen.contains(blobId)) {
+            seen.add(blobId);
+            hits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    public void recordNotChanged(ObjectId blobId) {
+        seen.add(blobId);
+    }
+
+    public void save() throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+                for (ObjectId id : seen) {
+                    id.copyRawTo(raw, 0);
+                    out.write(raw);
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            LOADED.put(file, new Loaded(Files.readAttributes(file, BasicFileAttributes.class),
+                    ImmutableSet.copyOf(seen)));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static class Loaded {
+        private final long size, modified;
+        private final Set<ObjectId> notChanged;
+
+        Loaded(BasicFileAttributes attrs, Set<ObjectId> notChanged) {
+            this.size = attrs.size();
+            this.modified = attrs.lastModifiedTime().toMillis();
+            this.notChanged = notChanged;
+        }
+
+        boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size() && modified == attrs.lastModifiedTime().toMillis();
+        }
+    }
+
+    public void printStats() {
+        System.out.println(format("Result cache: %d files skipped as not changed", hits.sum()));
+    }
+}
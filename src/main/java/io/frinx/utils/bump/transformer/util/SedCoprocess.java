@@ -0,0 +1,173 @@
+package io.frinx.utils.bump.transformer.util;
+
+import io.frinx.utils.bump.transformer.util.SedUtil.SedScript;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Keeps one sed process running for a script that cannot be compiled in process. Each version is written to sed's
+ * stdin followed by a sentinel line, and output lines are collected until the sentinel comes back. Stdout and stderr
+ * are drained by background threads, so writing never blocks on full pipes. Errors of sed are printed by the thread
+ * transforming a version, drain threads outlive the run that started them and must not print to its output.
+ * If sed dies or does not answer within the timeout, it is restarted and the request is retried once, after that
+ * the version is transformed by forking sed as before. A script that answers with another number of lines than it
+ * was given is not used as coprocess any more, its output can no longer be paired with versions.
+ * Scripts that keep state between lines (line addresses, hold space) must not run as coprocess,
+ * see {@link SedUtil#compile(String, SedUtil.SedMode)}.
+ */
+class SedCoprocess implements SedScript {
+
+    private static final long TIMEOUT_MILLIS = Long.getLong("sedTimeoutMillis", 5_000);
+    private static final String SENTINEL = "\u0001bump-sentinel\u0001";
+    // put to the queue by the reader thread when sed closes its stdout
+    private static final String END_OF_STREAM = new String("end of stream");
+
+    private final String script;
+    private Process process;
+    private Writer stdin;
+    private BlockingQueue<String> stdout;
+    // lines of sed's stderr not yet printed
+    private final BlockingQueue<String> stderr = new LinkedBlockingQueue<>();
+    // sentinel as transformed by the script
+    private String sentinelEcho;
+    private boolean broken;
+
+    SedCoprocess(String script) {
+        this.script = script;
+    }
+
+    @Override
+    public synchronized String apply(String text) {
+        try {
+            return transform(text);
+        } finally {
+            printErrors();
+        }
+    }
+
+    private String transform(String text) {
+        for (int attempt = 0; attempt < 2 && broken == false; attempt++) {
+            try {
+                if (process == null) {
+                    start();
+                }
+                return request(text);
+            } catch (IOException | TimeoutException e) {
+                System.err.println((broken ? "Stopping" : "Restarting") + " sed coprocess for '" + script + "': " + e);
+                stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop();
+                break;
+            }
+        }
+        return SedUtil.externalSed(text, script);
+    }
+
+    private void start() throws IOException, InterruptedException, TimeoutException {
+        process = new ProcessBuilder(Arrays.asList("sed", "-u", script)).start();
+        stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        stdout = lines;
+        BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        startDaemon("sed-stdout", () -> {
+            try {
+                String line;
+                while ((line = out.readLine()) != null) {
+                    lines.add(line);
+                }
+            } catch (IOException e) {
+                // process was destroyed
+            }
+            lines.add(END_OF_STREAM);
+        });
+        BufferedReader err = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8));
+        startDaemon("sed-stderr", () -> {
+            try {
+                String line;
+                while ((line = err.readLine()) != null) {
+                    stderr.add(line);
+                }
+            } catch (IOException e) {
+                // process was destroyed
+            }
+        });
+        // find out what the script does to the sentinel
+        write(SENTINEL);
+        try {
+            sentinelEcho = poll(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS));
+        } catch (TimeoutException e) {
+            // script swallows lines, sed cannot be used this way
+            broken = true;
+            throw e;
+        }
+    }
+
+    private String request(String text) throws IOException, InterruptedException, TimeoutException {
+        write(text);
+        write(SENTINEL);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        List<String> result = new ArrayList<>();
+        String line;
+        while ((line = poll(deadline)).equals(sentinelEcho) == false) {
+            result.add(line);
+        }
+        // a script adding or dropping lines would pair output with the wrong version from now on
+        int lines = text.split("\n", -1).length;
+        if (result.size() != lines) {
+            broken = true;
+            throw new IOException(String.format("sed answered %d lines to %d, script does not keep lines apart",
+                    result.size(), lines));
+        }
+        return String.join("\n", result);
+    }
+
+    private void write(String line) throws IOException {
+        stdin.write(line);
+        stdin.write('\n');
+        stdin.flush();
+    }
+
+    private String poll(long deadline) throws InterruptedException, TimeoutException, IOException {
+        String line = stdout.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        if (line == null) {
+            throw new TimeoutException("No answer within " + TIMEOUT_MILLIS + "ms");
+        }
+        if (line == END_OF_STREAM) {
+            throw new IOException("sed exited");
+        }
+        return line;
+    }
+
+    private void printErrors() {
+        String line;
+        while ((line = stderr.poll()) != null) {
+            System.err.println("sed: " + line);
+        }
+    }
+
+    private void stop() {
+        if (process != null) {
+            process.destroy();
+            process = null;
+        }
+    }
+
+    private static void startDaemon(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
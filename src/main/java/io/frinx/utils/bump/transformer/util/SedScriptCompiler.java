@@ -0,0 +1,477 @@
+package io.frinx.utils.bump.transformer.util;
+
+import io.frinx.utils.bump.transformer.util.SedUtil.SedScript;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiles the common subset of sed scripts into java regular expressions, so that sed does not
+ * have to be forked for every transformed version.
+ * Supported are address-free s and y commands separated by ';' or new lines. Regular expressions are POSIX basic
+ * ones, as with plain sed. Flags g, I and occurrence number are supported for s command.
+ * Everything else is rejected with {@link UnsupportedSedScriptException}.
+ */
+class SedScriptCompiler {
+
+    // delimiters that have a special meaning inside of regular expression or replacement are left to real sed
+    private static final String UNSUPPORTED_DELIMITERS = ".*[]^$&(){}+?\\\n\t ";
+
+    static class UnsupportedSedScriptException extends Exception {
+        UnsupportedSedScriptException(String message) {
+            super(message);
+        }
+    }
+
+    interface Command {
+        String apply(String line);
+    }
+
+    static SedScript compile(String script) throws UnsupportedSedScriptException {
+        List<Command> commands = new Parser(script).parse();
+        return text -> {
+            if (text.isEmpty()) {
+                return text;
+            }
+            boolean trailingNewLine = text.endsWith("\n");
+            String[] lines = (trailingNewLine ? text.substring(0, text.length() - 1) : text).split("\n", -1);
+            StringBuilder result = new StringBuilder(text.length());
+            for (int i = 0; i < lines.length; i++) {
+                String line = lines[i];
+                for (Command command : commands) {
+                    line = command.apply(line);
+                }
+                if (i > 0) {
+                    result.append('\n');
+                }
+                result.append(line);
+            }
+            if (trailingNewLine) {
+                result.append('\n');
+            }
+            return result.toString();
+        };
+    }
+
+    private static class Parser {
+        private final String script;
+        private int pos;
+
+        Parser(String script) {
+            this.script = script;
+        }
+
+        List<Command> parse() throws UnsupportedSedScriptException {
+            List<Command> commands = new ArrayList<>();
+            while (true) {
+                skipSeparators();
+                if (pos == script.length()) {
+                    return commands;
+                }
+                char command = script.charAt(pos++);
+                if (command == 's') {
+                    commands.add(parseSubstitute());
+                } else if (command == 'y') {
+                    commands.add(parseTransliterate());
+                } else {
+                    throw new UnsupportedSedScriptException("Unsupported command or address '" + command + "'");
+                }
+                skipWhitespace();
+                if (pos < script.length() && script.charAt(pos) != ';' && script.charAt(pos) != '\n') {
+                    throw new UnsupportedSedScriptException("Unexpected '" + script.charAt(pos) + "' after command");
+                }
+            }
+        }
+
+        private Command parseSubstitute() throws UnsupportedSedScriptException {
+            char delimiter = readDelimiter();
+            String regex = readUntil(delimiter);
+            String replacement = readUntil(delimiter);
+            boolean global = false, ignoreCase = false;
+            int occurrence = 0;
+            while (pos < script.length() && ";\n \t".indexOf(script.charAt(pos)) == -1) {
+                char flag = script.charAt(pos++);
+                if (flag == 'g') {
+                    global = true;
+                } else if (flag == 'i' || flag == 'I') {
+                    ignoreCase = true;
+                } else if (flag >= '0' && flag <= '9') {
+                    occurrence = occurrence * 10 + (flag - '0');
+                } else {
+                    throw new UnsupportedSedScriptException("Unsupported flag '" + flag + "'");
+                }
+            }
+            int flags = Pattern.DOTALL | (ignoreCase ? Pattern.CASE_INSENSITIVE : 0);
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(RegexTranslator.translate(regex), flags);
+            } catch (PatternSyntaxException e) {
+                throw new UnsupportedSedScriptException("Cannot translate regex '" + regex + "': " + e.getMessage());
+            }
+            List<Object> parts = parseReplacement(replacement);
+            int groupCount = pattern.matcher("").groupCount();
+            for (Object part : parts) {
+                if (part instanceof Integer && (Integer) part > groupCount) {
+                    // sed rejects the script, leave it to sed to report
+                    throw new UnsupportedSedScriptException("Invalid reference \\" + part + " in replacement");
+                }
+            }
+            return new Substitute(pattern, parts, global, occurrence == 0 ? 1 : occurrence);
+        }
+
+        private Command parseTransliterate() throws UnsupportedSedScriptException {
+            char delimiter = readDelimiter();
+            String source = unescapeTransliteration(readUntil(delimiter));
+            String target = unescapeTransliteration(readUntil(delimiter));
+            if (source.length() != target.length()) {
+                throw new UnsupportedSedScriptException("Strings for y command are different lengths");
+            }
+            return line -> {
+                StringBuilder sb = new StringBuilder(line.length());
+                for (int i = 0; i < line.length(); i++) {
+                    char c = line.charAt(i);
+                    int idx = source.indexOf(c);
+                    sb.append(idx == -1 ? c : target.charAt(idx));
+                }
+                return sb.toString();
+            };
+        }
+
+        private char readDelimiter() throws UnsupportedSedScriptException {
+            if (pos == script.length()) {
+                throw new UnsupportedSedScriptException("Missing delimiter");
+            }
+            char delimiter = script.charAt(pos++);
+            if (UNSUPPORTED_DELIMITERS.indexOf(delimiter) != -1 || Character.isLetterOrDigit(delimiter)) {
+                throw new UnsupportedSedScriptException("Unsupported delimiter '" + delimiter + "'");
+            }
+            return delimiter;
+        }
+
+        /**
+         * Read raw text up to the unescaped delimiter. Escaped delimiter is replaced by the delimiter itself,
+         * all other escape sequences are kept.
+         */
+        private String readUntil(char delimiter) throws UnsupportedSedScriptException {
+            StringBuilder sb = new StringBuilder();
+            while (pos < script.length()) {
+                char c = script.charAt(pos++);
+                if (c == delimiter) {
+                    return sb.toString();
+                } else if (c == '\\' && pos < script.length()) {
+                    char escaped = script.charAt(pos++);
+                    if (escaped != delimiter) {
+                        sb.append('\\');
+                    }
+                    sb.append(escaped);
+                } else {
+                    sb.append(c);
+                }
+            }
+            throw new UnsupportedSedScriptException("Unterminated command");
+        }
+
+        private void skipSeparators() {
+            while (pos < script.length() && ";\n \t".indexOf(script.charAt(pos)) != -1) {
+                pos++;
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < script.length() && (script.charAt(pos) == ' ' || script.charAt(pos) == '\t')) {
+                pos++;
+            }
+        }
+    }
+
+    private static String unescapeTransliteration(String text) throws UnsupportedSedScriptException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                char escaped = text.charAt(++i);
+                if (escaped == 'n') {
+                    sb.append('\n');
+                } else if (escaped == '\\') {
+                    sb.append('\\');
+                } else {
+                    throw new UnsupportedSedScriptException("Unsupported escape \\" + escaped + " in y command");
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parse replacement into literal parts and group references. Group 0 stands for &amp;.
+     */
+    private static List<Object> parseReplacement(String replacement) throws UnsupportedSedScriptException {
+        List<Object> parts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < replacement.length(); i++) {
+            char c = replacement.charAt(i);
+            Integer group = null;
+            if (c == '&') {
+                group = 0;
+            } else if (c == '\\') {
+                char escaped = replacement.charAt(++i);
+                if (escaped >= '1' && escaped <= '9') {
+                    group = escaped - '0';
+                } else if (escaped == 'n') {
+                    literal.append('\n');
+                } else if (escaped == 't') {
+                    literal.append('\t');
+                } else if (Character.isLetterOrDigit(escaped)) {
+                    // case conversions \L, \U, ... are GNU extensions
+                    throw new UnsupportedSedScriptException("Unsupported escape \\" + escaped + " in replacement");
+                } else {
+                    literal.append(escaped);
+                }
+            } else {
+                literal.append(c);
+            }
+            if (group != null) {
+                if (literal.length() > 0) {
+                    parts.add(literal.toString());
+                    literal.setLength(0);
+                }
+                parts.add(group);
+            }
+        }
+        if (literal.length() > 0) {
+            parts.add(literal.toString());
+        }
+        return parts;
+    }
+
+    private static class Substitute implements Command {
+        private final Pattern pattern;
+        private final List<Object> replacement;
+        private final boolean global;
+        private final int occurrence;
+
+        Substitute(Pattern pattern, List<Object> replacement, boolean global, int occurrence) {
+            this.pattern = pattern;
+            this.replacement = replacement;
+            this.global = global;
+            this.occurrence = occurrence;
+        }
+
+        @Override
+        public String apply(String line) {
+            Matcher m = pattern.matcher(line);
+            StringBuilder sb = null;
+            int copiedUntil = 0, previousEnd = -1, found = 0;
+            while (m.find()) {
+                if (m.start() == m.end() && m.start() == previousEnd) {
+                    // sed does not allow an empty match right after the previous match
+                    continue;
+                }
+                previousEnd = m.end();
+                found++;
+                if (found < occurrence) {
+                    continue;
+                }
+                if (sb == null) {
+                    sb = new StringBuilder(line.length() + 16);
+                }
+                sb.append(line, copiedUntil, m.start());
+                for (Object part : replacement) {
+                    if (part instanceof Integer) {
+                        String group = m.group((Integer) part);
+                        if (group != null) {
+                            sb.append(group);
+                        }
+                    } else {
+                        sb.append((String) part);
+                    }
+                }
+                copiedUntil = m.end();
+                if (global == false) {
+                    break;
+                }
+            }
+            if (sb == null) {
+                return line;
+            }
+            return sb.append(line, copiedUntil, line.length()).toString();
+        }
+    }
+
+    /**
+     * Translates POSIX basic regular expression into java one.
+     */
+    static class RegexTranslator {
+        private final String bre;
+        private final StringBuilder sb = new StringBuilder();
+        private int pos, groups;
+
+        private RegexTranslator(String bre) {
+            this.bre = bre;
+        }
+
+        static String translate(String bre) throws UnsupportedSedScriptException {
+            if (bre.isEmpty()) {
+                throw new UnsupportedSedScriptException("Empty regex reuses the last regex");
+            }
+            return new RegexTranslator(bre).translate();
+        }
+
+        private String translate() throws UnsupportedSedScriptException {
+            // at start of regex or group * is literal and ^ is an anchor
+            boolean atStart = true;
+            boolean afterQuantifier = false;
+            while (pos < bre.length()) {
+                char c = bre.charAt(pos++);
+                boolean quantifier = false;
+                boolean start = false;
+                if (c == '\\') {
+                    if (pos == bre.length()) {
+                        throw new UnsupportedSedScriptException("Trailing backslash");
+                    }
+                    char escaped = bre.charAt(pos++);
+                    if (escaped == '(') {
+                        groups++;
+                        sb.append('(');
+                        start = true;
+                    } else if (escaped == ')') {
+                        sb.append(')');
+                    } else if (escaped == '{' || escaped == '+' || escaped == '?') {
+                        if (atStart) {
+                            throw new UnsupportedSedScriptException("Nothing to repeat");
+                        }
+                        if (escaped == '{') {
+                            appendInterval();
+                        } else {
+                            sb.append(escaped);
+                        }
+                        quantifier = true;
+                    } else if (escaped == '|') {
+                        // POSIX picks the longest alternative, java the first one
+                        throw new UnsupportedSedScriptException("Alternation is not supported");
+                    } else if (escaped >= '1' && escaped <= '9') {
+                        if (escaped - '0' > groups) {
+                            throw new UnsupportedSedScriptException("Invalid back reference");
+                        }
+                        sb.append('\\').append(escaped);
+                    } else if ("ntwWsSbB".indexOf(escaped) != -1) {
+                        sb.append('\\').append(escaped);
+                    } else if (Character.isLetterOrDigit(escaped) || escaped == '<' || escaped == '>'
+                            || escaped == '`' || escaped == '\'') {
+                        throw new UnsupportedSedScriptException("Unsupported escape \\" + escaped);
+                    } else {
+                        appendLiteral(escaped);
+                    }
+                } else if (c == '*') {
+                    if (atStart) {
+                        appendLiteral(c);
+                    } else {
+                        sb.append(c);
+                        quantifier = true;
+                    }
+                } else if (c == '^') {
+                    if (atStart) {
+                        sb.append(c);
+                        start = true;
+                    } else {
+                        appendLiteral(c);
+                    }
+                } else if (c == '$') {
+                    if (pos == bre.length() || bre.startsWith("\\)", pos)) {
+                        sb.append(c);
+                    } else {
+                        appendLiteral(c);
+                    }
+                } else if (c == '.') {
+                    sb.append(c);
+                } else if (c == '[') {
+                    appendBracketExpression();
+                } else {
+                    appendLiteral(c);
+                }
+                if (quantifier && afterQuantifier) {
+                    // java would treat a second quantifier as possessive or lazy
+                    throw new UnsupportedSedScriptException("Repeated quantifier");
+                }
+                afterQuantifier = quantifier;
+                atStart = start;
+            }
+            return sb.toString();
+        }
+
+        private void appendLiteral(char c) {
+            if (Character.isLetterOrDigit(c) == false) {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+
+        private void appendInterval() throws UnsupportedSedScriptException {
+            int end = bre.indexOf("\\}", pos);
+            if (end == -1) {
+                throw new UnsupportedSedScriptException("Unterminated interval");
+            }
+            String interval = bre.substring(pos, end);
+            if (interval.matches("[0-9]+(,[0-9]*)?") == false && interval.matches(",[0-9]+") == false) {
+                throw new UnsupportedSedScriptException("Invalid interval " + interval);
+            }
+            sb.append('{').append(interval.startsWith(",") ? "0" : "").append(interval).append('}');
+            pos = end + 2;
+        }
+
+        private void appendBracketExpression() throws UnsupportedSedScriptException {
+            sb.append('[');
+            if (pos < bre.length() && bre.charAt(pos) == '^') {
+                sb.append('^');
+                pos++;
+            }
+            if (pos < bre.length() && bre.charAt(pos) == ']') {
+                sb.append("\\]");
+                pos++;
+            }
+            while (pos < bre.length()) {
+                char c = bre.charAt(pos++);
+                if (c == ']') {
+                    sb.append(']');
+                    return;
+                } else if (c == '[' && pos < bre.length() && bre.charAt(pos) == ':') {
+                    int end = bre.indexOf(":]", pos);
+                    if (end == -1) {
+                        throw new UnsupportedSedScriptException("Unterminated character class");
+                    }
+                    sb.append(characterClass(bre.substring(pos + 1, end)));
+                    pos = end + 2;
+                } else if (c == '[' && pos < bre.length() && (bre.charAt(pos) == '=' || bre.charAt(pos) == '.')) {
+                    throw new UnsupportedSedScriptException("Equivalence classes and collating symbols are not supported");
+                } else if ("\\[]&^".indexOf(c) != -1) {
+                    sb.append('\\').append(c);
+                } else {
+                    sb.append(c);
+                }
+            }
+            throw new UnsupportedSedScriptException("Unterminated bracket expression");
+        }
+
+        private static String characterClass(String name) throws UnsupportedSedScriptException {
+            switch (name) {
+                case "alnum": return "\\p{Alnum}";
+                case "alpha": return "\\p{Alpha}";
+                case "blank": return "\\p{Blank}";
+                case "cntrl": return "\\p{Cntrl}";
+                case "digit": return "\\p{Digit}";
+                case "graph": return "\\p{Graph}";
+                case "lower": return "\\p{Lower}";
+                case "print": return "\\p{Print}";
+                case "punct": return "\\p{Punct}";
+                case "space": return "\\p{Space}";
+                case "upper": return "\\p{Upper}";
+                case "xdigit": return "\\p{XDigit}";
+                default: throw new UnsupportedSedScriptException("Unknown character class " + name);
+            }
+        }
+    }
+}
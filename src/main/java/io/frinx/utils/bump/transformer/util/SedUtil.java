@@ -2,13 +2,93 @@ package io.frinx.utils.bump.transformer.util;
 
 import io.frinx.utils.bump.Bump;
 import io.frinx.utils.bump.transformer.util.ProcessUtil.ProcessOutput;
+import io.frinx.utils.bump.transformer.util.SedScriptCompiler.UnsupportedSedScriptException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.regex.Pattern;
 
 public class SedUtil {
 
+    // line number or last line address at the beginning of a command
+    private static final Pattern LINE_ADDRESS = Pattern.compile("(^|[;\\n{])\\s*[0-9$]");
+    // expression and replacement of an s or y command, with any delimiter
+    private static final String DELIMITED = "(.)(?:\\\\.|(?!\\1).)*+\\1(?:\\\\.|(?!\\1).)*+\\1";
+    // s and y commands with their flags
+    private static final Pattern SUBSTITUTE_OR_TRANSLITERATE =
+            Pattern.compile("[sy]" + DELIMITED + "(?:w.*|[gIiMm0-9pe])*");
+    // s commands printing, writing or executing their result
+    private static final Pattern PRINTING_SUBSTITUTE = Pattern.compile("s" + DELIMITED + "[gIiMm0-9]*[pwe]");
+    // regular expression address, with / or any delimiter
+    private static final Pattern REGEX_ADDRESS = Pattern.compile("/(?:\\\\.|[^/])*+/|\\\\(.)(?:\\\\.|(?!\\1).)*+\\1");
+    // commands using hold space, reading next lines or adding lines to the output, at the beginning of a command
+    private static final Pattern MULTI_LINE_COMMAND = Pattern.compile("(^|[;\\n{}!])\\s*[hHgGxnNDPaicqQ=lrReF]");
+
+    @FunctionalInterface
+    public interface SedScript {
+        String apply(String text);
+    }
+
+    /**
+     * How to run scripts that {@link SedScriptCompiler} does not support.
+     */
+    public enum SedMode {
+        // one long running sed per script
+        COPROCESS,
+        // new sed process for every version
+        FORK
+    }
+
+    public static SedScript compile(String pattern) {
+        return compile(pattern, SedMode.COPROCESS);
+    }
+
+    /**
+     * Compile sed script once so that it can be applied many times. Scripts supported by {@link SedScriptCompiler}
+     * run in process, everything else is passed to sed using given mode. Scripts with line addresses or commands
+     * that keep state between lines or print more of them always fork, as a coprocess would see each version
+     * on a different line and pair its output with the wrong version.
+     */
+    public static SedScript compile(String pattern, SedMode mode) {
+        try {
+            return timed("sed.inProcess", SedScriptCompiler.compile(pattern));
+        } catch (UnsupportedSedScriptException e) {
+            if (mode == SedMode.COPROCESS && LINE_ADDRESS.matcher(pattern).find() == false
+                    && spansLines(pattern) == false) {
+                System.out.println("Using sed coprocess for '" + pattern + "': " + e.getMessage());
+                return timed("sed.coprocess", new SedCoprocess(pattern));
+            }
+            System.out.println("Using external sed for '" + pattern + "': " + e.getMessage());
+            return timed("sed.fork", text -> externalSed(text, pattern));
+        }
+    }
+
+    /**
+     * @return true if given script may use or produce more than one line per line of input, s and y commands
+     * and regular expression addresses are stripped first so that their expressions are not taken for commands
+     */
+    static boolean spansLines(String script) {
+        if (PRINTING_SUBSTITUTE.matcher(script).find()) {
+            return true;
+        }
+        String commands = SUBSTITUTE_OR_TRANSLITERATE.matcher(script).replaceAll(";");
+        commands = REGEX_ADDRESS.matcher(commands).replaceAll(";");
+        return MULTI_LINE_COMMAND.matcher(commands).find();
+    }
+
+    private static SedScript timed(String phase, SedScript script) {
+        return text -> {
+            try (Metrics.Timer timer = Metrics.start(phase)) {
+                return script.apply(text);
+            }
+        };
+    }
+
     public static String sed(String text, String pattern) {
+        return compile(pattern, SedMode.FORK).apply(text);
+    }
+
+    static String externalSed(String text, String pattern) {
         List<String> command = Arrays.asList("sed", pattern);
         try {
             ProcessOutput result = ProcessUtil.runProcess(null, command, Optional.of(text));
@@ -1,79 +1,291 @@
 package io.frinx.utils.bump.transformer.util;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.base.Preconditions.checkState;
-import static com.google.common.collect.Maps.immutableEntry;
-import static java.util.Objects.requireNonNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
 
 import io.frinx.utils.bump.transformer.util.VersionFactory.Version.VersionParsingException;
-import java.util.Map.Entry;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Parses OSGi style versions, major.minor.micro.qualifier, e.g. 1.2.3.4-frinxodl-SNAPSHOT. Numbers are parsed into
+ * ints together with their position in the text, so bumping replaces only the digits of one number and anything
+ * that does not fit the model, e.g. leading zeros or a maven style 0.4.2-Beryllium-SR2, is kept as it is.
+ * <p>
+ * Versions are interned in a fixed size table, looked up by the characters of a region of any {@link CharSequence}.
+ * Parsing a version seen recently, as well as flipping its snapshot or bumping it again, returns the same instance
+ * without allocation.
+ */
 public class VersionFactory {
 
     private static final String DASH_SNAPSHOT = "-SNAPSHOT";
+    // ints of up to 9 digits and longs of up to 18 digits cannot overflow
+    private static final int MAX_INT_DIGITS = 9, MAX_LONG_DIGITS = 18;
+    private static final VersionPool POOL = new VersionPool(1 << 12);
+    private static final ThreadLocal<StringBuilder> SCRATCH = ThreadLocal.withInitial(StringBuilder::new);
 
     public static Version parse(String ver) throws VersionParsingException {
-        boolean snapshot = ver.endsWith(DASH_SNAPSHOT);
-        if (snapshot) {
-            ver = ver.substring(0, ver.length() - DASH_SNAPSHOT.length());
+        return parse(ver, 0, ver.length());
+    }
+
+    /**
+     * Parse version in given region of the text, without copying it if the version was seen recently.
+     */
+    public static Version parse(CharSequence text, int from, int to) throws VersionParsingException {
+        checkPositionIndexes(from, to, text.length());
+        Version version = POOL.get(text, from, to);
+        if (version == null) {
+            version = POOL.put(new Version(text.subSequence(from, to).toString()));
+        }
+        return version;
+    }
+
+    /**
+     * Open addressing table without probing, a version replaces any other version with the same slot.
+     */
+    static class VersionPool {
+        private final AtomicReferenceArray<Version> table;
+        private final int mask;
+
+        VersionPool(int size) {
+            checkArgument(Integer.bitCount(size) == 1, "Size must be a power of two, got %s", size);
+            this.table = new AtomicReferenceArray<>(size);
+            this.mask = size - 1;
+        }
+
+        Version get(CharSequence text, int from, int to) {
+            int hash = 0;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + text.charAt(i);
+            }
+            Version version = table.get(spread(hash) & mask);
+            if (version != null && version.hash == hash && version.matches(text, from, to)) {
+                return version;
+            }
+            return null;
+        }
+
+        Version put(Version version) {
+            table.set(spread(version.hash) & mask, version);
+            return version;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ hash >>> 16;
         }
-        return new Version(ver, snapshot);
     }
 
     public static class Version {
-        private final String versionWithoutSnapshot;
+        private final String text;
+        // same as text.hashCode()
+        private final int hash;
         private final boolean snapshot;
+        // -1 if missing
+        private final int major, minor, micro;
+        private final int microStart, microEnd;
+        // leading digits of the qualifier, -1 if the qualifier does not start with a digit
+        private final long qualifierNumber;
+        private final int qualifierStart, qualifierNumberEnd, qualifierEnd;
+        // same version with the other snapshot flag, computed on first use
+        private volatile Version flipped;
 
-        Version(String versionWithoutSnapshot, boolean snapshot) {
-            checkArgument(versionWithoutSnapshot.endsWith(DASH_SNAPSHOT) == false,
-                    "Parameter 'versionWithoutSnapshot' cannot end with -SNAPSHOT");
-            this.versionWithoutSnapshot = requireNonNull(versionWithoutSnapshot);
-            this.snapshot = snapshot;
+        private Version(String text) {
+            this.text = text;
+            this.hash = text.hashCode();
+            this.snapshot = text.endsWith(DASH_SNAPSHOT);
+            int end = snapshot ? text.length() - DASH_SNAPSHOT.length() : text.length();
+            int[] numbers = {-1, -1, -1};
+            int position = 0, numberStart = 0, components = 0;
+            while (components < 3) {
+                int digitsEnd = digitsEnd(text, position, end);
+                if (digitsEnd == position || digitsEnd - position > MAX_INT_DIGITS) {
+                    break;
+                }
+                numberStart = position;
+                numbers[components++] = Integer.parseInt(text.substring(position, digitsEnd));
+                position = digitsEnd;
+                if (components == 3 || position + 1 >= end || text.charAt(position) != '.'
+                        || Character.isDigit(text.charAt(position + 1)) == false) {
+                    break;
+                }
+                position++;
+            }
+            this.major = numbers[0];
+            this.minor = numbers[1];
+            this.micro = numbers[2];
+            this.microStart = components == 3 ? numberStart : -1;
+            this.microEnd = components == 3 ? position : -1;
+            // qualifier follows the numbers after '.' or '-'
+            if (components > 0 && position + 1 < end && (text.charAt(position) == '.' || text.charAt(position) == '-')) {
+                this.qualifierStart = position + 1;
+                this.qualifierEnd = end;
+                int digitsEnd = digitsEnd(text, qualifierStart, end);
+                if (digitsEnd > qualifierStart && digitsEnd - qualifierStart <= MAX_LONG_DIGITS) {
+                    this.qualifierNumber = Long.parseLong(text.substring(qualifierStart, digitsEnd));
+                    this.qualifierNumberEnd = digitsEnd;
+                } else {
+                    this.qualifierNumber = -1;
+                    this.qualifierNumberEnd = -1;
+                }
+            } else {
+                this.qualifierStart = -1;
+                this.qualifierEnd = -1;
+                this.qualifierNumber = -1;
+                this.qualifierNumberEnd = -1;
+            }
         }
 
-        public String toString() {
-            return versionWithoutSnapshot + (snapshot?DASH_SNAPSHOT:"");
+        private static int digitsEnd(String text, int from, int to) {
+            int i = from;
+            while (i < to && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                i++;
+            }
+            return i;
         }
 
+        boolean matches(CharSequence other, int from, int to) {
+            if (to - from != text.length()) {
+                return false;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) != other.charAt(from + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
 
         public boolean isSnapshot() {
             return snapshot;
         }
 
+        /**
+         * @return major version, -1 if the version does not start with a number
+         */
+        public int getMajor() {
+            return major;
+        }
+
+        public int getMinor() {
+            return minor;
+        }
+
+        public int getMicro() {
+            return micro;
+        }
+
+        /**
+         * @return leading number of the qualifier, e.g. 4 of 1.2.3.4-frinxodl, -1 if there is none
+         */
+        public long getQualifierNumber() {
+            return qualifierNumber;
+        }
+
+        /**
+         * @return qualifier after its leading number, e.g. -frinxodl of 1.2.3.4-frinxodl, without -SNAPSHOT
+         */
+        public String getQualifierSuffix() {
+            if (qualifierStart == -1) {
+                return "";
+            }
+            return text.substring(qualifierNumberEnd == -1 ? qualifierStart : qualifierNumberEnd, qualifierEnd);
+        }
+
         public Version withSnapshot(boolean snapshot) {
-            return new Version(versionWithoutSnapshot, snapshot);
+            if (snapshot == this.snapshot) {
+                return this;
+            }
+            Version result = flipped;
+            if (result == null) {
+                StringBuilder sb = scratch();
+                if (snapshot) {
+                    sb.append(text).append(DASH_SNAPSHOT);
+                } else {
+                    sb.append(text, 0, text.length() - DASH_SNAPSHOT.length());
+                }
+                result = intern(sb);
+                if (result.flipped == null) {
+                    result.flipped = this;
+                }
+                flipped = result;
+            }
+            return result;
+        }
+
+        /**
+         * @return version with micro increased by one, e.g. 1.2.3.frinx to 1.2.4.frinx
+         */
+        public Version withMicroIncremented() throws VersionParsingException {
+            if (microStart == -1) {
+                throw new VersionParsingException("Version " + text + " has no micro version");
+            }
+            return withNumberReplaced(microStart, microEnd, micro + 1L);
+        }
+
+        /**
+         * @return version with leading number of the qualifier increased by one, e.g. 1.2.3.4-frinxodl
+         * to 1.2.3.5-frinxodl
+         */
+        public Version withQualifierIncremented() throws VersionParsingException {
+            if (qualifierNumberEnd == -1) {
+                throw new VersionParsingException("Qualifier of version " + text + " does not start with a number");
+            }
+            return withNumberReplaced(qualifierStart, qualifierNumberEnd, qualifierNumber + 1);
         }
 
-        static Entry<Boolean, String> stripSnapshot(String ver) {
-            boolean snapshot = ver.endsWith(DASH_SNAPSHOT);
-            if (snapshot) {
-                ver = ver.substring(0, ver.length() - DASH_SNAPSHOT.length());
+        // keeps the number of digits, so that leading zeros are kept
+        private Version withNumberReplaced(int start, int end, long value) {
+            StringBuilder sb = scratch().append(text, 0, start);
+            int length = sb.length();
+            sb.append(value);
+            for (int digits = sb.length() - length; digits < end - start; digits++) {
+                sb.insert(length, '0');
             }
-            return immutableEntry(snapshot, ver);
+            return intern(sb.append(text, end, text.length()));
+        }
+
+        private static StringBuilder scratch() {
+            StringBuilder sb = SCRATCH.get();
+            sb.setLength(0);
+            return sb;
+        }
+
+        private static Version intern(StringBuilder sb) {
+            Version version = POOL.get(sb, 0, sb.length());
+            return version != null ? version : POOL.put(new Version(sb.toString()));
+        }
+
+        /**
+         * Append the version to given builder, e.g. when writing a line.
+         */
+        public StringBuilder appendTo(StringBuilder sb) {
+            return sb.append(text);
+        }
+
+        @Override
+        public String toString() {
+            return text;
         }
 
         public static class VersionParsingException extends Exception {
             VersionParsingException(String message, Exception e) {
                 super(message, e);
             }
+
+            VersionParsingException(String message) {
+                super(message);
+            }
         }
 
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
-            Version version = (Version) o;
-            return snapshot == version.snapshot &&
-                    Objects.equals(versionWithoutSnapshot, version.versionWithoutSnapshot);
+            return text.equals(((Version) o).text);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(versionWithoutSnapshot, snapshot);
+            return hash;
         }
     }
 
@@ -0,0 +1,446 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+import io.frinx.utils.bump.transformer.FileTransformer;
+import io.frinx.utils.bump.transformer.FileTransformer.TransformFileResult;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Transaction journal of a run, kept in .bump/journal of the transformed folder until the run finishes.
+ * <p>
+ * Transformers write new content of a file into a temporary file as before, but instead of moving it over
+ * the original, {@link LineRewriter} and {@link ByteRangePatcher} hand it to the write-behind thread of the journal.
+ * That thread takes replacements in batches and for each batch: hard links the original file into the journal
+ * (copies it if links are not supported), moves the new content into the journal, appends one line per file
+ * to the journal file and forces it to disk, and only then moves the new content over the originals.
+ * Files read but not changed are recorded too, so that transformation threads never wait for the disk.
+ * <p>
+ * A run that does not finish leaves the journal behind. {@link #rollback(Path)} restores all original files,
+ * {@link #resume(Path, String)} moves new content not yet moved in place and continues the run, skipping files
+ * recorded in the journal without reading them. The first line of the journal holds the key of the run, e.g. its
+ * rules, so that a run is only resumed with the arguments it was started with.
+ */
+public class WriteBehindJournal implements AutoCloseable {
+
+    public static final String DIRECTORY = ".bump";
+    private static final String JOURNAL = "journal";
+    private static final String RUN = "run", CHANGED = "changed", NOT_CHANGED = "unchanged";
+    private static final int BATCH_SIZE = 256;
+    private static final Replacement STOP = new Replacement(null, null);
+    // transformer currently running on this thread under a journal
+    private static final ThreadLocal<WriteBehindJournal> ACTIVE = new ThreadLocal<>();
+
+    private final Path root;
+    private final Path dir;
+    private final FileChannel journal;
+    // relative path of files recorded by a previous run -> true if changed
+    private final Map<String, Boolean> recorded;
+    private final BlockingQueue<Replacement> queue = new ArrayBlockingQueue<>(4 * BATCH_SIZE);
+    private final Thread writer;
+    private int nextId, changed;
+    private volatile boolean stopped;
+    private volatile IOException failure;
+    private boolean committed;
+
+    private static class Replacement {
+        private final Path path;
+        // null if the file was not changed
+        private final Path temp;
+
+        Replacement(Path path, Path temp) {
+            this.path = path;
+            this.temp = temp;
+        }
+    }
+
+    private WriteBehindJournal(Path root, FileChannel journal, Map<String, Boolean> recorded, int nextId) {
+        this.root = root;
+        this.dir = journalDir(root);
+        this.journal = journal;
+        this.recorded = recorded;
+        this.nextId = nextId;
+        this.writer = new Thread(this::writeBatches, "bump-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private static Path journalDir(Path root) {
+        return root.resolve(DIRECTORY).resolve(JOURNAL);
+    }
+
+    /**
+     * @return true if a run in given folder did not finish
+     */
+    public static boolean exists(Path root) {
+        return Files.exists(journalDir(root).resolve(JOURNAL));
+    }
+
+    /**
+     * Start a new run in given folder.
+     *
+     * @param runKey arguments the run transforms files by
+     */
+    public static WriteBehindJournal begin(Path root, String runKey) throws IOException {
+        root = root.toAbsolutePath().normalize();
+        checkState(exists(root) == false, "Journal of an unfinished run found in %s", journalDir(root));
+        Path dir = journalDir(root);
+        Files.createDirectories(dir);
+        FileChannel journal = FileChannel.open(dir.resolve(JOURNAL), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+        ByteBuffer line = ByteBuffer.wrap((RUN + " " + escape(runKey) + "\n").getBytes(StandardCharsets.UTF_8));
+        while (line.hasRemaining()) {
+            journal.write(line);
+        }
+        journal.force(false);
+        return new WriteBehindJournal(root, journal, Collections.emptyMap(), 0);
+    }
+
+    /**
+     * Continue an unfinished run in given folder. New content recorded but not yet moved over the original file
+     * is moved first.
+     *
+     * @param runKey arguments of the run, must be the ones the run was started with
+     * @throws IllegalStateException if the run was started with other arguments
+     */
+    public static WriteBehindJournal resume(Path root, String runKey) throws IOException {
+        root = root.toAbsolutePath().normalize();
+        checkState(exists(root), "No journal of an unfinished run in %s", journalDir(root));
+        Path dir = journalDir(root);
+        FileChannel journal = FileChannel.open(dir.resolve(JOURNAL), StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        List<String[]> entries;
+        try {
+            entries = readEntries(journal);
+            String started = entries.isEmpty() || RUN.equals(entries.get(0)[0]) == false ? "unknown arguments"
+                    : entries.get(0)[1];
+            // files left would be transformed differently than those recorded
+            checkState(escape(runKey).equals(started), "Unfinished run in %s was started with %s, not %s. Resume it with"
+                    + " the same arguments or restore its files with --journal rollback", root, started, runKey);
+        } catch (IOException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+        Map<String, Boolean> recorded = new ConcurrentHashMap<>();
+        int nextId = 0, moved = 0;
+        for (String[] entry : entries.subList(1, entries.size())) {
+            if (CHANGED.equals(entry[0])) {
+                int id = Integer.parseInt(entry[1]);
+                Path staged = dir.resolve(id + ".new");
+                if (Files.exists(staged)) {
+                    LineRewriter.replaceAtomically(staged, root.resolve(entry[2]));
+                    moved++;
+                }
+                recorded.put(entry[2], true);
+                nextId = Math.max(nextId, id + 1);
+            } else {
+                recorded.put(entry[2], false);
+            }
+        }
+        journal.position(journal.size());
+        System.out.println(format("Resuming run with %d files recorded in journal, %d of them moved in place now",
+                recorded.size(), moved));
+        return new WriteBehindJournal(root, journal, recorded, nextId);
+    }
+
+    // key of the run is kept on a single line
+    private static String escape(String runKey) {
+        return runKey.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    /**
+     * Restore original content of all files changed by an unfinished run in given folder and remove its journal.
+     *
+     * @return number of restored files
+     */
+    public static int rollback(Path root) throws IOException {
+        root = root.toAbsolutePath().normalize();
+        checkState(exists(root), "No journal of an unfinished run in %s", journalDir(root));
+        Path dir = journalDir(root);
+        List<String[]> entries;
+        try (FileChannel journal = FileChannel.open(dir.resolve(JOURNAL), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            entries = readEntries(journal);
+        }
+        Collections.reverse(entries);
+        int restored = 0;
+        for (String[] entry : entries) {
+            if (CHANGED.equals(entry[0])) {
+                Path original = dir.resolve(entry[1] + ".orig");
+                if (Files.exists(original)) {
+                    Files.move(original, root.resolve(entry[2]), StandardCopyOption.REPLACE_EXISTING);
+                    restored++;
+                }
+            }
+        }
+        delete(root);
+        System.out.println(format("Rolled back %d changed files", restored));
+        return restored;
+    }
+
+    /**
+     * Read complete lines of the journal, a line torn by a crash is cut off so that new lines can be appended.
+     * Entries are {run, key}, {changed, id, path} or {unchanged, -, path}.
+     */
+    private static List<String[]> readEntries(FileChannel journal) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) journal.size());
+        while (buffer.hasRemaining() && journal.read(buffer, buffer.position()) != -1) {
+        }
+        String content = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        int end = content.lastIndexOf('\n') + 1;
+        if (end < content.length()) {
+            journal.truncate(content.substring(0, end).getBytes(StandardCharsets.UTF_8).length);
+        }
+        List<String[]> entries = new ArrayList<>();
+        for (String line : content.substring(0, end).split("\n")) {
+            if (line.startsWith(RUN + " ")) {
+                entries.add(line.split(" ", 2));
+            } else if (line.isEmpty() == false) {
+                entries.add(line.split(" ", 3));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return transformer handing changes of given transformer to this journal, files recorded by the run
+     * being resumed are skipped
+     */
+    public FileTransformer wrap(FileTransformer function) {
+        return file -> {
+            Path path = file.toPath().toAbsolutePath().normalize();
+            Boolean recordedChange = recorded.get(relativize(path));
+            if (recordedChange != null) {
+                return recordedChange ? TransformFileResult.CHANGED : TransformFileResult.NOT_CHANGED;
+            }
+            checkFailure();
+            TransformFileResult result;
+            ACTIVE.set(this);
+            try {
+                result = function.transformFile(file);
+            } finally {
+                ACTIVE.remove();
+            }
+            if (result == TransformFileResult.NOT_CHANGED) {
+                enqueue(new Replacement(path, null));
+            }
+            return result;
+        };
+    }
+
+    /**
+     * @return true if a transformer runs on this thread under a journal
+     */
+    static boolean isActive() {
+        return ACTIVE.get() != null;
+    }
+
+    /**
+     * Hand new content of a file to the journal of the transformer running on this thread, if any.
+     *
+     * @return false if there is no journal and the caller should move the file itself
+     */
+    static boolean stage(Path temp, Path path) throws IOException {
+        WriteBehindJournal journal = ACTIVE.get();
+        if (journal == null) {
+            return false;
+        }
+        journal.enqueue(new Replacement(path.toAbsolutePath().normalize(), temp));
+        return true;
+    }
+
+    private void enqueue(Replacement replacement) throws IOException {
+        checkFailure();
+        if (stopped) {
+            throw new IOException("Journal is already closed");
+        }
+        try {
+            queue.put(replacement);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing journal", e);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Writing journal failed", failure);
+        }
+    }
+
+    private String relativize(Path path) {
+        return root.relativize(path).toString();
+    }
+
+    // a failed batch fails the run, but the queue is still drained so that transformation threads never block on it
+    private void writeBatches() {
+        List<Replacement> batch = new ArrayList<>(BATCH_SIZE);
+        boolean stop = false;
+        while (stop == false) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                stop = batch.remove(STOP);
+                if (failure == null) {
+                    try (Metrics.Timer timer = Metrics.start("journal")) {
+                        writeBatch(batch);
+                    }
+                }
+                deleteTemps(batch);
+            } catch (Throwable e) {
+                recordFailure(e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void recordFailure(Throwable e) {
+        if (failure == null) {
+            failure = e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+    }
+
+    private void writeBatch(List<Replacement> batch) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        List<Path> staged = new ArrayList<>();
+        for (Replacement replacement : batch) {
+            if (replacement.temp == null) {
+                lines.append(NOT_CHANGED).append(" - ");
+            } else {
+                int id = nextId++;
+                backup(replacement.path, dir.resolve(id + ".orig"));
+                Path target = dir.resolve(id + ".new");
+                Files.move(replacement.temp, target, StandardCopyOption.REPLACE_EXISTING);
+                staged.add(target);
+                lines.append(CHANGED).append(' ').append(id).append(' ');
+            }
+            lines.append(relativize(replacement.path)).append('\n');
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            journal.write(bytes);
+        }
+        // originals are replaced only once the journal knows how to restore them
+        journal.force(false);
+        int i = 0;
+        for (Replacement replacement : batch) {
+            if (replacement.temp != null) {
+                LineRewriter.replaceAtomically(staged.get(i++), replacement.path);
+                changed++;
+            }
+        }
+        Metrics.count("journalBatches", 1);
+    }
+
+    private static void backup(Path path, Path backup) throws IOException {
+        Files.deleteIfExists(backup);
+        try {
+            // original file is moved away, not modified, so a link keeps its content
+            Files.createLink(backup, path);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(path, backup, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    private static void deleteTemps(List<Replacement> batch) throws IOException {
+        IOException failure = null;
+        for (Replacement replacement : batch) {
+            if (replacement.temp != null) {
+                try {
+                    Files.deleteIfExists(replacement.temp);
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void stop() throws IOException {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        try {
+            queue.put(STOP);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing journal", e);
+        } finally {
+            // enqueued by threads still running when the journal was stopped
+            List<Replacement> late = new ArrayList<>();
+            queue.drainTo(late);
+            try {
+                deleteTemps(late);
+            } catch (IOException e) {
+                recordFailure(e);
+            }
+            journal.close();
+        }
+    }
+
+    /**
+     * Wait for all pending writes and remove the journal, the run is finished.
+     */
+    public void commit() throws IOException {
+        stop();
+        checkFailure();
+        delete(root);
+        committed = true;
+    }
+
+    /**
+     * Wait for all pending writes. Unless committed, the journal is kept for a rollback or resume.
+     *
+     * @throws IOException if writing the journal failed
+     */
+    @Override
+    public void close() throws IOException {
+        stop();
+        if (committed == false) {
+            System.err.println(format("Run did not finish, %d changed files are recorded in %s. Restore them with"
+                    + " --journal rollback or continue with --journal resume", changed, dir));
+        }
+        checkFailure();
+    }
+
+    private static void delete(Path root) throws IOException {
+        Path dir = journalDir(root);
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+        try (Stream<Path> files = Files.list(dir.getParent())) {
+            if (files.findAny().isPresent() == false) {
+                Files.delete(dir.getParent());
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package io.frinx.utils.bump;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.frinx.utils.bump.transformer.BatchMainRunner;
+import io.frinx.utils.bump.transformer.DaemonMainRunner;
+import io.frinx.utils.bump.transformer.FlipLastCommitMainRunner;
+import io.frinx.utils.bump.transformer.simple.SimpleMainRunner;
+import org.junit.Test;
+
+public class BumpTest {
+
+    @Test
+    public void testGetMainRunner() {
+        assertTrue(Bump.getMainRunner("batch") instanceof BatchMainRunner);
+        assertTrue(Bump.getMainRunner("daemon") instanceof DaemonMainRunner);
+        assertTrue(Bump.getMainRunner("flipLastCommit") instanceof FlipLastCommitMainRunner);
+        assertTrue(Bump.getMainRunner("simple") instanceof SimpleMainRunner);
+        // created once
+        assertSame(Bump.getMainRunner("simple"), Bump.getMainRunner("simple"));
+        assertNull(Bump.getMainRunner("unknown"));
+    }
+
+    @Test
+    public void testGetRepositoryMainRunner() {
+        assertSame(Bump.getMainRunner("simple"), Bump.getRepositoryMainRunner("simple"));
+        assertSame(Bump.getMainRunner("flipLastCommit"), Bump.getRepositoryMainRunner("flipLastCommit"));
+        // batch and daemon run other main runners
+        assertNull(Bump.getRepositoryMainRunner("batch"));
+        assertNull(Bump.getRepositoryMainRunner("daemon"));
+        assertNull(Bump.getRepositoryMainRunner("unknown"));
+    }
+}
@@ -0,0 +1,93 @@
+package io.frinx.utils.bump.transformer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import io.frinx.utils.bump.transformer.BatchMainRunner.RepositoryReport;
+import io.frinx.utils.bump.transformer.simple.SimpleMainRunner;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class BatchMainRunnerTest {
+
+    @Test
+    public void testRunAll() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            List<File> repositories = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                File repository = new File(folder, "repo" + i);
+                File pom = new File(repository, "module/pom.xml");
+                Files.createParentDirs(pom);
+                Files.write("<version>1.2." + i + ".frinx-SNAPSHOT</version>\n", pom, Charsets.UTF_8);
+                repositories.add(repository);
+            }
+            repositories.add(5, new File(folder, "missing"));
+            RepositoryRunner runner = new SimpleMainRunner().prepare(
+                    Arrays.asList("--suffix", "frinx", "--snapshot", "drop", "--threads", "2"));
+
+            List<RepositoryReport> reports = BatchMainRunner.runAll(repositories, runner, 4);
+
+            assertEquals(repositories.size(), reports.size());
+            for (int i = 0; i < reports.size(); i++) {
+                RepositoryReport report = reports.get(i);
+                assertEquals(repositories.get(i), report.getRepository());
+                if (i == 5) {
+                    assertFalse(report.isSuccess());
+                } else {
+                    assertTrue(report.toString(), report.isSuccess());
+                    assertEquals("Changed 1, Not changed 0, Not matched 0", report.getSummary());
+                }
+            }
+            assertEquals("<version>1.2.7.frinx</version>\n",
+                    Files.toString(new File(folder, "repo7/module/pom.xml"), Charsets.UTF_8));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test
+    public void testErrorDoesNotAbortOtherRepositories() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            List<File> repositories = Arrays.asList(new File(folder, "a"), new File(folder, "b"), new File(folder, "c"));
+            for (File repository : repositories) {
+                repository.mkdir();
+            }
+            RepositoryRunner runner = repository -> {
+                if ("b".equals(repository.getName())) {
+                    throw new StackOverflowError();
+                }
+                return "done";
+            };
+
+            List<RepositoryReport> reports = BatchMainRunner.runAll(repositories, runner, 2);
+
+            assertTrue(reports.get(0).isSuccess());
+            assertTrue(reports.get(1).getFailure() instanceof StackOverflowError);
+            assertTrue(reports.get(2).isSuccess());
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test
+    public void testReadManifest() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            File manifest = new File(folder, "repos.txt");
+            Files.write("# release repositories\nrepoA\n\n  /abs/repoB  \n", manifest, Charsets.UTF_8);
+            assertEquals(Arrays.asList(new File(folder, "repoA"), new File("/abs/repoB")),
+                    BatchMainRunner.readManifest(manifest));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package io.frinx.utils.bump.transformer;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import io.frinx.utils.bump.transformer.DaemonMainRunner.Daemon;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DaemonMainRunnerTest {
+
+    private File tokenDir;
+    private Daemon daemon;
+    private String token;
+
+    @Before
+    public void setUp() throws IOException {
+        tokenDir = Files.createTempDir();
+        daemon = Daemon.start(0, tokenDir.toPath());
+        token = Files.toString(new File(tokenDir, "daemon-" + daemon.getPort() + ".token"), Charsets.UTF_8);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        daemon.stop();
+        FileUtils.deleteDirectory(tokenDir);
+    }
+
+    /**
+     * @return response lines, exit line last
+     */
+    private List<String> request(String token, File workingDir, String... args) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            out.write(DaemonMainRunner.PROTOCOL + " " + token + "\n" + workingDir + "\n" + args.length + "\n");
+            for (String arg : args) {
+                out.write(arg + "\n");
+            }
+            out.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            List<String> lines = new ArrayList<>();
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                lines.add(line);
+            }
+            return lines;
+        }
+    }
+
+    private static File repository(String version) throws IOException {
+        File folder = Files.createTempDir();
+        Files.write("<version>" + version + "</version>\n", new File(folder, "pom.xml"), Charsets.UTF_8);
+        return folder;
+    }
+
+    @Test
+    public void testConcurrentRequestsForDifferentRepositories() throws Exception {
+        List<File> repositories = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                File repository = repository("1." + i + ".frinx-SNAPSHOT");
+                repositories.add(repository);
+                responses.add(executor.submit(() -> request(token, repository, "simple", "--suffix", "frinx",
+                        "--snapshot", "drop", "--threads", "1", "--journal", "off")));
+            }
+            for (int i = 0; i < 4; i++) {
+                List<String> response = responses.get(i).get();
+                assertEquals("exit 0", response.get(response.size() - 1));
+                // output of each request is its own
+                assertTrue(response.toString(), response.contains("1 " + new File(repositories.get(i), "pom.xml")
+                        .getAbsolutePath()));
+                assertTrue(response.toString(), response.contains("1 Changed 1, Not changed 0, Not matched 0"));
+                assertEquals("<version>1." + i + ".frinx</version>\n",
+                        Files.toString(new File(repositories.get(i), "pom.xml"), Charsets.UTF_8));
+            }
+        } finally {
+            executor.shutdownNow();
+            for (File repository : repositories) {
+                FileUtils.deleteDirectory(repository);
+            }
+        }
+    }
+
+    @Test
+    public void testFailureDoesNotStopDaemon() throws Exception {
+        File repository = repository("1.0.frinx");
+        try {
+            assertEquals(asList("2 FATAL: Main runner 'unknown' not found, try -h", "exit 1"),
+                    request(token, repository, "unknown"));
+            assertEquals(asList("2 FATAL: Main runner 'batch' cannot be run by the daemon", "exit 1"),
+                    request(token, repository, "batch", "--manifest", "repos.txt", "simple"));
+            assertEquals(asList("2 Invalid token, is the daemon listening on this port?", "exit 1"),
+                    request("wrong", repository, "simple", "-h"));
+            // dropping snapshot of a release version fails
+            List<String> response = request(token, repository, "simple", "--suffix", "frinx", "--snapshot", "drop");
+            assertEquals("exit 1", response.get(response.size() - 1));
+            assertEquals("<version>1.0.frinx</version>\n",
+                    Files.toString(new File(repository, "pom.xml"), Charsets.UTF_8));
+
+            response = request(token, repository, "--journal", "rollback");
+            assertEquals("exit 1", response.get(response.size() - 1));
+            response = request(token, repository, "simple", "--journal", "rollback");
+            assertEquals("exit 0", response.get(response.size() - 1));
+        } finally {
+            FileUtils.deleteDirectory(repository);
+        }
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        assertEquals(asList("1 Bump daemon stopped", "exit 0"), request(token, tokenDir, DaemonMainRunner.STOP));
+        daemon.awaitStop();
+        assertTrue(new File(tokenDir, "daemon-" + daemon.getPort() + ".token").exists() == false);
+    }
+}
@@ -1,8 +1,8 @@
 package io.frinx.utils.bump.transformer;
 
-import static io.frinx.utils.bump.transformer.util.ProcessUtil.runProcess;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
@@ -12,7 +12,6 @@ import io.frinx.utils.bump.transformer.FlipLastCommitMainRunner.BumpSnapshotWork
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -29,19 +28,18 @@ public class FlipLastCommitMainRunnerTest {
         File gitDir = File.createTempFile("gitinit", ".test");
         assertTrue(gitDir.delete());
         try {
-            runProcess(gitDir.getParentFile(), Arrays.asList("git", "init", gitDir.getName()));
-            try (Git git = Git.open(gitDir)) {
+            try (Git git = Git.init().setDirectory(gitDir).call()) {
                 System.out.println("Created a new repository at " + git.getRepository().getDirectory());
 
                 GitPatchWorkflow tested = new GitPatchWorkflow(new TestingFileTransformer(), gitDir, "some commit message");
                 File pomFile = new File(gitDir, "pom.xml");
                 File featuresFile = new File(gitDir, "features.xml");
-                addCommit(gitDir, "init", ImmutableMap.of(
+                addCommit(git, "init", ImmutableMap.of(
                         pomFile, "thisartifact:1-SNAPSHOT\n" +
                                 "depA:2-SNAPSHOT\n" +
                                 "depExternal:9",
                         featuresFile, "depA:2-SNAPSHOT"));
-                addCommit(gitDir, "release 1", ImmutableMap.of(
+                addCommit(git, "release 1", ImmutableMap.of(
                         pomFile, "thisartifact:1\ndepA:2\ndepExternal:9",
                         featuresFile, "depA:2"));
                 assertLogSize(git, 2);
@@ -60,6 +58,36 @@ public class FlipLastCommitMainRunnerTest {
         }
     }
 
+    @Test
+    public void testPlanAndApply() throws Exception {
+        File gitDir = File.createTempFile("gitinit", ".test");
+        assertTrue(gitDir.delete());
+        File planFile = File.createTempFile("bump", ".plan");
+        try (Git git = Git.init().setDirectory(gitDir).call()) {
+            GitPatchWorkflow tested = new GitPatchWorkflow(new TestingFileTransformer(), gitDir, "some commit message");
+            File featuresFile = new File(gitDir, "features.xml");
+            addCommit(git, "init", ImmutableMap.of(featuresFile, "depA:2-SNAPSHOT"));
+            addCommit(git, "release 1", ImmutableMap.of(featuresFile, "depA:2"));
+
+            tested.plan(planFile);
+            assertLogSize(git, 2);
+            assertEquals("depA:2", Files.toString(featuresFile, StandardCharsets.UTF_8));
+            String plan = Files.toString(planFile, StandardCharsets.UTF_8);
+            assertTrue(plan, plan.contains("+depA:3-SNAPSHOT"));
+
+            tested.apply(planFile);
+            assertLogSize(git, 3);
+            assertEquals("depA:3-SNAPSHOT", Files.toString(featuresFile, StandardCharsets.UTF_8));
+            try {
+                tested.apply(planFile);
+                fail("Plan must not be applied on top of another commit");
+            } catch (IllegalStateException expected) {
+            }
+        } finally {
+            FileUtils.deleteDirectory(gitDir);
+            assertTrue(planFile.delete());
+        }
+    }
 
     private static class TestingFileTransformer implements FileTransformer {
         @Override
@@ -76,14 +104,14 @@ public class FlipLastCommitMainRunnerTest {
 
     }
 
-    private static void addCommit(File gitDir, String message, Map<File, String> fileNameToContent) throws Exception {
+    private static void addCommit(Git git, String message, Map<File, String> fileNameToContent) throws Exception {
         for (Entry<File, String> entry : fileNameToContent.entrySet()) {
             String content = entry.getValue();
             File file = entry.getKey();
             Files.write(content, file, Charsets.UTF_8);
         }
-        runProcess(gitDir, Arrays.asList("git", "add", "-A"));
-        runProcess(gitDir, Arrays.asList("git", "commit", "-m", message));
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage(message).call();
     }
 
     private static void assertLogSize(Git git, int size) throws Exception {
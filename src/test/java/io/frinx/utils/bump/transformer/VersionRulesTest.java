@@ -0,0 +1,88 @@
+package io.frinx.utils.bump.transformer;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import io.frinx.utils.bump.Bump;
+import java.io.File;
+import java.util.Arrays;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class VersionRulesTest {
+
+    private static final String RULES = "# release of several suffixes\n"
+            + "--suffix frinxodl --snapshot drop\n"
+            + "\n"
+            + "--suffix frinx --snapshot drop --postprocess-sed 's/frinx/frinx1/'\n"
+            + "--suffix Beryllium-SR[0-9]+ --postprocess-sed \"s/SR2/SR3/\"\n";
+
+    @Test
+    public void testSplit() {
+        assertEquals(asList("--suffix", "frinx", "--postprocess-sed", "s/a b/c/", "x\"y"),
+                VersionRules.split(" --suffix frinx  --postprocess-sed 's/a b/c/' 'x\"y'"));
+        assertEquals(asList("a", ""), VersionRules.split("a ''"));
+    }
+
+    @Test
+    public void testRequiredLiteral() {
+        assertEquals("frinx", VersionRules.requiredLiteral("frinx"));
+        assertEquals("Beryllium-SR", VersionRules.requiredLiteral("Beryllium-SR[0-9]+"));
+        assertEquals("frin", VersionRules.requiredLiteral("frinx?"));
+        assertEquals("", VersionRules.requiredLiteral("frinx|odl"));
+        assertEquals("", VersionRules.requiredLiteral(".*frinx"));
+    }
+
+    @Test
+    public void testLoadAndTransform() throws Exception {
+        File file = File.createTempFile("bump", ".rules");
+        try {
+            Files.write(RULES, file, Charsets.UTF_8);
+            VersionRules tested = VersionRules.load(file.toPath());
+            assertEquals(3, tested.getStrategies().size());
+            assertEquals("(?:(?:frinxodl)|(?:frinx)|(?:Beryllium-SR[0-9]+))", tested.getQualifierSuffix());
+            assertEquals(0b111, tested.candidates("frinxodl Beryllium-SR", 0, 21));
+            assertEquals("1.0.frinxodl", tested.transform("1.0.frinxodl-SNAPSHOT"));
+            assertEquals("1.0.frinx1", tested.transform("1.0.frinx-SNAPSHOT"));
+            assertEquals("0.4.2-Beryllium-SR3", tested.transform("0.4.2-Beryllium-SR2"));
+            assertEquals("1.0.odl", tested.transform("1.0.odl"));
+
+            Files.write("--suffix frinx --threads 4\n", file, Charsets.UTF_8);
+            try {
+                VersionRules.load(file.toPath());
+                fail();
+            } catch (IllegalArgumentException expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().endsWith(file + ":1"));
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testSimpleWithRules() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            File rules = new File(folder, "bump.rules");
+            Files.write(RULES, rules, Charsets.UTF_8);
+            File pom = new File(folder, "pom.xml");
+            Files.write("<version>1.0.frinxodl-SNAPSHOT</version>\n"
+                    + "<a.version>1.0.frinx-SNAPSHOT</a.version><b version=\"2.0.frinxodl-SNAPSHOT\"/>\n"
+                    + "<c.version>0.4.2-Beryllium-SR2</c.version>\n"
+                    + "<d.version>1.0.odl-SNAPSHOT</d.version>\n", pom, Charsets.UTF_8);
+
+            Bump.getRepositoryMainRunner("simple").prepare(Arrays.asList("--rules", rules.getPath())).run(folder);
+
+            assertEquals("<version>1.0.frinxodl</version>\n"
+                    + "<a.version>1.0.frinx1</a.version><b version=\"2.0.frinxodl\"/>\n"
+                    + "<c.version>0.4.2-Beryllium-SR3</c.version>\n"
+                    + "<d.version>1.0.odl-SNAPSHOT</d.version>\n", Files.toString(pom, Charsets.UTF_8));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package io.frinx.utils.bump.transformer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
+import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.BumpTransformation;
 import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.SnapshotTransformation;
 import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.VersionTransformationStrategy;
+import io.frinx.utils.bump.transformer.util.SedUtil.SedMode;
 import io.frinx.utils.bump.transformer.util.VersionFactory.Version.VersionParsingException;
 import java.util.Arrays;
 import java.util.List;
@@ -45,4 +48,42 @@ public class VersionTransformationStrategyFactoryTest {
         String transformed = transformationStrategy.transform("1.2.3.rc1-frinx");
         assertEquals("1.2.3.rc2-frinx-SNAPSHOT", transformed);
     }
+
+    @Test
+    public void testTransformationIsMemoized() throws VersionParsingException {
+        VersionTransformationStrategy transformationStrategy = new VersionTransformationStrategy("frinx",
+                SnapshotTransformation.DROP, Optional.empty(), Optional.empty());
+
+        assertEquals("1.2.3.frinx", transformationStrategy.transform("1.2.3.frinx-SNAPSHOT"));
+        assertEquals("1.2.3.frinx", transformationStrategy.transform("1.2.3.frinx-SNAPSHOT"));
+        assertEquals(1, transformationStrategy.getCacheStats().hitCount());
+        assertEquals(1, transformationStrategy.getCacheStats().missCount());
+    }
+
+    @Test
+    public void testErrorIsMemoized() throws VersionParsingException {
+        VersionTransformationStrategy transformationStrategy = new VersionTransformationStrategy("frinx",
+                SnapshotTransformation.DROP, Optional.empty(), Optional.empty());
+        for (int i = 0; i < 2; i++) {
+            try {
+                transformationStrategy.transform("1.2.3.frinx");
+                fail("Dropping snapshot of release version should fail");
+            } catch (IllegalStateException expected) {
+            }
+        }
+        assertEquals(1, transformationStrategy.getCacheStats().hitCount());
+    }
+
+    @Test
+    public void testBump() throws VersionParsingException {
+        VersionTransformationStrategy tested = VersionTransformationStrategyFactory.parseArgs(
+                Arrays.asList("--suffix", "frinxodl", "--bump", "qualifier", "--snapshot", "drop")).getKey();
+        assertEquals(BumpTransformation.QUALIFIER, tested.getBumpTransformation());
+        assertEquals("1.2.3.5-frinxodl", tested.transform("1.2.3.4-frinxodl-SNAPSHOT"));
+        assertEquals("1.2.3.5-frinxodl", tested.transform("<version>1.2.3.4-frinxodl-SNAPSHOT</version>", 9, 34));
+
+        tested = new VersionTransformationStrategy("frinx", SnapshotTransformation.NONE,
+                Optional.empty(), Optional.empty(), SedMode.COPROCESS, BumpTransformation.MICRO);
+        assertEquals("1.2.4.frinx-SNAPSHOT", tested.transform("1.2.3.frinx-SNAPSHOT"));
+    }
 }
@@ -0,0 +1,146 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+import io.frinx.utils.bump.transformer.VersionRules;
+import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.SnapshotTransformation;
+import io.frinx.utils.bump.transformer.VersionTransformationStrategyFactory.VersionTransformationStrategy;
+import io.frinx.utils.bump.transformer.simple.BumpSnapshotPatchTransformerFactory.BumpSnapshotPatchTransformer;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Test;
+
+public class BumpSnapshotPatchTransformerFactoryTest {
+
+    private final VersionTransformationStrategy strategy = new VersionTransformationStrategy("frinx",
+            SnapshotTransformation.FLIP, Optional.empty(), Optional.empty());
+    private final BumpSnapshotPatchTransformer tested = BumpSnapshotPatchTransformerFactory.create(strategy);
+
+    @Test
+    public void testFixLines() {
+        List<String> input = asList(
+                "@@ -1,4 +1,4 @@",
+                " <project>",
+                "-      <version>1.2.0.frinx</version>",
+                "+      <version>1.1.8.frinx-SNAPSHOT</version>",
+                "-      <bundle version=\"1.2.0.frinx\"/>",
+                "-      <other>1.0</other>",
+                "+      <bundle version=\"1.1.8.frinx-SNAPSHOT\"/>",
+                "+      <other>2.0</other>",
+                " </project>");
+        List<String> expected = asList(
+                "@@ -1,4 +1,4 @@",
+                " <project>",
+                "-      <version>1.2.0.frinx</version>",
+                "+      <version>1.2.0.frinx-SNAPSHOT</version>",
+                "-      <bundle version=\"1.2.0.frinx\"/>",
+                "-      <other>1.0</other>",
+                "+      <bundle version=\"1.2.0.frinx-SNAPSHOT\"/>",
+                "+      <other>2.0</other>",
+                " </project>");
+        assertEquals(expected, tested.fixLines(input, new File("test.patch")));
+    }
+
+    @Test
+    public void testFixLines_consecutiveVersions() {
+        List<String> input = asList(
+                "-<a>1.frinx</a>",
+                "-<b>2.frinx</b>",
+                "+<a>0.frinx-SNAPSHOT</a>",
+                "+<b>0.frinx-SNAPSHOT</b>");
+        List<String> expected = asList(
+                "-<a>1.frinx</a>",
+                "-<b>2.frinx</b>",
+                "+<a>1.frinx-SNAPSHOT</a>",
+                "+<b>2.frinx-SNAPSHOT</b>");
+        assertEquals(expected, tested.fixLines(input, new File("test.patch")));
+    }
+
+    @Test
+    public void testFixLines_rules() {
+        BumpSnapshotPatchTransformer tested = BumpSnapshotPatchTransformerFactory.create(new VersionRules(asList(
+                new VersionTransformationStrategy("frinxodl", SnapshotTransformation.FLIP, Optional.empty(),
+                        Optional.empty()),
+                new VersionTransformationStrategy("Beryllium-SR[0-9]", SnapshotTransformation.FLIP,
+                        Optional.of("s/SR2/SR3/"), Optional.empty()))));
+        List<String> input = asList(
+                "-<a>1.frinxodl</a><b>0.4.2-Beryllium-SR2</b>",
+                "+<a>0.frinxodl-SNAPSHOT</a><b>0.4.2-Beryllium-SR1-SNAPSHOT</b>",
+                "-<c>1.frinx</c>",
+                "+<c>0.frinx-SNAPSHOT</c>");
+        List<String> expected = asList(
+                "-<a>1.frinxodl</a><b>0.4.2-Beryllium-SR2</b>",
+                "+<a>1.frinxodl-SNAPSHOT</a><b>0.4.2-Beryllium-SR3-SNAPSHOT</b>",
+                "-<c>1.frinx</c>",
+                "+<c>0.frinx-SNAPSHOT</c>");
+        assertEquals(expected, tested.fixLines(input, new File("test.patch")));
+    }
+
+    @Test
+    public void testFixLines_hunks() {
+        List<String> input = asList(
+                "From 1234 Mon Sep 17 00:00:00 2001",
+                "---",
+                "diff --git a/pom.xml b/pom.xml",
+                "--- a/pom.xml",
+                "+++ b/pom.xml",
+                "@@ -1,2 +1,2 @@",
+                " <project>",
+                "-<a>1.frinx</a>",
+                "+<a>0.frinx-SNAPSHOT</a>",
+                "\\ No newline at end of file",
+                "diff --git a/features.xml b/features.xml",
+                "@@ -1 +1,2 @@",
+                "-<other>1.0</other><c>3.frinx</c>",
+                "+<other>2.0</other>",
+                "+<c>0.frinx-SNAPSHOT</c>",
+                "-- ",
+                "-<d>4.frinx</d>");
+        List<String> expected = asList(
+                "From 1234 Mon Sep 17 00:00:00 2001",
+                "---",
+                "diff --git a/pom.xml b/pom.xml",
+                "--- a/pom.xml",
+                "+++ b/pom.xml",
+                "@@ -1,2 +1,2 @@",
+                " <project>",
+                "-<a>1.frinx</a>",
+                "+<a>1.frinx-SNAPSHOT</a>",
+                "\\ No newline at end of file",
+                "diff --git a/features.xml b/features.xml",
+                "@@ -1 +1,2 @@",
+                "-<other>1.0</other><c>3.frinx</c>",
+                "+<other>1.0</other><c>3.frinx-SNAPSHOT</c>",
+                "+<c>0.frinx-SNAPSHOT</c>",
+                // trailer after the last hunk is not part of the patch
+                "-- ",
+                "-<d>4.frinx</d>");
+        for (int threads : new int[]{1, 4}) {
+            BumpSnapshotPatchTransformer tested = new BumpSnapshotPatchTransformer(VersionRules.of(strategy), threads);
+            assertEquals(expected, tested.fixLines(input, new File("test.patch")));
+        }
+    }
+
+    @Test
+    public void testFixLines_longRunsInManySections() {
+        List<String> input = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int section = 0; section < 10; section++) {
+            input.add("diff --git a/" + section + "/pom.xml b/" + section + "/pom.xml");
+            input.add("@@ -1,20000 +1,20000 @@");
+            expected.addAll(input.subList(input.size() - 2, input.size()));
+            for (int i = 0; i < 20000; i++) {
+                input.add("-<v>" + section + "." + i + ".frinx</v>");
+                expected.add("-<v>" + section + "." + i + ".frinx</v>");
+            }
+            for (int i = 0; i < 20000; i++) {
+                input.add("+<v>0.frinx-SNAPSHOT</v>");
+                expected.add("+<v>" + section + "." + i + ".frinx-SNAPSHOT</v>");
+            }
+        }
+        assertEquals(expected, tested.fixLines(input, new File("test.patch")));
+    }
+}
@@ -0,0 +1,134 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import io.frinx.utils.bump.transformer.RepositoryRunner;
+import io.frinx.utils.bump.transformer.simple.ChangePlan.Edit;
+import io.frinx.utils.bump.transformer.simple.ChangePlan.FilePlan;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class ChangePlanTest {
+
+    private static final String POM = "<project>\n"
+            + "  <version>1.0.0.frinx-SNAPSHOT</version>\n"
+            + "  <a/>\n  <b/>\n  <c/>\n  <d/>\n  <e/>\n  <f/>\n  <g/>\n"
+            + "  <dependency version=\"2.0.0.frinx-SNAPSHOT\"/>\n"
+            + "</project>";
+
+    @Test
+    public void testPlanAndApply() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            File pom = new File(folder, "module/pom.xml");
+            Files.createParentDirs(pom);
+            Files.write(POM, pom, Charsets.UTF_8);
+            File features = new File(folder, "features.xml");
+            Files.write("<feature version=\"1.0.0.frinx-SNAPSHOT\">ž</feature>\n", features, Charsets.UTF_8);
+
+            run(folder, "--suffix", "frinx", "--snapshot", "drop", "--plan", "plan.json");
+            assertEquals("nothing is modified while planning", POM, Files.toString(pom, Charsets.UTF_8));
+
+            List<FilePlan> filePlans = ChangePlan.read(new File(folder, "plan.json").toPath());
+            assertEquals(Arrays.asList("features.xml", "module/pom.xml"),
+                    Arrays.asList(filePlans.get(0).getPath(), filePlans.get(1).getPath()));
+            Edit edit = filePlans.get(1).getEdits().get(1);
+            assertEquals(10, edit.getLine());
+            assertEquals("2.0.0.frinx-SNAPSHOT", edit.getOldVersion());
+            assertEquals("2.0.0.frinx", edit.getNewVersion());
+            assertEquals("--- a/features.xml\n"
+                            + "+++ b/features.xml\n"
+                            + "@@ -1,1 +1,1 @@\n"
+                            + "-<feature version=\"1.0.0.frinx-SNAPSHOT\">ž</feature>\n"
+                            + "+<feature version=\"1.0.0.frinx\">ž</feature>\n"
+                            + "--- a/module/pom.xml\n"
+                            + "+++ b/module/pom.xml\n"
+                            + "@@ -1,5 +1,5 @@\n"
+                            + " <project>\n"
+                            + "-  <version>1.0.0.frinx-SNAPSHOT</version>\n"
+                            + "+  <version>1.0.0.frinx</version>\n"
+                            + "   <a/>\n   <b/>\n   <c/>\n"
+                            + "@@ -7,5 +7,5 @@\n"
+                            + "   <e/>\n   <f/>\n   <g/>\n"
+                            + "-  <dependency version=\"2.0.0.frinx-SNAPSHOT\"/>\n"
+                            + "+  <dependency version=\"2.0.0.frinx\"/>\n"
+                            + " </project>\n"
+                            + "\\ No newline at end of file\n",
+                    Files.toString(new File(folder, "plan.json.diff"), Charsets.UTF_8));
+
+            run(folder, "--apply", "plan.json");
+            assertEquals(POM.replace("frinx-SNAPSHOT", "frinx"), Files.toString(pom, Charsets.UTF_8));
+            assertEquals("<feature version=\"1.0.0.frinx\">ž</feature>\n", Files.toString(features, Charsets.UTF_8));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test
+    public void testApplyChecksHashes() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            File pom = new File(folder, "pom.xml");
+            Files.write(POM, pom, Charsets.UTF_8);
+            File features = new File(folder, "features.xml");
+            Files.write("<feature version=\"1.0.0.frinx-SNAPSHOT\"/>", features, Charsets.UTF_8);
+            run(folder, "--suffix", "frinx", "--snapshot", "drop", "--plan", "plan.json");
+            Files.write(POM + "\n", pom, Charsets.UTF_8);
+            try {
+                run(folder, "--apply", "plan.json");
+                fail("Modified file must not be patched");
+            } catch (IOException expected) {
+            }
+            assertEquals("other files are not patched either", "<feature version=\"1.0.0.frinx-SNAPSHOT\"/>",
+                    Files.toString(features, Charsets.UTF_8));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test
+    public void testIgnoredErrorLeavesWholeLineUnplanned() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            File pom = new File(folder, "pom.xml");
+            Files.write("<a v=\"1.0.frinx-SNAPSHOT\">2.0.frinx-SNAPSHOT</a>\n<b>3.0.frinx-SNAPSHOT</b>\n", pom,
+                    Charsets.UTF_8);
+            ChangePlan changePlan = new ChangePlan(folder.toPath(), true);
+            VersionScanner scanner = new VersionScanner("frinx");
+            changePlan.toPlanningTransformer(file -> true, Optional.empty(),
+                    file -> line -> scanner.findAll(line, 0, line.length()), version -> {
+                        if (version.startsWith("2.")) {
+                            throw new IllegalArgumentException("Cannot transform " + version);
+                        }
+                        return version.replace("-SNAPSHOT", "");
+                    }).transformFile(pom);
+            changePlan.write(new File(folder, "plan.json").toPath());
+
+            List<Edit> edits = ChangePlan.read(new File(folder, "plan.json").toPath()).get(0).getEdits();
+            assertEquals(1, edits.size());
+            assertEquals(2, edits.get(0).getLine());
+            assertEquals("--- a/pom.xml\n"
+                            + "+++ b/pom.xml\n"
+                            + "@@ -1,2 +1,2 @@\n"
+                            + " <a v=\"1.0.frinx-SNAPSHOT\">2.0.frinx-SNAPSHOT</a>\n"
+                            + "-<b>3.0.frinx-SNAPSHOT</b>\n"
+                            + "+<b>3.0.frinx</b>\n",
+                    Files.toString(new File(folder, "plan.json.diff"), Charsets.UTF_8));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    private static void run(File folder, String... args) throws Exception {
+        RepositoryRunner runner = new SimpleMainRunner().prepare(Arrays.asList(args));
+        runner.run(folder);
+    }
+}
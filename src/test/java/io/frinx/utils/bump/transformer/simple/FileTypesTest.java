@@ -0,0 +1,134 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import io.frinx.utils.bump.Bump;
+import io.frinx.utils.bump.transformer.simple.ChangePlan.VersionFinder;
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class FileTypesTest {
+
+    private static class TestFileType implements FileType {
+        private final String name;
+        private final List<String> globs;
+
+        TestFileType(String name, String... globs) {
+            this.name = name;
+            this.globs = asList(globs);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public List<String> getGlobs() {
+            return globs;
+        }
+
+        @Override
+        public VersionFinder createFinder(String qualifierSuffix, VersionFinder markup) {
+            return markup;
+        }
+    }
+
+    @Test
+    public void testMatch() {
+        FileType name = new TestFileType("name", "**/pom.xml");
+        FileType extension = new TestFileType("extension", "**/*.cfg");
+        FileType path = new TestFileType("path", "etc/**/*.{cfg,xml}", "**/x?.txt");
+        FileTypes tested = new FileTypes(asList(name, extension, path));
+        Path root = Paths.get("/repo");
+        assertEquals(Optional.of(name), tested.match(root, Paths.get("/repo/pom.xml")));
+        assertEquals(Optional.of(name), tested.match(root, Paths.get("/repo/a/b/pom.xml")));
+        assertEquals(Optional.of(extension), tested.match(root, Paths.get("/repo/etc/a/org.example.cfg")));
+        assertEquals(Optional.of(path), tested.match(root, Paths.get("/repo/etc/a/features.xml")));
+        assertEquals(Optional.of(path), tested.match(root, Paths.get("/repo/x1.txt")));
+        assertEquals(Optional.of(path), tested.match(root, Paths.get("/repo/a/x1.txt")));
+        assertEquals(Optional.empty(), tested.match(root, Paths.get("/repo/features.xml")));
+        assertEquals(Optional.empty(), tested.match(root, Paths.get("/repo/pom.xml.orig")));
+
+        // first registered type wins
+        tested = new FileTypes(asList(path, extension));
+        assertEquals(Optional.of(path), tested.match(root, Paths.get("/repo/etc/a/org.example.cfg")));
+    }
+
+    @Test
+    public void testLoad() {
+        assertEquals("maven", FileTypes.load(singletonList(FileTypes.DEFAULT)).toString());
+        assertEquals("maven,gradle,bnd,manifest,cfg,properties",
+                FileTypes.load(singletonList(FileTypes.ALL)).toString());
+        assertEquals("gradle,properties", FileTypes.load(asList("properties", "gradle")).toString());
+        try {
+            FileTypes.load(singletonList("ant"));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown file type 'ant', known types are [maven, gradle, bnd, manifest, cfg, properties]",
+                    e.getMessage());
+        }
+    }
+
+    @Test
+    public void testAllTypesInOnePass() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            write(folder, "pom.xml", "<project><version>1.0.frinx-SNAPSHOT</version></project>\n");
+            write(folder, "a/build.gradle", "group = 'io.frinx'\nversion = '1.0.frinx-SNAPSHOT'\n"
+                    + "dependencies { compile \"io.frinx:b:2.0.frinx-SNAPSHOT\" }\n");
+            write(folder, "a/bnd.bnd", "Bundle-Version: 1.0.frinx-SNAPSHOT\nImport-Package: io.frinx.*\n");
+            write(folder, "a/META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\nBundle-Version: 1.0.frinx-SNAPSHOT\r\n");
+            write(folder, "etc/org.example.cfg", "# 1.0.frinx-SNAPSHOT.\nversion=1.0.frinx-SNAPSHOT\n");
+            write(folder, "a/versions.properties", "odl.version = 1.0.frinx-SNAPSHOT\nother=v1.0.frinx-SNAPSHOTS\n");
+            write(folder, "a/Readme.txt", "1.0.frinx-SNAPSHOT\n");
+
+            Bump.getRepositoryMainRunner("simple").prepare(asList("--suffix", "frinx", "--snapshot", "drop",
+                    "--file-types", "all", "--threads", "1")).run(folder);
+
+            assertEquals("<project><version>1.0.frinx</version></project>\n", read(folder, "pom.xml"));
+            assertEquals("group = 'io.frinx'\nversion = '1.0.frinx'\ndependencies { compile \"io.frinx:b:2.0.frinx\" }\n",
+                    read(folder, "a/build.gradle"));
+            assertEquals("Bundle-Version: 1.0.frinx\nImport-Package: io.frinx.*\n", read(folder, "a/bnd.bnd"));
+            assertEquals("Manifest-Version: 1.0\r\nBundle-Version: 1.0.frinx\r\n", read(folder, "a/META-INF/MANIFEST.MF"));
+            assertEquals("# 1.0.frinx-SNAPSHOT.\nversion=1.0.frinx\n", read(folder, "etc/org.example.cfg"));
+            assertEquals("odl.version = 1.0.frinx\nother=v1.0.frinx-SNAPSHOTS\n", read(folder, "a/versions.properties"));
+            assertEquals("1.0.frinx-SNAPSHOT\n", read(folder, "a/Readme.txt"));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test
+    public void testDefaultIsMavenOnly() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            write(folder, "a/build.gradle", "version = '1.0.frinx-SNAPSHOT'\n");
+            Bump.getRepositoryMainRunner("simple").prepare(asList("--suffix", "frinx", "--snapshot", "drop")).run(folder);
+            assertFalse(read(folder, "a/build.gradle").contains("'1.0.frinx'"));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    private static void write(File folder, String path, String content) throws Exception {
+        File file = new File(folder, path);
+        file.getParentFile().mkdirs();
+        Files.write(content, file, Charsets.UTF_8);
+    }
+
+    private static String read(File folder, String path) throws Exception {
+        return Files.toString(new File(folder, path), Charsets.UTF_8);
+    }
+}
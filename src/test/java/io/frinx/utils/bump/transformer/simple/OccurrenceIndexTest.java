@@ -0,0 +1,159 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import io.frinx.utils.bump.transformer.FileTransformer;
+import io.frinx.utils.bump.transformer.FileTransformer.TransformFileResult;
+import io.frinx.utils.bump.transformer.simple.OccurrenceIndex.IndexedOccurrence;
+import io.frinx.utils.bump.transformer.simple.ChangePlan.VersionFinder;
+import io.frinx.utils.bump.transformer.simple.VersionScanner.Kind;
+import io.frinx.utils.bump.transformer.util.LineRewriter;
+import io.frinx.utils.bump.transformer.util.LiteralPrefilter;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class OccurrenceIndexTest {
+
+    @Test
+    public void testScan() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            File pom = new File(folder, "pom.xml");
+            String content = "<name>ž€</name>\r\n<version>1.0.0.frinx</version>\n<bundle v=\"𝄞\" version=\"2.0.0.frinx-SNAPSHOT\"/>\n"
+                    + "<a>x</a><b>1.0.0.frinx</b>";
+            Files.write(content, pom, Charsets.UTF_8);
+            OccurrenceIndex index = OccurrenceIndex.load(new File(folder, "index").toPath(), folder.toPath(), Arrays.asList("frinx"));
+
+            List<IndexedOccurrence> occurrences = index.scan(pom.toPath()).get().getOccurrences();
+
+            byte[] bytes = Files.toByteArray(pom);
+            assertEquals(Arrays.asList("1.0.0.frinx", "2.0.0.frinx-SNAPSHOT", "1.0.0.frinx"), occurrences.stream()
+                    .map(o -> new String(bytes, (int) o.getOffset(), o.getLength(), StandardCharsets.UTF_8))
+                    .collect(Collectors.toList()));
+            assertEquals(Arrays.asList(Kind.ELEMENT_TEXT, Kind.QUOTED_ATTRIBUTE, Kind.ELEMENT_TEXT),
+                    occurrences.stream().map(IndexedOccurrence::getKind).collect(Collectors.toList()));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test
+    public void testScanSuffixOfEachRule() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            File pom = new File(folder, "pom.xml");
+            Files.write("<a>1.0.0.frinxodl</a><b v='2.0.0-Beryllium-SR2'/>\n<c>3.0.0.frinx</c>", pom, Charsets.UTF_8);
+            OccurrenceIndex index = OccurrenceIndex.load(new File(folder, "index").toPath(), folder.toPath(),
+                    Arrays.asList("frinxodl", "Beryllium-SR2"));
+
+            List<IndexedOccurrence> occurrences = index.scan(pom.toPath()).get().getOccurrences();
+
+            byte[] bytes = Files.toByteArray(pom);
+            assertEquals(Arrays.asList("1.0.0.frinxodl", "2.0.0-Beryllium-SR2"), occurrences.stream()
+                    .map(o -> new String(bytes, (int) o.getOffset(), o.getLength(), StandardCharsets.UTF_8))
+                    .collect(Collectors.toList()));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test
+    public void testPatchValidFiles() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            File pom = new File(folder, "pom.xml");
+            Files.write("<version>1.0.0.frinx</version>\n<a v='1.0.0.frinx-SNAPSHOT'/>\n", pom, Charsets.UTF_8);
+            Path indexFile = new File(folder, ".bump-index").toPath();
+            AtomicInteger delegateCalls = new AtomicInteger();
+            FileTransformer delegate = file -> {
+                delegateCalls.incrementAndGet();
+                return TransformFileResult.NOT_CHANGED;
+            };
+
+            // first run scans the file
+            assertEquals(TransformFileResult.NOT_CHANGED, run(indexFile, folder, delegate, pom));
+            assertEquals(1, delegateCalls.get());
+            // second run patches recorded occurrences, replacement is longer
+            assertEquals(TransformFileResult.CHANGED, run(indexFile, folder, delegate, pom));
+            assertEquals(1, delegateCalls.get());
+            assertEquals("<version>1.0.10.frinx</version>\n<a v='1.0.10.frinx-SNAPSHOT'/>\n",
+                    Files.toString(pom, Charsets.UTF_8));
+            // nothing left to change
+            assertEquals(TransformFileResult.NOT_CHANGED, run(indexFile, folder, delegate, pom));
+            assertEquals(1, delegateCalls.get());
+            // modified file is not patched
+            Files.write("<version>1.0.0.frinx</version>", pom, Charsets.UTF_8);
+            assertEquals(TransformFileResult.NOT_CHANGED, run(indexFile, folder, delegate, pom));
+            assertEquals(2, delegateCalls.get());
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test
+    public void testEntriesFromTransformation() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            File pom = new File(folder, "pom.xml");
+            Files.write("<name>ž€</name>\n<version>1.0.0.frinx</version>\n<a v='1.0.0.frinx-SNAPSHOT'/>\n", pom,
+                    Charsets.UTF_8);
+            File other = new File(folder, "other.xml");
+            Files.write("<version>1.0.0</version>\n", other, Charsets.UTF_8);
+            Path indexFile = new File(folder, ".bump-index").toPath();
+            OccurrenceIndex index = OccurrenceIndex.load(indexFile, folder.toPath(), Arrays.asList("frinx"));
+            VersionScanner scanner = new VersionScanner("frinx");
+            VersionFinder finder = index.recording(line -> scanner.findAll(line, 0, line.length()));
+            List<File> transformed = new ArrayList<>();
+            // transforms nothing, only finds versions
+            FileTransformer delegate = file -> {
+                transformed.add(file);
+                LineRewriter.rewrite(file, (input, output) -> {
+                    while (input.hasNext()) {
+                        String line = input.next();
+                        finder.find(line);
+                        output.accept(line);
+                    }
+                });
+                return TransformFileResult.NOT_CHANGED;
+            };
+            FileTransformer transformer = index.toFileTransformer(delegate, file -> true,
+                    Optional.of(new LiteralPrefilter("frinx")), version -> version);
+            assertEquals(TransformFileResult.NOT_CHANGED, transformer.transformFile(pom));
+            assertEquals(TransformFileResult.NOT_CHANGED, transformer.transformFile(other));
+            Thread.sleep(20);
+            index.save();
+            // file rejected by the prefilter is not transformed, neither file is read again
+            assertEquals(Arrays.asList(pom), transformed);
+            assertEquals(0, index.getScanned());
+
+            assertEquals(TransformFileResult.CHANGED, run(indexFile, folder, delegate, pom));
+            assertEquals(Arrays.asList(pom), transformed);
+            assertEquals("<name>ž€</name>\n<version>1.0.10.frinx</version>\n<a v='1.0.10.frinx-SNAPSHOT'/>\n",
+                    Files.toString(pom, Charsets.UTF_8));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    private static TransformFileResult run(Path indexFile, File folder, FileTransformer delegate, File pom)
+            throws Exception {
+        OccurrenceIndex index = OccurrenceIndex.load(indexFile, folder.toPath(), Arrays.asList("frinx"));
+        TransformFileResult result = index.toFileTransformer(delegate, file -> true, Optional.empty(),
+                version -> version.replace("1.0.0.", "1.0.10.")).transformFile(pom);
+        // entries are only trusted for files modified before the index was written
+        Thread.sleep(20);
+        index.save();
+        return result;
+    }
+}
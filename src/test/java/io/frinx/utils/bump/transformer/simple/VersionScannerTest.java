@@ -0,0 +1,160 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.frinx.utils.bump.transformer.simple.VersionScanner.Kind;
+import io.frinx.utils.bump.transformer.simple.VersionScanner.Occurrence;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public class VersionScannerTest {
+
+    private static final String SUFFIX = "frinx";
+
+    private static final List<String> CORPUS = asList(
+            "",
+            "    <version>1.2.3.frinx</version>",
+            "    <version>1.2.3.frinx-SNAPSHOT</version>",
+            "    <version>1.2.3-SNAPSHOT</version>",
+            "<bundle>mvn:io.frinx/foo/1.2.3.frinx-SNAPSHOT</bundle>",
+            "  <feature name='odl-foo' version='1.2.3.frinx'>",
+            "  <feature name=\"odl-foo\" version=\"1.2.3.frinx-SNAPSHOT\" description=\"x\">",
+            "<repository>mvn:org.opendaylight/features/1.2.3.frinx/xml/features</repository>",
+            "<a>frinx</a>",
+            "<a>.frinx</a>",
+            "<a>1.frinx</>",
+            "<a>1.frinx</b>",
+            "<>1.frinx</a>",
+            "a>1.frinx</a>",
+            "<a>>frinx</a>",
+            "<a>x<b>1.frinx</b>",
+            "<a>1.frinx</a>1.frinx</b>",
+            "<a>1.frinx</2.frinx</a>",
+            "\"frinx\"",
+            "\"1frinx\"",
+            "'1.frinx\"",
+            "\"1.frinx-SNAPSHOT\" '2.frinx'",
+            "x=\"a\" y=\"1.frinx\" z=\"b\"",
+            "<v>1.frinx-SNAPSHOT</v><w>2.frinx</w>",
+            "<version>${project.version}</version>",
+            "<version>1.2.3.frinxodl</version>",
+            "<a>1.frinx</a>\r");
+
+    private static List<Pattern> legacyPatterns() {
+        List<Pattern> patterns = new ArrayList<>();
+        for (String suffix : asList("", "-SNAPSHOT")) {
+            patterns.add(Pattern.compile("^(.*<.+>)(.+" + SUFFIX + suffix + ")(</.+>.*)$", Pattern.DOTALL));
+            patterns.add(Pattern.compile("^(.*[\"'])([^\"']+" + SUFFIX + suffix + ")([\"'].*)$", Pattern.DOTALL));
+        }
+        return patterns;
+    }
+
+    // what the regexes used to do: the first matching pattern's version, {start, end}, null if none matched
+    private static int[] legacy(String line) {
+        for (Pattern p : legacyPatterns()) {
+            Matcher m = p.matcher(line);
+            if (m.matches()) {
+                return new int[]{m.start(2), m.end(2)};
+            }
+        }
+        return null;
+    }
+
+    // occurrences found in the line must include the legacy one, and be none where the regexes matched nothing
+    private static void assertCompatible(VersionScanner scanner, String line) {
+        int[] legacy = legacy(line);
+        List<Occurrence> occurrences = scanner.findAll(line, 0, line.length());
+        if (legacy == null) {
+            assertEquals(line, asList(), occurrences);
+            return;
+        }
+        for (Occurrence occurrence : occurrences) {
+            if (occurrence.getStart() == legacy[0] && occurrence.getEnd() == legacy[1]) {
+                return;
+            }
+        }
+        fail(line + ": " + line.substring(legacy[0], legacy[1]) + " not in " + occurrences);
+    }
+
+    @Test
+    public void testCompatibilityCorpus() {
+        VersionScanner scanner = new VersionScanner(SUFFIX);
+        for (String line : CORPUS) {
+            assertCompatible(scanner, line);
+        }
+    }
+
+    @Test
+    public void testCompatibilityRandomLines() {
+        VersionScanner scanner = new VersionScanner(SUFFIX);
+        String[] tokens = {"<", ">", "</", "\"", "'", "a", ".", "1", "frinx", "-SNAPSHOT", " ", "=", "/"};
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(14);
+            for (int j = 0; j < length; j++) {
+                sb.append(tokens[random.nextInt(tokens.length)]);
+            }
+            String line = sb.toString();
+            assertCompatible(scanner, line);
+        }
+    }
+
+    @Test
+    public void testFindAll() {
+        VersionScanner scanner = new VersionScanner(SUFFIX);
+        String line = "<a v=\"1.frinx\">2.frinx-SNAPSHOT</a><b>3.frinx</b>";
+        List<Occurrence> occurrences = scanner.findAll(line, 0, line.length());
+        assertEquals(3, occurrences.size());
+        assertEquals("1.frinx", substring(line, occurrences.get(0)));
+        assertEquals(Kind.QUOTED_ATTRIBUTE, occurrences.get(0).getKind());
+        assertEquals("2.frinx-SNAPSHOT", substring(line, occurrences.get(1)));
+        assertEquals(Kind.ELEMENT_TEXT, occurrences.get(1).getKind());
+        assertEquals("3.frinx", substring(line, occurrences.get(2)));
+    }
+
+    @Test
+    public void testFindAllOnLongLines() {
+        VersionScanner scanner = new VersionScanner(SUFFIX);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            sb.append("<a>x</a");
+        }
+        String line = sb.toString();
+        assertTrue(scanner.findAll(line, 0, line.length()).isEmpty());
+    }
+
+    @Test
+    public void testFindAllWithManyVersions() {
+        VersionScanner scanner = new VersionScanner(SUFFIX);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            sb.append(i % 2 == 0 ? "<a>x.frinx</a>" : " v='x.frinx-SNAPSHOT' ");
+        }
+        String line = sb.toString();
+        List<Occurrence> occurrences = scanner.findAll(line, 0, line.length());
+        assertEquals(100_000, occurrences.size());
+        assertEquals("x.frinx-SNAPSHOT", substring(line, occurrences.get(99_999)));
+    }
+
+    @Test
+    public void testSupports() {
+        assertTrue(VersionScanner.supports("frinxodl"));
+        assertTrue(VersionScanner.supports("Beryllium-SR2"));
+        assertFalse(VersionScanner.supports(""));
+        assertFalse(VersionScanner.supports("frinx.odl"));
+        assertFalse(VersionScanner.supports("frinx\""));
+    }
+
+    private static String substring(String line, Occurrence occurrence) {
+        return line.substring(occurrence.getStart(), occurrence.getEnd());
+    }
+}
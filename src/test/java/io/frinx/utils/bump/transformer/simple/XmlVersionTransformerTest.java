@@ -0,0 +1,94 @@
+package io.frinx.utils.bump.transformer.simple;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import io.frinx.utils.bump.transformer.FileTransformer;
+import io.frinx.utils.bump.transformer.FileTransformer.TransformFileResult;
+import java.io.File;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class XmlVersionTransformerTest {
+
+    private final AtomicInteger fallbackCalls = new AtomicInteger();
+    private final XmlVersionTransformer tested = new XmlVersionTransformer(file -> true, Optional.empty(),
+            file -> {
+                fallbackCalls.incrementAndGet();
+                return FileTransformer.TransformFileResult.NOT_CHANGED;
+            }, "frinx", version -> version.replace("-SNAPSHOT", ""));
+
+    @Test
+    public void testPom() throws Exception {
+        String pom = "\uFEFF<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n"
+                + "<!DOCTYPE project [<!ENTITY e \"<version>9.frinx-SNAPSHOT</version>\">]>\r\n"
+                + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\r\n"
+                + "  <parent><artifactId>ž-1.0.frinx-SNAPSHOT</artifactId><version>1.0.frinx-SNAPSHOT</version></parent>\r\n"
+                + "  <name>𝄞 1.0.frinx-SNAPSHOT</name>\r\n"
+                + "  <version>\r\n    2.0.frinx-SNAPSHOT\r\n  </version>\r\n"
+                + "  <properties>\r\n"
+                + "    <a.version>3.0.frinx-SNAPSHOT</a.version>\r\n"
+                + "    <b.version><!-- keep -->4.0.frinx-SNAPSHOT</b.version>\r\n"
+                + "    <c.version><![CDATA[5.0.frinx-SNAPSHOT]]></c.version>\r\n"
+                + "    <d.version>${project.version}</d.version>\r\n"
+                + "  </properties>\r\n"
+                + "  <dependencies><dependency><version>6.0.frinx-SNAPSHOT</version></dependency></dependencies>\r\n"
+                + "  <build><plugins><plugin><version>7.0.frinx-SNAPSHOT</version></plugin></plugins></build>\r\n"
+                + "</project>\r\n";
+        String expected = pom.replace("<version>1.0.frinx-SNAPSHOT", "<version>1.0.frinx")
+                .replace("2.0.frinx-SNAPSHOT", "2.0.frinx")
+                .replace("3.0.frinx-SNAPSHOT", "3.0.frinx")
+                .replace("4.0.frinx-SNAPSHOT", "4.0.frinx")
+                .replace("6.0.frinx-SNAPSHOT", "6.0.frinx");
+        assertTransformed(pom, expected, TransformFileResult.CHANGED);
+    }
+
+    @Test
+    public void testFeatures() throws Exception {
+        String features = "<features xmlns=\"http://karaf.apache.org/xmlns/features/v1.2.0\">\n"
+                + "  <feature name='odl-ž' version='1.0.frinx-SNAPSHOT' description=\"a > b 1.0.frinx-SNAPSHOT\">\n"
+                + "    <feature version=\"2.0.frinx-SNAPSHOT\">odl-other</feature>\n"
+                + "    <bundle>mvn:org.example/ž/3.0.frinx-SNAPSHOT</bundle>\n"
+                + "    <bundle>wrap:mvn:org.example/a/4.0.frinx-SNAPSHOT$Bundle-Version=4.0</bundle>\n"
+                + "    <bundle>mvn:org.example/b/5.0.frinx-SNAPSHOT/xml/features</bundle>\n"
+                + "    <bundle>mvn:org.example/c/1.0</bundle>\n"
+                + "    <configfile finalname=\"etc/1.0.frinx-SNAPSHOT.cfg\"/>\n"
+                + "  </feature>\n"
+                + "</features>";
+        String expected = features.replace("version='1.0.frinx-SNAPSHOT'", "version='1.0.frinx'")
+                .replace("2.0.frinx-SNAPSHOT", "2.0.frinx")
+                .replace("3.0.frinx-SNAPSHOT", "3.0.frinx")
+                .replace("4.0.frinx-SNAPSHOT", "4.0.frinx")
+                .replace("5.0.frinx-SNAPSHOT", "5.0.frinx");
+        assertTransformed(features, expected, TransformFileResult.CHANGED);
+    }
+
+    @Test
+    public void testNothingToChange() throws Exception {
+        String pom = "<project><version>1.0.frinx</version><artifactId>a-1.0.frinx-SNAPSHOT</artifactId></project>";
+        assertTransformed(pom, pom, TransformFileResult.NOT_CHANGED);
+        assertEquals(0, fallbackCalls.get());
+    }
+
+    @Test
+    public void testMalformedFallsBack() throws Exception {
+        String pom = "<project><version>1.0.frinx-SNAPSHOT</version></parent>";
+        assertTransformed(pom, pom, TransformFileResult.NOT_CHANGED);
+        assertEquals(1, fallbackCalls.get());
+    }
+
+    private void assertTransformed(String input, String expected, TransformFileResult expectedResult) throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            File file = new File(folder, "pom.xml");
+            Files.write(input, file, Charsets.UTF_8);
+            assertEquals(expectedResult, tested.transformFile(file));
+            assertEquals(expected, Files.toString(file, Charsets.UTF_8));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import io.frinx.utils.bump.transformer.FileTransformer;
+import io.frinx.utils.bump.transformer.FileTransformer.TransformFileResult;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.junit.Test;
+
+public class FileUtilTest {
+
+    @Test
+    public void testTransformRecursively_parallel() throws IOException {
+        File folder = Files.createTempDir();
+        try {
+            for (int i = 0; i < 50; i++) {
+                File module = new File(folder, "module" + i);
+                Files.createParentDirs(new File(module, "pom.xml"));
+                Files.write("<version>" + i + "</version>", new File(module, "pom.xml"), Charsets.UTF_8);
+                Files.write("readme", new File(module, "README"), Charsets.UTF_8);
+            }
+            Set<File> visited = ConcurrentHashMap.newKeySet();
+            FileTransformer transformer = file -> {
+                visited.add(file);
+                return "pom.xml".equals(file.getName()) ? TransformFileResult.CHANGED : TransformFileResult.NOT_MATCHED;
+            };
+            FileUtil.transformRecursively(folder, transformer, 4);
+            assertEquals(100, visited.size());
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testTransformRecursively_parallelPropagatesIOException() throws IOException {
+        File folder = Files.createTempDir();
+        try {
+            Files.write("a", new File(folder, "a"), Charsets.UTF_8);
+            Files.write("b", new File(folder, "b"), Charsets.UTF_8);
+            FileUtil.transformRecursively(folder, file -> {
+                throw new IOException("expected");
+            }, 2);
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test
+    public void testResultCounters() {
+        FileUtil.ResultCounters counters = new FileUtil.ResultCounters();
+        counters.increment(TransformFileResult.CHANGED);
+        counters.increment(TransformFileResult.NOT_MATCHED);
+        counters.increment(TransformFileResult.NOT_MATCHED);
+        assertEquals("Changed 1, Not changed 0, Not matched 2", counters.toString());
+    }
+
+    @Test
+    public void testTransformRecursively_prunesIgnoredDirectories() throws IOException {
+        File folder = Files.createTempDir();
+        try {
+            for (String path : Arrays.asList("pom.xml", "target/pom.xml", ".git/pom.xml", "a/node_modules/pom.xml",
+                    "a/pom.xml", "a/generated/pom.xml", "a/b/generated/pom.xml", "skipped-1/pom.xml",
+                    "keep/generated/pom.xml")) {
+                File file = new File(folder, path);
+                Files.createParentDirs(file);
+                Files.write("", file, Charsets.UTF_8);
+            }
+            Files.write("generated/\n", new File(folder, "a/.gitignore"), Charsets.UTF_8);
+            Files.write("# comment\nskipped-*\n", new File(folder, ".bumpignore"), Charsets.UTF_8);
+            Set<String> visited = ConcurrentHashMap.newKeySet();
+            FileUtil.transformRecursively(folder, file -> {
+                if ("pom.xml".equals(file.getName())) {
+                    visited.add(folder.toPath().relativize(file.toPath()).toString());
+                }
+                return TransformFileResult.NOT_CHANGED;
+            }, 2);
+            assertEquals(Sets.newHashSet("pom.xml", "a/pom.xml", "keep/generated/pom.xml"), visited);
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test
+    public void testTransformTracked_skipsCachedNotChangedFiles() throws Exception {
+        File folder = Files.createTempDir();
+        try (Git git = Git.init().setDirectory(folder).call()) {
+            for (String path : Arrays.asList("a/pom.xml", "b/pom.xml", "c/pom.xml")) {
+                File file = new File(folder, path);
+                Files.createParentDirs(file);
+                Files.write(path, file, Charsets.UTF_8);
+            }
+            git.add().addFilepattern(".").call();
+            Set<String> visited = ConcurrentHashMap.newKeySet();
+            FileTransformer transformer = file -> {
+                visited.add(file.getParentFile().getName());
+                return "a".equals(file.getParentFile().getName())
+                        ? TransformFileResult.CHANGED : TransformFileResult.NOT_CHANGED;
+            };
+
+            FileUtil.transformTracked(folder, path -> true, transformer, 2, Optional.empty(), Optional.of("key"));
+            assertEquals(Sets.newHashSet("a", "b", "c"), visited);
+            visited.clear();
+            FileUtil.transformTracked(folder, path -> true, transformer, 2, Optional.empty(), Optional.of("key"));
+            assertEquals(Sets.newHashSet("a"), visited);
+            visited.clear();
+            FileUtil.transformTracked(folder, path -> true, transformer, 1, Optional.empty(), Optional.of("other"));
+            assertEquals(Sets.newHashSet("a", "b", "c"), visited);
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+}
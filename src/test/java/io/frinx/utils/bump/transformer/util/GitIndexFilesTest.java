@@ -0,0 +1,114 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import io.frinx.utils.bump.transformer.util.GitIndexFiles.TrackedFiles;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.junit.Test;
+
+public class GitIndexFilesTest {
+
+    @Test
+    public void testList() throws Exception {
+        File folder = Files.createTempDir();
+        try (Git git = Git.init().setDirectory(folder).call()) {
+            write(folder, "pom.xml");
+            write(folder, "a/pom.xml");
+            write(folder, "a/README");
+            write(folder, "a/target/pom.xml");
+            write(folder, "b/pom.xml");
+            write(folder, "deleted/pom.xml");
+            git.add().addFilepattern(".").call();
+            write(folder, "untracked/pom.xml");
+            write(folder, "b/.bumpignore", "");
+            write(folder, ".bumpignore", "b/");
+            assertEquals(true, new File(folder, "deleted/pom.xml").delete());
+
+            assertEquals(Sets.newHashSet("pom.xml", "a/pom.xml"), list(folder, folder));
+            assertEquals(Sets.newHashSet("pom.xml"), list(new File(folder, "a"), new File(folder, "a")));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test
+    public void testListTrackedUnderGitIgnoredDirectory() throws Exception {
+        File folder = Files.createTempDir();
+        try (Git git = Git.init().setDirectory(folder).call()) {
+            write(folder, "features/pom.xml");
+            write(folder, "features/src/pom.xml");
+            git.add().addFilepattern(".").call();
+            write(folder, ".gitignore", "features/\n");
+            write(folder, "features/src/.gitignore", "pom.xml\n");
+
+            assertEquals(Sets.newHashSet("features/pom.xml", "features/src/pom.xml"), list(folder, folder));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test
+    public void testListSince() throws Exception {
+        File folder = Files.createTempDir();
+        try (Git git = Git.init().setDirectory(folder).call()) {
+            write(folder, "a/pom.xml");
+            write(folder, "b/pom.xml");
+            write(folder, "c/pom.xml");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("init").call();
+            write(folder, "b/pom.xml", "<version>1.0.10.frinx</version>");
+            write(folder, "c/pom.xml", "<version>1.0.1.frinx</version>");
+            git.add().addFilepattern("c").call();
+            write(folder, "d/pom.xml");
+            git.add().addFilepattern("d").call();
+
+            TrackedFiles trackedFiles = GitIndexFiles.listTracked(folder, path -> true, Optional.of("HEAD"));
+            assertEquals(1, trackedFiles.getUnchanged());
+            Set<String> paths = trackedFiles.getFiles().stream()
+                    .map(file -> folder.toPath().relativize(file.getPath()).toString().replace(File.separatorChar, '/'))
+                    .collect(Collectors.toSet());
+            assertEquals(Sets.newHashSet("b/pom.xml", "c/pom.xml", "d/pom.xml"), paths);
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testListOutsideOfRepository() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            GitIndexFiles.list(folder, path -> true);
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    private static Set<String> list(File folder, File base) throws IOException {
+        Path basePath = base.toPath();
+        return GitIndexFiles.list(folder, path -> "pom.xml".equals(path.getFileName().toString())).stream()
+                .map(Entry::getKey)
+                .map(path -> basePath.relativize(path).toString().replace(File.separatorChar, '/'))
+                .collect(Collectors.toSet());
+    }
+
+    private static void write(File folder, String path) throws IOException {
+        write(folder, path, "<version>1.0.0.frinx</version>");
+    }
+
+    private static void write(File folder, String path, String content) throws IOException {
+        File file = new File(folder, path);
+        Files.createParentDirs(file);
+        Files.write(content, file, Charsets.UTF_8);
+    }
+}
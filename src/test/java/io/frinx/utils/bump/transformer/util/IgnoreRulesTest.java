@@ -0,0 +1,34 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.frinx.utils.bump.transformer.util.IgnoreRules.Rule;
+import org.junit.Test;
+
+public class IgnoreRulesTest {
+
+    @Test
+    public void testParse() {
+        assertNull(Rule.parse(""));
+        assertNull(Rule.parse("# comment"));
+        assertTrue(Rule.parse("target/").matches("a/target", "target", true));
+        assertFalse(Rule.parse("target/").matches("a/target", "target", false));
+        assertTrue(Rule.parse("*.iml").matches("a/b.iml", "b.iml", false));
+        assertTrue(Rule.parse("/build").matches("build", "build", true));
+        assertFalse(Rule.parse("/build").matches("a/build", "build", true));
+        assertTrue(Rule.parse("a/**/gen").matches("a/x/y/gen", "gen", true));
+        assertTrue(Rule.parse("a/**/gen").matches("a/gen", "gen", true));
+        assertTrue(Rule.parse("out[0-9]").matches("out1", "out1", true));
+    }
+
+    @Test
+    public void testGlobToRegex() {
+        assertTrue("a.b".matches(Rule.globToRegex("*.?")));
+        assertFalse("a/.b".matches(Rule.globToRegex("*.?")));
+        assertTrue("x".matches(Rule.globToRegex("**/x")));
+        assertTrue("a/b/x".matches(Rule.globToRegex("**/x")));
+        assertTrue("a+b".matches(Rule.globToRegex("a+b")));
+    }
+}
@@ -0,0 +1,77 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LineRewriterTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("rewriter", ".xml");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private boolean replaceAll(String from, String to) throws IOException {
+        return LineRewriter.rewrite(file, (input, output) -> {
+            while (input.hasNext()) {
+                output.accept(input.next().replace(from, to));
+            }
+        });
+    }
+
+    @Test
+    public void testLinesArePreservedExactly() throws IOException {
+        for (String content : new String[]{"", "\n", "a", "a\n", "x\r\na\r\n\n", "a\nb\na", "\n\na\n\n"}) {
+            Files.write(content, file, Charsets.UTF_8);
+            assertEquals(content.contains("a"), replaceAll("a", "b"));
+            assertEquals(content.replace("a", "b"), Files.toString(file, Charsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testUnchangedFileIsNotWritten() throws IOException {
+        Files.write("a\nb\n", file, Charsets.UTF_8);
+        assertTrue(file.setLastModified(1_000_000_000L));
+        assertFalse(replaceAll("c", "d"));
+        assertEquals(1_000_000_000L, file.lastModified());
+        assertEquals(0, file.getParentFile().listFiles((dir, name) -> name.endsWith(".bump")).length);
+    }
+
+    @Test
+    public void testLongFile() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            sb.append(i % 1000 == 999 ? "<version>1.frinx</version>" : "<a>x</a>").append('\n');
+        }
+        Files.write(sb, file, Charsets.UTF_8);
+        assertTrue(replaceAll("1.frinx", "2.frinx"));
+        assertEquals(sb.toString().replace("1.frinx", "2.frinx"), Files.toString(file, Charsets.UTF_8));
+    }
+
+    @Test
+    public void testPermissionsArePreserved() throws IOException {
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-x---");
+        java.nio.file.Files.setPosixFilePermissions(file.toPath(), permissions);
+        Files.write("a", file, Charsets.UTF_8);
+        assertTrue(replaceAll("a", "b"));
+        assertEquals(permissions, java.nio.file.Files.getPosixFilePermissions(file.toPath()));
+    }
+}
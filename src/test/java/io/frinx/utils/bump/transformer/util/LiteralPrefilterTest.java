@@ -0,0 +1,53 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class LiteralPrefilterTest {
+
+    @Test
+    public void testContains() {
+        LiteralPrefilter tested = new LiteralPrefilter("frinxodl");
+        assertTrue(tested.contains(bytes("<version>1.2.3.frinxodl</version>")));
+        assertTrue(tested.contains(bytes("frinxodl")));
+        assertTrue(tested.contains(bytes("frinxfrinxodl")));
+        assertFalse(tested.contains(bytes("<version>1.2.3.frinx</version>")));
+        assertFalse(tested.contains(bytes("frinxod")));
+        assertFalse(tested.contains(bytes("")));
+    }
+
+    @Test
+    public void testContainsAnyLiteral() {
+        LiteralPrefilter tested = new LiteralPrefilter(Arrays.asList("frinxodl", "Beryllium-SR"));
+        assertTrue(tested.contains(bytes("<version>1.2.3.frinxodl</version>")));
+        assertTrue(tested.contains(bytes("<version>ž1.2.3-Beryllium-SR2</version>")));
+        assertFalse(tested.contains(bytes("<version>1.2.3.frinx</version> Beryllium-S")));
+    }
+
+    @Test
+    public void testMightMatch() throws IOException {
+        File file = File.createTempFile("prefilter", ".xml");
+        try {
+            LiteralPrefilter tested = new LiteralPrefilter("frinx");
+            Files.write("<version>1.0.0-SNAPSHOT</version>", file, Charsets.UTF_8);
+            assertFalse(tested.mightMatch(file));
+            Files.write("<version>1.0.0.frinx-SNAPSHOT</version>", file, Charsets.UTF_8);
+            assertTrue(tested.mightMatch(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static ByteBuffer bytes(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
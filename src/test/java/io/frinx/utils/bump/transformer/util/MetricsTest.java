@@ -0,0 +1,63 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import io.frinx.utils.bump.transformer.simple.SimpleMainRunner;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Test;
+
+public class MetricsTest {
+
+    @After
+    public void tearDown() {
+        Metrics.reset();
+    }
+
+    @Test
+    public void testDisabled() {
+        try (Metrics.Timer timer = Metrics.start("walk")) {
+            Metrics.count("bytesRead", 10);
+        }
+        Metrics.enable();
+        assertEquals("nothing recorded before enabling", 2, Metrics.report().split("\n").length);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSimpleRun() throws Exception {
+        File folder = Files.createTempDir();
+        try {
+            String pom = "<version>1.0.0.frinx-SNAPSHOT</version>\n<a v='2.0.0.frinx-SNAPSHOT'/>\n<b/>";
+            Files.write(pom, new File(folder, "pom.xml"), Charsets.UTF_8);
+            Files.write("other", new File(folder, "README"), Charsets.UTF_8);
+            Metrics.enable();
+            new SimpleMainRunner().prepare(Arrays.asList("--suffix", "frinx", "--snapshot", "drop", "--threads", "1"))
+                    .run(folder);
+            String report = Metrics.report();
+            assertTrue(report, report.contains("rewrite"));
+
+            File json = new File(folder, "stats.json");
+            Metrics.writeJson(json.toPath());
+            Map<String, Object> stats = (Map<String, Object>) Json.parse(Files.toString(json, Charsets.UTF_8));
+            Map<String, Object> phases = (Map<String, Object>) stats.get("phases");
+            assertEquals(2L, ((Map<String, Object>) phases.get("file")).get("calls"));
+            assertEquals(1L, ((Map<String, Object>) phases.get("walk")).get("calls"));
+            assertEquals(2L, ((Map<String, Object>) phases.get("version")).get("calls"));
+            Map<String, Object> counters = (Map<String, Object>) stats.get("counters");
+            assertEquals((long) pom.length(), counters.get("bytesRead"));
+            assertEquals((long) pom.replace("-SNAPSHOT", "").length(), counters.get("bytesWritten"));
+            assertEquals(3L, counters.get("linesScanned"));
+            assertEquals(2L, counters.get("versionMatches"));
+            assertEquals(2L, counters.get("linesChanged"));
+        } finally {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+}
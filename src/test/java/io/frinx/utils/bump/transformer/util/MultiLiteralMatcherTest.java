@@ -0,0 +1,27 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class MultiLiteralMatcherTest {
+
+    @Test
+    public void testMatch() {
+        MultiLiteralMatcher tested = new MultiLiteralMatcher(asList("frinxodl", "frinx", "Beryllium-SR", "odl"));
+        assertEquals(0b1011, match(tested, "<version>1.2.3.frinxodl</version>"));
+        assertEquals(0b0010, match(tested, "<version>1.2.3.frinx</version>"));
+        assertEquals(0b0100, match(tested, "<version>0.4.2-Beryllium-SR2</version>"));
+        // failure links: frinxod does not end in frinxodl, but contains odl after restarting
+        assertEquals(0b1010, match(tested, "frinxod frinxodX odl"));
+        assertEquals(0b0010, match(tested, "ž frinx ž"));
+        assertEquals(0, match(tested, "frin"));
+        assertEquals(0, match(tested, ""));
+        assertEquals(0b0010, tested.match("xxfrinxodl", 0, 8));
+    }
+
+    private static long match(MultiLiteralMatcher matcher, String text) {
+        return matcher.match(text, 0, text.length());
+    }
+}
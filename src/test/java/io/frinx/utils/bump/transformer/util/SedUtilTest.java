@@ -2,7 +2,10 @@ package io.frinx.utils.bump.transformer.util;
 
 import static org.junit.Assert.*;
 
+import io.frinx.utils.bump.transformer.util.SedScriptCompiler.UnsupportedSedScriptException;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.Test;
 
 public class SedUtilTest {
@@ -11,4 +14,98 @@ public class SedUtilTest {
     public void testSed() throws IOException, InterruptedException {
         assertEquals("aBc", SedUtil.sed("abc", "s/b/B/"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCompiledMatchesExternalSed() throws Exception {
+        List<String> inputs = Arrays.asList("1.2.3.rc1-frinx", "1.2.3.4-frinxodl-SNAPSHOT", "Beryllium-SR2.frinx",
+                "abc", "a.b*c", "aaa bbb", "");
+        List<String> scripts = Arrays.asList(
+                "s/rc1-frinx/frinx/",
+                "s/frinx/rc2-frinx/",
+                "s/Beryllium-SR2/Beryllium-SR3/",
+                "s/b*/X/g",
+                "s/a/X/2",
+                "s/a/X/2g",
+                "s/\\./_/g",
+                "s/[.*]/#/g",
+                "s/^\\([0-9]*\\)\\.\\([0-9]*\\)/\\2.\\1/",
+                "s/[[:digit:]]\\{1,2\\}/<&>/g",
+                "s/\\(frinx\\)\\(odl\\)\\?/\\1-\\2/",
+                "s/FRINX/x/I",
+                "s|-SNAPSHOT$||",
+                "s/a\\+/\\&/",
+                "s/*/star/",
+                "s/^*/star/",
+                "s/c$/C/;s/^a/A/",
+                " s/a/b/ ; s/b/c/g ",
+                "y/abc/xyz/",
+                "s/x/\\n/;s/\\n/y/",
+                "s/frinx.*$/(&)/");
+        for (String script : scripts) {
+            SedUtil.SedScript compiled = SedScriptCompiler.compile(script);
+            for (String input : inputs) {
+                assertEquals("Script '" + script + "', input '" + input + "'",
+                        SedUtil.externalSed(input, script), compiled.apply(input));
+            }
+        }
+    }
+
+    @Test
+    public void testUnsupportedScripts() {
+        for (String script : Arrays.asList("1s/a/b/", "/x/d", "s/a/b/w file", "s/a\\|b/c/", "s/a/\\U&/", "p",
+                "s/a/b", "s.a.b.", "y/ab/c/", "s/a/b/;{p}", "s//x/",
+                "s/\\(a\\)/\\2/", "s/a/\\1/")) {
+            try {
+                SedScriptCompiler.compile(script);
+                fail("Script should not be supported: " + script);
+            } catch (UnsupportedSedScriptException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testCompileFallsBackToExternalSed() {
+        assertEquals("abb", SedUtil.compile("1s/c/b/", SedUtil.SedMode.FORK).apply("abc"));
+        // line addresses never use coprocess
+        assertEquals("abb", SedUtil.compile("1s/c/b/", SedUtil.SedMode.COPROCESS).apply("abc"));
+    }
+
+    @Test
+    public void testCoprocess() {
+        SedUtil.SedScript tested = new SedCoprocess("s/\\(frinx\\)/\\U\\1/;s/a\\|b/x/g");
+        for (int i = 0; i < 100; i++) {
+            assertEquals("1.2." + i + ".FRINX-xx", tested.apply("1.2." + i + ".frinx-ab"));
+        }
+    }
+
+    @Test
+    public void testCoprocessFallsBackWhenLinesAreSwallowed() {
+        assertEquals("", new SedCoprocess("d").apply("1.2.3"));
+    }
+
+    @Test
+    public void testScriptsSpanningLinesNeverUseCoprocess() {
+        for (String script : Arrays.asList("h;G", "G", "s/a/b/;x", "/frinx/{h;d}", "N;s/\\n/ /", "s/a/b/p",
+                "s|a|b|gw out", "a\\\ntext", "$!N", "=")) {
+            assertTrue(script, SedUtil.spansLines(script));
+        }
+        for (String script : Arrays.asList("s/a/b/", "s/h/x/g", "y/abc/hxg/", "s/\\(frinx\\)/\\U\\1/;s/a\\|b/x/g",
+                "/x/d", "s/a/b/I")) {
+            assertFalse(script, SedUtil.spansLines(script));
+        }
+    }
+
+    @Test
+    public void testCoprocessStopsWhenLinesDoNotMatch() {
+        List<String> versions = Arrays.asList("1.0.0", "2.0.0", "3.0.0.frinx");
+        for (String script : Arrays.asList("h;G", "G")) {
+            SedUtil.SedScript compiled = SedUtil.compile(script, SedUtil.SedMode.COPROCESS);
+            SedUtil.SedScript coprocess = new SedCoprocess(script);
+            for (String version : versions) {
+                String expected = SedUtil.externalSed(version, script);
+                assertEquals(script, expected, compiled.apply(version));
+                assertEquals(script, expected, coprocess.apply(version));
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.frinx.utils.bump.transformer.util.VersionFactory.Version;
+import io.frinx.utils.bump.transformer.util.VersionFactory.Version.VersionParsingException;
+import org.junit.Test;
+
+public class VersionFactoryTest {
+
+    @Test
+    public void testParse() throws VersionParsingException {
+        Version tested = VersionFactory.parse("1.2.3.4-frinxodl-SNAPSHOT");
+        assertEquals(1, tested.getMajor());
+        assertEquals(2, tested.getMinor());
+        assertEquals(3, tested.getMicro());
+        assertEquals(4, tested.getQualifierNumber());
+        assertEquals("-frinxodl", tested.getQualifierSuffix());
+        assertTrue(tested.isSnapshot());
+
+        tested = VersionFactory.parse("0.4.2-Beryllium-SR2");
+        assertEquals(2, tested.getMicro());
+        assertEquals(-1, tested.getQualifierNumber());
+        assertEquals("Beryllium-SR2", tested.getQualifierSuffix());
+        assertFalse(tested.isSnapshot());
+
+        tested = VersionFactory.parse("1.0.frinx");
+        assertEquals(0, tested.getMinor());
+        assertEquals(-1, tested.getMicro());
+        assertEquals("frinx", tested.getQualifierSuffix());
+    }
+
+    @Test
+    public void testParseRegion() throws VersionParsingException {
+        String line = "<version>1.2.3.frinx</version>";
+        Version tested = VersionFactory.parse(line, 9, 20);
+        assertEquals("1.2.3.frinx", tested.toString());
+        assertSame(tested, VersionFactory.parse("1.2.3.frinx"));
+        assertSame(tested, VersionFactory.parse(new StringBuilder(line), 9, 20));
+    }
+
+    @Test
+    public void testWithSnapshot() throws VersionParsingException {
+        Version release = VersionFactory.parse("1.2.3.frinx");
+        Version snapshot = release.withSnapshot(true);
+        assertEquals("1.2.3.frinx-SNAPSHOT", snapshot.toString());
+        assertSame(release, release.withSnapshot(false));
+        assertSame(snapshot, release.withSnapshot(true));
+        assertSame(release, snapshot.withSnapshot(false));
+        assertEquals(VersionFactory.parse("1.2.3.frinx-SNAPSHOT"), snapshot);
+    }
+
+    @Test
+    public void testBump() throws VersionParsingException {
+        assertEquals("1.2.3.5-frinxodl", VersionFactory.parse("1.2.3.4-frinxodl").withQualifierIncremented().toString());
+        assertEquals("1.2.3.10-frinxodl-SNAPSHOT",
+                VersionFactory.parse("1.2.3.9-frinxodl-SNAPSHOT").withQualifierIncremented().toString());
+        assertEquals("1.2.4.frinx", VersionFactory.parse("1.2.3.frinx").withMicroIncremented().toString());
+        // number of digits is kept
+        assertEquals("1.2.3.008-frinx", VersionFactory.parse("1.2.3.007-frinx").withQualifierIncremented().toString());
+        assertEquals("1.2.10", VersionFactory.parse("1.2.09").withMicroIncremented().toString());
+        assertEquals("0.4.3-Beryllium-SR2", VersionFactory.parse("0.4.2-Beryllium-SR2").withMicroIncremented().toString());
+    }
+
+    @Test
+    public void testBumpErrors() {
+        try {
+            VersionFactory.parse("1.0.frinx").withMicroIncremented();
+            fail();
+        } catch (VersionParsingException e) {
+            assertEquals("Version 1.0.frinx has no micro version", e.getMessage());
+        }
+        try {
+            VersionFactory.parse("0.4.2-Beryllium-SR2").withQualifierIncremented();
+            fail();
+        } catch (VersionParsingException e) {
+            assertEquals("Qualifier of version 0.4.2-Beryllium-SR2 does not start with a number", e.getMessage());
+        }
+    }
+}
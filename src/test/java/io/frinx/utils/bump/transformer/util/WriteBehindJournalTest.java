@@ -0,0 +1,193 @@
+package io.frinx.utils.bump.transformer.util;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import io.frinx.utils.bump.transformer.FileTransformer;
+import io.frinx.utils.bump.transformer.FileTransformer.TransformFileResult;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WriteBehindJournalTest {
+
+    private static final String RUN_KEY = "simple --suffix frinx --snapshot drop";
+
+    private File folder;
+    private final List<String> transformed = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDir();
+        write("a.txt", "1.0-SNAPSHOT\n");
+        write("b.txt", "2.0\n");
+        write("c.txt", "3.0-SNAPSHOT\n");
+        write("d.txt", "4.0-SNAPSHOT\n");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    // drops -SNAPSHOT, optionally failing on d.txt
+    private FileTransformer dropSnapshot(boolean failOnD) {
+        return file -> {
+            transformed.add(file.getName());
+            if (failOnD && "d.txt".equals(file.getName())) {
+                throw new IllegalStateException("Cannot transform " + file);
+            }
+            boolean changed = LineRewriter.rewrite(file, (input, output) -> {
+                while (input.hasNext()) {
+                    output.accept(input.next().replace("-SNAPSHOT", ""));
+                }
+            });
+            return changed ? TransformFileResult.CHANGED : TransformFileResult.NOT_CHANGED;
+        };
+    }
+
+    private void runUntilFailure(WriteBehindJournal journal) throws IOException {
+        FileTransformer function = journal.wrap(dropSnapshot(true));
+        try {
+            for (String name : new String[]{"a.txt", "b.txt", "d.txt", "c.txt"}) {
+                function.transformFile(new File(folder, name));
+            }
+            fail();
+        } catch (IllegalStateException expected) {
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void testCommit() throws IOException {
+        try (WriteBehindJournal journal = WriteBehindJournal.begin(folder.toPath(), RUN_KEY)) {
+            FileTransformer function = journal.wrap(dropSnapshot(false));
+            assertEquals(TransformFileResult.CHANGED, function.transformFile(new File(folder, "a.txt")));
+            assertEquals(TransformFileResult.NOT_CHANGED, function.transformFile(new File(folder, "b.txt")));
+            assertTrue(WriteBehindJournal.exists(folder.toPath()));
+            journal.commit();
+        }
+        assertEquals("1.0\n", read("a.txt"));
+        assertFalse(new File(folder, WriteBehindJournal.DIRECTORY).exists());
+    }
+
+    @Test
+    public void testRollback() throws IOException {
+        runUntilFailure(WriteBehindJournal.begin(folder.toPath(), RUN_KEY));
+        // changes made before the failure are in place
+        assertEquals("1.0\n", read("a.txt"));
+        assertEquals("3.0-SNAPSHOT\n", read("c.txt"));
+        assertTrue(WriteBehindJournal.exists(folder.toPath()));
+
+        assertEquals(1, WriteBehindJournal.rollback(folder.toPath()));
+        assertEquals("1.0-SNAPSHOT\n", read("a.txt"));
+        assertEquals("2.0\n", read("b.txt"));
+        assertFalse(new File(folder, WriteBehindJournal.DIRECTORY).exists());
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        runUntilFailure(WriteBehindJournal.begin(folder.toPath(), RUN_KEY));
+        transformed.clear();
+        try (WriteBehindJournal journal = WriteBehindJournal.resume(folder.toPath(), RUN_KEY)) {
+            FileTransformer function = journal.wrap(dropSnapshot(false));
+            // recorded files are skipped, with their recorded result
+            assertEquals(TransformFileResult.CHANGED, function.transformFile(new File(folder, "a.txt")));
+            assertEquals(TransformFileResult.NOT_CHANGED, function.transformFile(new File(folder, "b.txt")));
+            assertEquals(TransformFileResult.CHANGED, function.transformFile(new File(folder, "c.txt")));
+            assertEquals(TransformFileResult.CHANGED, function.transformFile(new File(folder, "d.txt")));
+            journal.commit();
+        }
+        assertEquals(asList("c.txt", "d.txt"), transformed);
+        assertEquals("1.0\n", read("a.txt"));
+        assertEquals("3.0\n", read("c.txt"));
+        assertEquals("4.0\n", read("d.txt"));
+        assertFalse(new File(folder, WriteBehindJournal.DIRECTORY).exists());
+    }
+
+    @Test
+    public void testResumeWithOtherArguments() throws IOException {
+        runUntilFailure(WriteBehindJournal.begin(folder.toPath(), "simple\nfirst"));
+        try {
+            WriteBehindJournal.resume(folder.toPath(), "simple\nsecond");
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        // the journal is kept for a resume with the same arguments
+        try (WriteBehindJournal journal = WriteBehindJournal.resume(folder.toPath(), "simple\nfirst")) {
+            journal.commit();
+        }
+        assertFalse(new File(folder, WriteBehindJournal.DIRECTORY).exists());
+    }
+
+    @Test
+    public void testResumeMovesStagedContent() throws IOException {
+        // crash after the journal was written but before new content was moved in place, last line torn
+        File dir = new File(folder, WriteBehindJournal.DIRECTORY + "/journal");
+        write(WriteBehindJournal.DIRECTORY + "/journal/journal", "run " + RUN_KEY
+                + "\nchanged 0 a.txt\nunchanged - b.txt\nchanged 1 c");
+        write(WriteBehindJournal.DIRECTORY + "/journal/0.orig", "1.0-SNAPSHOT\n");
+        write(WriteBehindJournal.DIRECTORY + "/journal/0.new", "1.0\n");
+        try (WriteBehindJournal journal = WriteBehindJournal.resume(folder.toPath(), RUN_KEY)) {
+            assertEquals("1.0\n", read("a.txt"));
+            assertFalse(new File(dir, "0.new").exists());
+            journal.wrap(dropSnapshot(false)).transformFile(new File(folder, "c.txt"));
+        }
+        assertEquals("run " + RUN_KEY + "\nchanged 0 a.txt\nunchanged - b.txt\nchanged 1 c.txt\n",
+                read(WriteBehindJournal.DIRECTORY + "/journal/journal"));
+        assertEquals(2, WriteBehindJournal.rollback(folder.toPath()));
+        assertEquals("1.0-SNAPSHOT\n", read("a.txt"));
+        assertEquals("3.0-SNAPSHOT\n", read("c.txt"));
+    }
+
+    @Test(timeout = 30000)
+    public void testFailedBatchDoesNotBlockTransformations() throws IOException {
+        // new content of a missing file cannot be backed up, and a non-empty directory cannot be deleted as a temp
+        File temp = new File(folder, "temp");
+        write("temp/x", "");
+        WriteBehindJournal journal = WriteBehindJournal.begin(folder.toPath(), RUN_KEY);
+        FileTransformer notChanged = journal.wrap(file -> TransformFileResult.NOT_CHANGED);
+        FileTransformer missing = journal.wrap(file -> {
+            WriteBehindJournal.stage(temp.toPath(), file.toPath());
+            return TransformFileResult.CHANGED;
+        });
+        try {
+            missing.transformFile(new File(folder, "missing.txt"));
+            // more than the queue holds, the writer keeps taking them after the failure
+            for (int i = 0; i < 100000; i++) {
+                notChanged.transformFile(new File(folder, i + ".txt"));
+            }
+            fail();
+        } catch (IOException expected) {
+            assertEquals("Writing journal failed", expected.getMessage());
+        }
+        try {
+            journal.close();
+            fail();
+        } catch (IOException expected) {
+            assertEquals("Writing journal failed", expected.getMessage());
+        }
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(folder, path);
+        Files.createParentDirs(file);
+        Files.write(content, file, Charsets.UTF_8);
+    }
+
+    private String read(String path) throws IOException {
+        return Files.toString(new File(folder, path), Charsets.UTF_8);
+    }
+}